@@ -0,0 +1,121 @@
+package omahoco.migrate.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Generated migration files. The text is deterministic so results are comparable between runs and releases.
+ */
+public enum Corpus {
+    /**
+     * Many small files of indented, commented schema statements.
+     */
+    SCHEMA(200, 40) {
+        @Override
+        void appendStatement(final StringBuilder out, final int index) {
+            out.append("// Property and vertex label ").append(index).append('\n')
+                    .append("schema.propertyKey('prop_").append(index).append("').Text().ifNotExists().create();\n")
+                    .append("schema.vertexLabel('label_").append(index).append("').\n")
+                    .append("    properties('prop_").append(index).append("', 'name'). // Inline comment\n")
+                    .append("    ifNotExists().\n")
+                    .append("    create();\n\n");
+        }
+    },
+    /**
+     * A few huge files of single line data statements.
+     */
+    DATA(2, 200_000) {
+        @Override
+        void appendStatement(final StringBuilder out, final int index) {
+            out.append("graph.addVertex(label, 'user', 'userId', 'u").append(index)
+                    .append("', 'email', 'user").append(index)
+                    .append("@example.com', 'added', '2018-01-01');\n");
+        }
+    },
+    /**
+     * Statements buried in comments, whitespace and strings that look like comments or terminators.
+     */
+    COMMENTS(20, 2_000) {
+        @Override
+        void appendStatement(final StringBuilder out, final int index) {
+            out.append("/*\r\n * Block comment ").append(index).append("; spanning lines.\r\n */\r\n")
+                    .append("\t\t    \t\t\r\n")
+                    .append("graph.addVertex(label, 'page', /* inline */ 'url', 'https://example.com/")
+                    .append(index).append(";//x').\t\t    \r\n")
+                    .append("        property('note', \"it's ${index};\" + '''//\r\n")
+                    .append("          not a comment;''');    // trailing comment;\r\n")
+                    .append("//////////////////////////////////////////////////////////////////////////////\r\n");
+        }
+    },
+    /**
+     * As many small files as three digit versions allow, each adding a property key then writing data. They declare
+     * no dependencies, so they can be applied concurrently.
+     */
+    MIGRATIONS(MigrationBenchmark.FILES, MigrationBenchmark.STATEMENTS_PER_FILE) {
+        @Override
+        String header() {
+            return "// depends: none\n";
+        }
+
+        @Override
+        void appendStatement(final StringBuilder out, final int index) {
+            if (index % getStatementsPerFile() == 0) {
+                out.append("schema.propertyKey('prop_").append(index).append("').Text().ifNotExists().create();\n");
+                return;
+            }
+
+            out.append("graph.addVertex(label, 'user', 'userId', 'u").append(index)
+                    .append("', 'email', 'user").append(index).append("@example.com');\n");
+        }
+    };
+
+    private final int files;
+    private final int statementsPerFile;
+
+    Corpus(final int files, final int statementsPerFile) {
+        this.files = files;
+        this.statementsPerFile = statementsPerFile;
+    }
+
+    abstract void appendStatement(StringBuilder out, int index);
+
+    /**
+     * @return the comments at the top of each file.
+     */
+    String header() {
+        return "";
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    public int getStatementsPerFile() {
+        return statementsPerFile;
+    }
+
+    public String text(final int file) {
+        final StringBuilder out = new StringBuilder(header());
+        final int first = file * statementsPerFile;
+
+        for (int i = first; i < first + statementsPerFile; i++) {
+            appendStatement(out, i);
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Writes the corpus to migration files in {@code directory}.
+     */
+    public void write(final Path directory) throws IOException {
+        for (int i = 0; i < files; i++) {
+            final String fileName = String.format(Locale.ROOT, "v%03d_%s.gremlin", i + 1,
+                    name().toLowerCase(Locale.ROOT));
+            Files.write(directory.resolve(fileName), text(i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
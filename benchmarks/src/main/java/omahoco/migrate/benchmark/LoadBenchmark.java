@@ -0,0 +1,87 @@
+package omahoco.migrate.benchmark;
+
+import omahoco.migrate.Migration;
+import omahoco.migrate.config.Config;
+import omahoco.migrate.io.FileMigrationSource;
+import omahoco.migrate.io.MigrationFileLoader;
+import omahoco.migrate.parse.SimpleStatementParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Discovers and loads a corpus written to disk, as a migration run does. {@code checksum} covers discovery, which
+ * only checksums each file, and {@code load} also streams and parses every statement. Files are loaded on
+ * {@code loadThreads} workers, but statements are streamed on one thread as they are when migrations are applied.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoadBenchmark {
+    @Param({"SCHEMA", "DATA", "COMMENTS"})
+    private Corpus corpus;
+
+    @Param({"1", "4"})
+    private int loadThreads;
+
+    private MigrationFileLoader loader;
+    private Path directory;
+    private FileMigrationSource source;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("graph-migrate-benchmark");
+        corpus.write(directory);
+
+        final Config config = new Config();
+        config.setConfigPath(directory.toString());
+        config.setMigrationPath(".");
+        source = new FileMigrationSource(config);
+        loader = new MigrationFileLoader(new SimpleStatementParser(), StandardCharsets.UTF_8, loadThreads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void checksum(final Blackhole blackhole) {
+        for (final Migration migration : loader.load(source.getMigrations())) {
+            blackhole.consume(migration.getCheckSum());
+        }
+    }
+
+    @Benchmark
+    public void load(final Blackhole blackhole) {
+        for (final Migration migration : loader.load(source.getMigrations())) {
+            try (Stream<String> statements = migration.streamStatements()) {
+                statements.forEach(blackhole::consume);
+            }
+        }
+    }
+}
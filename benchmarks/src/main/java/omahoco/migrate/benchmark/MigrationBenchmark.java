@@ -0,0 +1,135 @@
+package omahoco.migrate.benchmark;
+
+import omahoco.migrate.SchemaMigration;
+import omahoco.migrate.config.Config;
+import omahoco.migrate.config.Profile;
+import omahoco.migrate.config.SimulationConfig;
+import omahoco.migrate.di.MigrationModule;
+import omahoco.migrate.di.SimulationModule;
+import omahoco.migrate.graph.InMemorySchema;
+import ch.qos.logback.classic.Level;
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Applies the {@link Corpus#MIGRATIONS} corpus end to end, finding, checksumming, parsing, batching and executing
+ * every file, against an {@link InMemorySchema} that simulates the latency, failures and schema agreement delays of a
+ * cluster. Every invocation migrates a new, empty graph. The score is statements applied per second, so the effect of
+ * batching, concurrency and schema agreement settings can be compared without a cluster.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(MigrationBenchmark.FILES * MigrationBenchmark.STATEMENTS_PER_FILE)
+@Fork(1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class MigrationBenchmark {
+    static final int FILES = 999;
+    static final int STATEMENTS_PER_FILE = 20;
+
+    @Param({"1", "50"})
+    private int batchSize;
+
+    @Param({"1", "16"})
+    private int maxInFlight;
+
+    @Param({"1", "4"})
+    private int migrationParallelism;
+
+    @Param({"false", "true"})
+    private boolean deferSchemaAgreement;
+
+    @Param({"250"})
+    private int latencyMicros;
+
+    @Param({"250"})
+    private int jitterMicros;
+
+    @Param({"0"})
+    private double failureRate;
+
+    @Param({"2"})
+    private int schemaAgreementMillis;
+
+    private Path directory;
+    private Injector injector;
+    private Profile profile;
+    private SimulationConfig simulation;
+    private InMemorySchema schema;
+    private SchemaMigration migration;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Every file is logged as it is applied, which would otherwise dominate the run.
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(Level.WARN);
+
+        directory = Files.createTempDirectory("graph-migrate-benchmark");
+        Corpus.MIGRATIONS.write(directory);
+
+        final Config config = new Config();
+        config.setConfigPath(directory.toString());
+        config.setMigrationPath(".");
+        injector = Guice.createInjector(new MigrationModule(config, new MetricRegistry()));
+
+        profile = new Profile();
+        profile.getExecution().setBatchSize(batchSize);
+        profile.getExecution().setMaxInFlight(maxInFlight);
+        profile.getExecution().setMigrationParallelism(migrationParallelism);
+        profile.getExecution().setDeferSchemaAgreement(deferSchemaAgreement);
+
+        simulation = new SimulationConfig();
+        simulation.setLatencyMicros(latencyMicros);
+        simulation.setJitterMicros(jitterMicros);
+        simulation.setFailureRate(failureRate);
+        simulation.setSchemaAgreementMillis(schemaAgreementMillis);
+    }
+
+    @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+    public void setUpGraph() {
+        final Injector graph = injector.createChildInjector(new SimulationModule(profile, simulation));
+        schema = graph.getInstance(InMemorySchema.class);
+        migration = graph.getInstance(SchemaMigration.class);
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Invocation)
+    public void tearDownGraph() {
+        schema.close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void migrate() {
+        migration.migrate();
+    }
+}
@@ -0,0 +1,47 @@
+package omahoco.migrate.benchmark;
+
+import omahoco.migrate.parse.SimpleStatementParser;
+import omahoco.migrate.parse.StatementParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the text of one corpus file held in memory, isolating the parser from IO and decoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParseBenchmark {
+    @Param({"SCHEMA", "DATA", "COMMENTS"})
+    private Corpus corpus;
+
+    private final StatementParser parser = new SimpleStatementParser();
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = corpus.text(0);
+    }
+
+    @Benchmark
+    public void parse(final Blackhole blackhole) {
+        final StatementParser.Session session = parser.newSession(blackhole::consume);
+        session.accept(text);
+        session.finish();
+    }
+}
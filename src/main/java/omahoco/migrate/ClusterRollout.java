@@ -0,0 +1,178 @@
+package omahoco.migrate;
+
+import omahoco.migrate.config.RolloutConfig;
+import omahoco.migrate.graph.SlowStatementLog;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Rolls a migration out to several clusters, up to {@code parallelism} at a time, and reports how long each took.
+ * <p>
+ * With the {@link RolloutConfig.FailurePolicy#STOP} policy the first failure stops the rollout. Clusters that haven't
+ * started are skipped, and clusters being migrated are signalled to stop, which they do before their next migration
+ * file. With {@link RolloutConfig.FailurePolicy#CONTINUE} every cluster is migrated regardless.
+ */
+public final class ClusterRollout {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterRollout.class);
+    private final List<String> clusterNames;
+    private final int parallelism;
+    private final RolloutConfig.FailurePolicy failurePolicy;
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    public ClusterRollout(final List<String> clusterNames, final RolloutConfig config) {
+        if (config.getParallelism() < 0) {
+            throw new IllegalArgumentException(
+                    "Rollout parallelism must not be negative, was " + config.getParallelism());
+        }
+
+        this.clusterNames = new ArrayList<>(clusterNames);
+        this.failurePolicy = Objects.requireNonNull(config.getFailurePolicy());
+        if (config.getParallelism() == 0) {
+            this.parallelism = Math.max(1, clusterNames.size());
+        } else {
+            this.parallelism = config.getParallelism();
+        }
+    }
+
+    public enum Outcome {
+        SUCCEEDED,
+        FAILED,
+        /**
+         * Failed after the rollout was stopped, usually because it was signalled to stop.
+         */
+        STOPPED,
+        /**
+         * Not started as the rollout had already been stopped.
+         */
+        SKIPPED
+    }
+
+    /**
+     * Migrates one cluster.
+     */
+    @FunctionalInterface
+    public interface ClusterMigration {
+        /**
+         * @param stopSignal true once the cluster should stop migrating.
+         */
+        void migrate(String clusterName, BooleanSupplier stopSignal) throws Exception;
+    }
+
+    /**
+     * @return the result of each cluster, in the order of the cluster names.
+     */
+    public Map<String, Result> run(final ClusterMigration migration) {
+        final Map<String, Result> results = new LinkedHashMap<>();
+
+        if (parallelism == 1 || clusterNames.size() < 2) {
+            clusterNames.forEach(t -> results.put(t, migrate(t, migration)));
+            return logged(results);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, clusterNames.size()),
+                new ThreadFactoryBuilder().setNameFormat("cluster-migration-%d").setDaemon(true).build());
+        try {
+            final Map<String, Future<Result>> futures = new LinkedHashMap<>();
+            clusterNames.forEach(t -> futures.put(t, executor.submit(() -> migrate(t, migration))));
+
+            for (final Map.Entry<String, Future<Result>> future : futures.entrySet()) {
+                results.put(future.getKey(), future.getValue().get());
+            }
+
+            return logged(results);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for clusters to be migrated.", e);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException("Unexpected failure migrating a cluster.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result migrate(final String clusterName, final ClusterMigration migration) {
+        if (stopped.get()) {
+            LOGGER.warn("Skipping cluster {}, the rollout has been stopped.", clusterName);
+            return new Result(Outcome.SKIPPED, 0, null);
+        }
+
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        try (MDC.MDCCloseable cluster = MDC.putCloseable(SlowStatementLog.CLUSTER, clusterName)) {
+            migration.migrate(clusterName, stopped::get);
+            return new Result(Outcome.SUCCEEDED, stopwatch.elapsed(TimeUnit.MILLISECONDS), null);
+        } catch (final Exception e) {
+            final boolean alreadyStopped = stopped.get();
+            if (failurePolicy == RolloutConfig.FailurePolicy.STOP) {
+                stopped.set(true);
+            }
+
+            LOGGER.error("Migration of cluster {} failed.", clusterName, e);
+            if (alreadyStopped) {
+                return new Result(Outcome.STOPPED, stopwatch.elapsed(TimeUnit.MILLISECONDS), e);
+            }
+
+            return new Result(Outcome.FAILED, stopwatch.elapsed(TimeUnit.MILLISECONDS), e);
+        }
+    }
+
+    private static Map<String, Result> logged(final Map<String, Result> results) {
+        if (results.size() < 2) {
+            return results;
+        }
+
+        results.forEach((name, result) -> {
+            if (result.getFailure() == null) {
+                LOGGER.info("Cluster {}: {} in {} ms", name, result.getOutcome(), result.getElapsedMillis());
+            } else {
+                LOGGER.info("Cluster {}: {} in {} ms, {}",
+                        name, result.getOutcome(), result.getElapsedMillis(), result.getFailure().getMessage());
+            }
+        });
+
+        return results;
+    }
+
+    public static final class Result {
+        private final Outcome outcome;
+        private final long elapsedMillis;
+        private final Exception failure;
+
+        private Result(final Outcome outcome, final long elapsedMillis, final Exception failure) {
+            this.outcome = outcome;
+            this.elapsedMillis = elapsedMillis;
+            this.failure = failure;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return why the cluster failed, or null.
+         */
+        public Exception getFailure() {
+            return failure;
+        }
+    }
+}
@@ -2,14 +2,19 @@ package omahoco.migrate;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public final class Migration {
     private String fileName;
     private int version;
     private String checkSum;
     private List<String> statements;
+    private StatementSource statementSource;
+    private RowSource rowSource;
     private Instant appliedAt;
+    private List<Integer> dependsOn;
 
     public Migration(final String fileName) {
         this.fileName = fileName;
@@ -48,10 +53,61 @@ public final class Migration {
         this.statements = statements;
     }
 
+    /**
+     * @return the statements of the migration. Statements supplied by a {@link StatementSource} are read into
+     * memory on every call, use {@link #streamStatements()} to process them one at a time instead.
+     */
     public List<String> getStatements() {
+        if (statements == null && statementSource != null) {
+            try (Stream<String> stream = statementSource.open()) {
+                return stream.collect(Collectors.toList());
+            }
+        }
+
         return statements;
     }
 
+    public void setStatementSource(final StatementSource statementSource) {
+        this.statementSource = statementSource;
+    }
+
+    /**
+     * Streams the statements of the migration, the stream must be closed once it has been consumed.
+     */
+    public Stream<String> streamStatements() {
+        if (statements == null && statementSource != null) {
+            return statementSource.open();
+        }
+
+        if (statements == null) {
+            return Stream.empty();
+        }
+
+        return statements.stream();
+    }
+
+    public void setRowSource(final RowSource rowSource) {
+        this.rowSource = rowSource;
+    }
+
+    /**
+     * @return true for a data migration, whose only statement is the template that writes each of its rows.
+     */
+    public boolean hasRows() {
+        return rowSource != null;
+    }
+
+    /**
+     * Streams the rows of a data migration, the stream must be closed once it has been consumed.
+     */
+    public Stream<Map<String, Object>> streamRows() {
+        if (rowSource == null) {
+            return Stream.empty();
+        }
+
+        return rowSource.open();
+    }
+
     public Instant getAppliedAt() {
         return appliedAt;
     }
@@ -60,11 +116,15 @@ public final class Migration {
         this.appliedAt = appliedAt;
     }
 
-    public String getContents() {
-        if (statements == null) {
-            return null;
-        }
+    /**
+     * @return the versions of the migrations that must be applied before this one, or null when the migration
+     * doesn't declare its dependencies and depends on every earlier migration.
+     */
+    public List<Integer> getDependsOn() {
+        return dependsOn;
+    }
 
-        return statements.stream().collect(Collectors.joining(System.lineSeparator()));
+    public void setDependsOn(final List<Integer> dependsOn) {
+        this.dependsOn = dependsOn;
     }
 }
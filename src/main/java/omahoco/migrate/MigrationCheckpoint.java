@@ -0,0 +1,41 @@
+package omahoco.migrate;
+
+import java.util.Objects;
+
+/**
+ * The progress of a migration that was being applied when a run stopped. Every statement before
+ * {@code statementIndex} has been executed, so a later run can resume from there if the file is unchanged.
+ */
+public final class MigrationCheckpoint {
+    private final String fileName;
+    private final String checkSum;
+    private final int statementIndex;
+
+    public MigrationCheckpoint(final String fileName, final String checkSum, final int statementIndex) {
+        this.fileName = Objects.requireNonNull(fileName);
+        this.checkSum = Objects.requireNonNull(checkSum);
+        this.statementIndex = statementIndex;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return the checksum of the migration file being applied when the checkpoint was written.
+     */
+    public String getCheckSum() {
+        return checkSum;
+    }
+
+    /**
+     * @return the zero based index of the first statement that hasn't been executed.
+     */
+    public int getStatementIndex() {
+        return statementIndex;
+    }
+
+    public boolean matches(final Migration migration) {
+        return fileName.equals(migration.getFileName()) && checkSum.equals(migration.getCheckSum());
+    }
+}
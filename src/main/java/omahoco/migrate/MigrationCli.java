@@ -1,9 +1,25 @@
 package omahoco.migrate;
 
+import omahoco.migrate.cli.CliMessages;
 import omahoco.migrate.cli.CommaSeparatedStringOptionHandler;
+import omahoco.migrate.config.ClusterConfig;
 import omahoco.migrate.config.Config;
 import omahoco.migrate.config.YamlConfig;
 import omahoco.migrate.di.DseModule;
+import omahoco.migrate.di.GraphModule;
+import omahoco.migrate.di.MigrationModule;
+import omahoco.migrate.graph.GraphSchema;
+import omahoco.migrate.graph.SchemaAgreementWaiter;
+import omahoco.migrate.io.FileMigrationSource;
+import omahoco.migrate.io.MigrationFileLoader;
+import omahoco.migrate.io.MigrationSource;
+import omahoco.migrate.io.MigrationWatcher;
+import omahoco.migrate.util.MetricsReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.dse.DseCluster;
+import com.datastax.driver.dse.DseSession;
+import com.google.common.base.Stopwatch;
+import com.google.common.io.Closer;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.kohsuke.args4j.CmdLineException;
@@ -15,11 +31,22 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public final class MigrationCli {
     private static final Logger LOGGER = LoggerFactory.getLogger(MigrationCli.class);
+    private static final int WATCH_QUIET_MILLIS = 100;
 
     private MigrationCli() {
     }
@@ -34,15 +61,25 @@ public final class MigrationCli {
                     YamlConfig.load(new BufferedInputStream(new FileInputStream(migrationArgs.configFile)));
             config.setConfigPath(Optional.ofNullable(migrationArgs.getConfigFile().getParent()).orElse("./"));
 
-            final Injector injector =
-                    Guice.createInjector(new DseModule(migrationArgs, config, migrationArgs.getProfile()));
-
-            try (SchemaMigration schemaMigration = injector.getInstance(SchemaMigration.class)) {
-                if (migrationArgs.getVersion() > 0) {
-                    schemaMigration.setMaxVersion(migrationArgs.getVersion());
+            final Map<String, ClusterConfig> clusters = getClusters(config, migrationArgs, parser);
+            final MetricRegistry metricRegistry = new MetricRegistry();
+            final Injector injector = Guice.createInjector(new MigrationModule(config, metricRegistry));
+
+            // The reporter is closed first, so the summary includes the driver's metrics before the clusters close.
+            try (Closer clusterCloser = Closer.create();
+                 MetricsReporter metricsReporter = injector.getInstance(MetricsReporter.class)) {
+                metricsReporter.start();
+                final Rollout rollout =
+                        new Rollout(injector, config, migrationArgs, clusters, metricRegistry, clusterCloser);
+
+                if (migrationArgs.isWatch()) {
+                    watch(injector, rollout);
+                } else {
+                    // The files are loaded once and shared, each graph streams their statements as it applies them.
+                    rollout.run(
+                            injector.getInstance(MigrationFileLoader.class)
+                                    .load(injector.getInstance(MigrationSource.class).getMigrations()));
                 }
-
-                schemaMigration.migrate();
             }
         } catch (final CmdLineException e) {
             System.err.println(MigrationCli.class.getSimpleName() + " [options...]");
@@ -53,10 +90,181 @@ public final class MigrationCli {
         }
     }
 
+    /**
+     * Applies the migration files, then keeps applying new and changed files as they appear until interrupted. A
+     * failed round is logged and retried once the files change again.
+     */
+    private static void watch(final Injector injector, final Rollout rollout) {
+        try (MigrationWatcher watcher = new MigrationWatcher(
+                injector.getInstance(FileMigrationSource.class),
+                injector.getInstance(MigrationFileLoader.class),
+                WATCH_QUIET_MILLIS)) {
+            Supplier<List<Migration>> migrations = watcher::load;
+            while (!Thread.currentThread().isInterrupted()) {
+                final Stopwatch stopwatch = Stopwatch.createStarted();
+                try {
+                    rollout.run(migrations.get());
+                    LOGGER.info("Migration files applied in {} ms, watching {} for changes.",
+                            stopwatch.elapsed(TimeUnit.MILLISECONDS), watcher.getMigrationPath());
+                } catch (final RuntimeException e) {
+                    LOGGER.error("{}, watching {} for changes.", e.getMessage(), watcher.getMigrationPath(), e);
+                }
+                migrations = watcher::awaitChanges;
+            }
+        }
+    }
+
+    /**
+     * Migrates the clusters, keeping their sessions and the migrations of their graphs between runs. Each run is a
+     * full pass over every graph: the migration summary of each graph is read, and when it doesn't match the files
+     * the applied migrations are read again holding the graph's lock, so migrations applied by other runners are
+     * seen.
+     */
+    private static final class Rollout {
+        private final Injector injector;
+        private final Config config;
+        private final MigrationArgs migrationArgs;
+        private final Map<String, ClusterConfig> clusters;
+        private final MetricRegistry metricRegistry;
+        private final Closer clusterCloser;
+        private final Map<String, Injector> clusterInjectors = new ConcurrentHashMap<>();
+        private final Map<String, SchemaMigration> schemaMigrations = new ConcurrentHashMap<>();
+        private final Set<SchemaMigration> compacted = ConcurrentHashMap.newKeySet();
+
+        private Rollout(
+                final Injector injector,
+                final Config config,
+                final MigrationArgs migrationArgs,
+                final Map<String, ClusterConfig> clusters,
+                final MetricRegistry metricRegistry,
+                final Closer clusterCloser) {
+            this.injector = injector;
+            this.config = config;
+            this.migrationArgs = migrationArgs;
+            this.clusters = clusters;
+            this.metricRegistry = metricRegistry;
+            this.clusterCloser = clusterCloser;
+        }
+
+        private void run(final List<Migration> fileMigrations) {
+            final Map<String, ClusterRollout.Result> results =
+                    new ClusterRollout(new ArrayList<>(clusters.keySet()), config.getRollout()).run(
+                            (name, stopSignal) ->
+                                    migrateCluster(name, getClusterInjector(name), fileMigrations, stopSignal));
+
+            final List<String> failed =
+                    results.entrySet().stream()
+                            .filter(t -> t.getValue().getOutcome() != ClusterRollout.Outcome.SUCCEEDED)
+                            .map(Map.Entry::getKey)
+                            .collect(Collectors.toList());
+            if (!failed.isEmpty()) {
+                throw new IllegalStateException("Migration failed for clusters " + failed);
+            }
+        }
+
+        /**
+         * @return the injector of the cluster, connecting to it on first use. Each cluster is migrated by one thread
+         * at a time.
+         */
+        private Injector getClusterInjector(final String name) {
+            Injector clusterInjector = clusterInjectors.get(name);
+            if (clusterInjector == null) {
+                clusterInjector = injector.createChildInjector(
+                        new DseModule(name, clusters.get(name), config, metricRegistry));
+                synchronized (clusterCloser) {
+                    clusterCloser.register(clusterInjector.getInstance(DseCluster.class));
+                    // Registered after the cluster, so its listeners are unregistered before the cluster closes.
+                    clusterCloser.register(clusterInjector.getInstance(SchemaAgreementWaiter.class));
+                }
+                clusterInjectors.put(name, clusterInjector);
+            }
+
+            return clusterInjector;
+        }
+
+        private void migrateCluster(
+                final String clusterName,
+                final Injector clusterInjector,
+                final List<Migration> fileMigrations,
+                final BooleanSupplier stopSignal) {
+            final List<String> graphNames =
+                    MultiGraphMigration.graphNames(
+                            config, () -> GraphSchema.listGraphs(clusterInjector.getInstance(DseSession.class)));
+            final MultiGraphMigration multiGraphMigration =
+                    new MultiGraphMigration(
+                            graphNames,
+                            config.getGraphParallelism(),
+                            t -> schemaMigrations.computeIfAbsent(
+                                    clusterName + "/" + t,
+                                    k -> clusterInjector.createChildInjector(new GraphModule(t))
+                                            .getInstance(SchemaMigration.class)));
+
+            final Map<String, Throwable> failures = multiGraphMigration.migrate(schemaMigration -> {
+                schemaMigration.setStopSignal(stopSignal);
+                if (migrationArgs.getVersion() > 0) {
+                    schemaMigration.setMaxVersion(migrationArgs.getVersion());
+                }
+
+                schemaMigration.migrate(fileMigrations);
+
+                // Compaction is only asked for once, however many rounds watch mode runs.
+                if (migrationArgs.getCompactVersion() > 0 && !compacted.contains(schemaMigration)) {
+                    schemaMigration.compact(migrationArgs.getCompactVersion());
+                    compacted.add(schemaMigration);
+                }
+            });
+
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException("Migration failed for graphs " + failures.keySet());
+            }
+        }
+    }
+
+    /**
+     * @return the clusters in the configuration, which take the credentials and profile given on the command line
+     * unless they have their own, or else the cluster given on the command line.
+     */
+    private static Map<String, ClusterConfig> getClusters(
+            final Config config,
+            final MigrationArgs migrationArgs,
+            final CmdLineParser parser) throws CmdLineException {
+        if (config.getClusters() == null || config.getClusters().isEmpty()) {
+            if (migrationArgs.getHosts() == null) {
+                throw new CmdLineException(parser, CliMessages.REQUIRED_OPTION_WITHOUT_CLUSTERS, "-H");
+            }
+
+            final ClusterConfig cluster = new ClusterConfig();
+            cluster.setHosts(migrationArgs.getHosts());
+            cluster.setPort(migrationArgs.getPort());
+            cluster.setSsl(migrationArgs.isSsl());
+            cluster.setUserName(migrationArgs.getUserName());
+            cluster.setPassword(migrationArgs.getPassword());
+            cluster.setProfile(migrationArgs.getProfile());
+            return Collections.singletonMap(String.join(",", migrationArgs.getHosts()), cluster);
+        }
+
+        final Map<String, ClusterConfig> clusters = new LinkedHashMap<>(config.getClusters());
+        clusters.forEach((name, cluster) -> {
+            if (cluster.getHosts() == null || cluster.getHosts().isEmpty()) {
+                throw new IllegalArgumentException("Cluster " + name + " has no hosts.");
+            }
+
+            if (cluster.getUserName() == null) {
+                cluster.setUserName(migrationArgs.getUserName());
+                cluster.setPassword(migrationArgs.getPassword());
+            }
+
+            if (cluster.getProfile() == null) {
+                cluster.setProfile(migrationArgs.getProfile());
+            }
+        });
+
+        return clusters;
+    }
+
     public static final class MigrationArgs {
         @Option(name = "-H", handler = CommaSeparatedStringOptionHandler.class,
-                usage = "Comma-separated list of contact points",
-                required = true)
+                usage = "Comma-separated list of contact points, required unless the configuration lists clusters")
         private List<String> hosts;
 
         @Option(name = "-c", usage = "Path to configuration file")
@@ -81,6 +289,12 @@ public final class MigrationCli {
         @Option(name = "-v", usage = "Apply all versions up to and including")
         private int version;
 
+        @Option(name = "-k", usage = "Compact the history of applied versions up to and including")
+        private int compactVersion;
+
+        @Option(name = "-w", usage = "Keep running, applying new and changed migration files as they appear")
+        private boolean watch;
+
         public void setHosts(final List<String> hosts) {
             this.hosts = hosts;
         }
@@ -144,5 +358,21 @@ public final class MigrationCli {
         public void setVersion(final int version) {
             this.version = version;
         }
+
+        public int getCompactVersion() {
+            return compactVersion;
+        }
+
+        public void setCompactVersion(final int compactVersion) {
+            this.compactVersion = compactVersion;
+        }
+
+        public boolean isWatch() {
+            return watch;
+        }
+
+        public void setWatch(final boolean watch) {
+            this.watch = watch;
+        }
     }
 }
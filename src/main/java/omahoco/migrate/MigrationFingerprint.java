@@ -0,0 +1,52 @@
+package omahoco.migrate;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A rolling fingerprint of a migration history: each migration, in filename order, is hashed together with the
+ * fingerprint of the migrations before it. Two histories have the same fingerprint when they have the same
+ * filenames with the same checksums.
+ */
+public final class MigrationFingerprint {
+    public static final String EMPTY = "";
+
+    private MigrationFingerprint() {
+    }
+
+    public static String roll(final String previous, final Migration migration) {
+        return Hashing.sha256()
+                .newHasher()
+                .putString(previous, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(migration.getFileName(), StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(migration.getCheckSum(), StandardCharsets.UTF_8)
+                .hash()
+                .toString();
+    }
+
+    public static String of(final Collection<Migration> migrations) {
+        return of(EMPTY, migrations);
+    }
+
+    /**
+     * @return the fingerprint of {@code migrations} following a history with the fingerprint {@code previous}.
+     */
+    public static String of(final String previous, final Collection<Migration> migrations) {
+        final List<Migration> sorted = new ArrayList<>(migrations);
+        sorted.sort(Comparator.comparing(Migration::getFileName));
+
+        String fingerprint = previous;
+        for (final Migration migration : sorted) {
+            fingerprint = roll(fingerprint, migration);
+        }
+
+        return fingerprint;
+    }
+}
@@ -0,0 +1,46 @@
+package omahoco.migrate;
+
+/**
+ * Keeps runners that migrate the same graph at the same time, e.g. services that all start with a migration, from
+ * applying the same migrations. One runner holds the lock and applies the migrations, the others wait for it and then
+ * find nothing left to apply.
+ */
+public interface MigrationLock {
+    /**
+     * The lock of a graph only one runner migrates at a time.
+     */
+    MigrationLock NONE = () -> Lease.UNSHARED;
+
+    /**
+     * Waits until this runner holds the lock.
+     *
+     * @return the lease of the lock, which releases it when closed.
+     */
+    Lease acquire();
+
+    interface Lease extends AutoCloseable {
+        /**
+         * The lease of a lock no other runner shares.
+         */
+        Lease UNSHARED = new Lease() {
+            @Override
+            public boolean isHeld() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+                // Nothing to release.
+            }
+        };
+
+        /**
+         * @return false once the lease has expired or another runner has taken the lock over, after which this
+         * runner must not start applying another migration.
+         */
+        boolean isHeld();
+
+        @Override
+        void close();
+    }
+}
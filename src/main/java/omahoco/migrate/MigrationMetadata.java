@@ -1,9 +1,47 @@
 package omahoco.migrate;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface MigrationMetadata {
+    /**
+     * @return the applied migrations that haven't been compacted.
+     */
     List<Migration> getMigrations();
 
+    /**
+     * @return the summary of the applied migrations, or empty when there isn't one yet.
+     */
+    Optional<MigrationSummary> getSummary();
+
     void saveMigration(Migration migration);
+
+    /**
+     * Rebuilds the summary from the records of the applied migrations and writes it when it is missing or doesn't
+     * match them, so a history that predates the summary or a stale summary is only read in full once.
+     *
+     * @param applied the applied migrations, as returned by {@link #getMigrations()}.
+     */
+    void rebuildSummary(Collection<Migration> applied);
+
+    /**
+     * Folds the applied migrations up to and including {@code version} into the summary and removes their records.
+     *
+     * @return the number of migrations compacted.
+     */
+    int compact(int version);
+
+    /**
+     * @return the checkpoints of migrations that were partly applied, by filename.
+     */
+    Map<String, MigrationCheckpoint> getCheckpoints();
+
+    /**
+     * Replaces the checkpoint of the migration being applied.
+     */
+    void saveCheckpoint(MigrationCheckpoint checkpoint);
+
+    void removeCheckpoint(String fileName);
 }
@@ -0,0 +1,230 @@
+package omahoco.migrate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Orders the migrations to apply by their dependencies, and applies migrations that don't depend on each other
+ * concurrently, up to {@code parallelism} at a time.
+ * <p>
+ * A migration that declares its dependencies, see {@link Migration#getDependsOn()}, waits for the migrations of
+ * those versions only. A migration that doesn't waits for every earlier migration, so without declarations
+ * migrations are applied one after another in file name order. Dependencies must be on earlier versions, so the
+ * migrations always form a DAG and file name order is always a valid order to apply them in. A dependency that has
+ * already been applied is satisfied.
+ * <p>
+ * Once a migration fails no more migrations are started, the migrations being applied are waited for and the failure
+ * of the first migration in file name order is thrown.
+ */
+final class MigrationScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MigrationScheduler.class);
+    private final List<Migration> migrations;
+    private final int parallelism;
+    private final List<Set<Integer>> dependents = new ArrayList<>();
+    private final int[] dependencies;
+
+    /**
+     * @param fileMigrations every migration file, dependencies must name versions among them.
+     * @param migrations     the migrations to apply, in file name order.
+     */
+    MigrationScheduler(final List<Migration> fileMigrations, final List<Migration> migrations, final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Migration parallelism must be at least 1, was " + parallelism);
+        }
+
+        this.migrations = new ArrayList<>(migrations);
+        this.parallelism = parallelism;
+        this.dependencies = new int[migrations.size()];
+        link(fileMigrations);
+    }
+
+    /**
+     * Links each migration to the migrations it waits for. A migration that doesn't declare its dependencies waits
+     * for the earlier migrations no later migration waits for yet, and so transitively for every earlier migration.
+     */
+    private void link(final List<Migration> fileMigrations) {
+        final Set<Integer> versions = new LinkedHashSet<>();
+        fileMigrations.forEach(t -> versions.add(t.getVersion()));
+
+        final Map<Integer, List<Integer>> byVersion = new HashMap<>();
+        Set<Integer> unwaited = new LinkedHashSet<>();
+        for (int i = 0; i < migrations.size(); i++) {
+            final Migration migration = migrations.get(i);
+            dependents.add(new LinkedHashSet<>());
+
+            final Set<Integer> waitsFor = new LinkedHashSet<>();
+            if (migration.getDependsOn() == null) {
+                waitsFor.addAll(unwaited);
+                unwaited = new LinkedHashSet<>();
+            } else {
+                for (final int version : migration.getDependsOn()) {
+                    validate(migration, version, versions);
+                    waitsFor.addAll(byVersion.getOrDefault(version, new ArrayList<>()));
+                }
+                unwaited.removeAll(waitsFor);
+            }
+
+            for (final int dependency : waitsFor) {
+                dependents.get(dependency).add(i);
+            }
+            dependencies[i] = waitsFor.size();
+            unwaited.add(i);
+            byVersion.computeIfAbsent(migration.getVersion(), t -> new ArrayList<>()).add(i);
+        }
+    }
+
+    private static void validate(final Migration migration, final int version, final Set<Integer> versions) {
+        if (version >= migration.getVersion()) {
+            throw new IllegalArgumentException(
+                    MessageFormat.format(
+                            "Migration {0} depends on version {1}, dependencies must be on earlier versions",
+                            migration.getFileName(), version));
+        }
+
+        if (!versions.contains(version)) {
+            throw new IllegalArgumentException(
+                    MessageFormat.format(
+                            "Migration {0} depends on version {1}, which has no migration file",
+                            migration.getFileName(), version));
+        }
+    }
+
+    /**
+     * Passes each migration to {@code apply} once the migrations it depends on have been applied.
+     *
+     * @param stopSignal checked before each migration is started, the migration stops once it is true.
+     */
+    void run(final Consumer<Migration> apply, final BooleanSupplier stopSignal) {
+        if (parallelism == 1 || migrations.size() < 2) {
+            for (final Migration migration : migrations) {
+                checkStopped(migration, stopSignal);
+                apply.accept(migration);
+            }
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, migrations.size()),
+                new ThreadFactoryBuilder().setNameFormat("migration-%d").setDaemon(true).build());
+        try {
+            runConcurrently(apply, stopSignal, new ExecutorCompletionService<>(executor));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runConcurrently(
+            final Consumer<Migration> apply,
+            final BooleanSupplier stopSignal,
+            final CompletionService<Integer> completionService) {
+        // Migrations are applied on pool threads, which log with the context of the calling thread.
+        final Map<String, String> context = MDC.getCopyOfContextMap();
+        final Queue<Integer> ready = new PriorityQueue<>();
+        final Map<String, RuntimeException> failures = new TreeMap<>();
+        final Map<Future<Integer>, Integer> submitted = new HashMap<>();
+        for (int i = 0; i < migrations.size(); i++) {
+            if (dependencies[i] == 0) {
+                ready.add(i);
+            }
+        }
+
+        while (true) {
+            while (!ready.isEmpty() && submitted.size() < parallelism && failures.isEmpty()) {
+                final int next = ready.remove();
+                try {
+                    checkStopped(migrations.get(next), stopSignal);
+                } catch (final IllegalStateException e) {
+                    failures.put(migrations.get(next).getFileName(), e);
+                    break;
+                }
+
+                submitted.put(completionService.submit(() -> {
+                    if (context != null) {
+                        MDC.setContextMap(context);
+                    }
+                    try {
+                        apply.accept(migrations.get(next));
+                        return next;
+                    } finally {
+                        MDC.clear();
+                    }
+                }), next);
+            }
+
+            if (submitted.isEmpty()) {
+                break;
+            }
+
+            final Future<Integer> completed = take(completionService);
+            final int index = submitted.remove(completed);
+            try {
+                completed.get();
+                dependents.get(index).forEach(t -> {
+                    dependencies[t]--;
+                    if (dependencies[t] == 0) {
+                        ready.add(t);
+                    }
+                });
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for migrations to be applied.", e);
+            } catch (final ExecutionException e) {
+                failures.put(migrations.get(index).getFileName(), failure(e.getCause()));
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            failures.entrySet().stream().skip(1).forEach(t ->
+                    LOGGER.error("Migration {} also failed.", t.getKey(), t.getValue()));
+            throw failures.values().iterator().next();
+        }
+    }
+
+    private static Future<Integer> take(final CompletionService<Integer> completionService) {
+        try {
+            return completionService.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for migrations to be applied.", e);
+        }
+    }
+
+    private static RuntimeException failure(final Throwable cause) {
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+
+        return new IllegalStateException(cause);
+    }
+
+    private static void checkStopped(final Migration migration, final BooleanSupplier stopSignal) {
+        if (stopSignal.getAsBoolean()) {
+            throw new IllegalStateException("Migration stopped before " + migration.getFileName());
+        }
+    }
+}
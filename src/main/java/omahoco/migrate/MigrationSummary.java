@@ -0,0 +1,55 @@
+package omahoco.migrate;
+
+import java.util.Objects;
+
+/**
+ * A summary of the migrations applied to a database, so a run can tell whether there is anything to apply with a
+ * single read.
+ * <p>
+ * Applied migrations up to and including {@code compactedThrough} may have been compacted, their individual records
+ * removed and only their fingerprint kept in {@code compactedFingerprint}.
+ */
+public final class MigrationSummary {
+    private final String fingerprint;
+    private final String lastFileName;
+    private final String compactedThrough;
+    private final String compactedFingerprint;
+
+    public MigrationSummary(
+            final String fingerprint,
+            final String lastFileName,
+            final String compactedThrough,
+            final String compactedFingerprint) {
+        this.fingerprint = Objects.requireNonNull(fingerprint);
+        this.lastFileName = Objects.requireNonNull(lastFileName);
+        this.compactedThrough = Objects.requireNonNull(compactedThrough);
+        this.compactedFingerprint = Objects.requireNonNull(compactedFingerprint);
+    }
+
+    /**
+     * @return the {@link MigrationFingerprint} of every applied migration, including compacted migrations.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getLastFileName() {
+        return lastFileName;
+    }
+
+    public boolean isCompacted() {
+        return !compactedThrough.isEmpty();
+    }
+
+    public boolean isCompacted(final Migration migration) {
+        return isCompacted() && migration.getFileName().compareTo(compactedThrough) <= 0;
+    }
+
+    public String getCompactedThrough() {
+        return compactedThrough;
+    }
+
+    public String getCompactedFingerprint() {
+        return compactedFingerprint;
+    }
+}
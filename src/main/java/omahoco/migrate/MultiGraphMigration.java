@@ -0,0 +1,157 @@
+package omahoco.migrate;
+
+import omahoco.migrate.config.Config;
+import omahoco.migrate.graph.SlowStatementLog;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the same migrations to many graphs, e.g. one graph per tenant. Each graph has its own
+ * {@link SchemaMigration}, and up to {@code parallelism} graphs are migrated concurrently. A graph that fails doesn't
+ * stop the others, the failures are returned once every graph has been migrated.
+ */
+public final class MultiGraphMigration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MultiGraphMigration.class);
+    private final List<String> graphNames;
+    private final int parallelism;
+    private final Function<String, SchemaMigration> migrations;
+
+    /**
+     * @param migrations creates the migration of a graph, called on the thread that migrates the graph.
+     */
+    public MultiGraphMigration(
+            final List<String> graphNames,
+            final int parallelism,
+            final Function<String, SchemaMigration> migrations) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Graph parallelism must be at least 1, was " + parallelism);
+        }
+
+        this.graphNames = new ArrayList<>(graphNames);
+        this.parallelism = parallelism;
+        this.migrations = Objects.requireNonNull(migrations);
+    }
+
+    /**
+     * @return the graphs named by {@code schema} and {@code schemas}, followed by the existing graphs matching
+     * {@code schemaPattern} in name order. {@code existingGraphs} is only called when there is a pattern.
+     */
+    public static List<String> graphNames(final Config config, final Supplier<List<String>> existingGraphs) {
+        final Set<String> names = new LinkedHashSet<>();
+        if (config.getSchema() != null) {
+            names.add(config.getSchema());
+        }
+
+        if (config.getSchemas() != null) {
+            names.addAll(config.getSchemas());
+        }
+
+        if (config.getSchemaPattern() != null) {
+            final Pattern pattern = Pattern.compile(config.getSchemaPattern());
+            existingGraphs.get().stream()
+                    .filter(t -> pattern.matcher(t).matches())
+                    .sorted()
+                    .forEach(names::add);
+        }
+
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "No graphs to migrate, set schema or schemas, or a schemaPattern matching existing graphs.");
+        }
+
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Passes the migration of each graph to {@code action}.
+     *
+     * @return the failure of each graph that failed, by graph name.
+     */
+    public Map<String, Throwable> migrate(final Consumer<SchemaMigration> action) {
+        final Map<String, Throwable> failures = new TreeMap<>();
+
+        if (parallelism == 1 || graphNames.size() < 2) {
+            for (final String graphName : graphNames) {
+                try {
+                    migrate(graphName, action);
+                } catch (final RuntimeException e) {
+                    failures.put(graphName, e);
+                }
+            }
+            return logged(failures);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, graphNames.size()),
+                new ThreadFactoryBuilder().setNameFormat("graph-migration-%d").setDaemon(true).build());
+        try {
+            // Graphs are migrated on pool threads, which log with the context of the calling thread.
+            final Map<String, String> context = MDC.getCopyOfContextMap();
+            final Map<String, Future<?>> futures = new LinkedHashMap<>();
+            graphNames.forEach(t -> futures.put(t, executor.submit(() -> {
+                if (context != null) {
+                    MDC.setContextMap(context);
+                }
+                try {
+                    migrate(t, action);
+                } finally {
+                    MDC.clear();
+                }
+            })));
+
+            for (final Map.Entry<String, Future<?>> future : futures.entrySet()) {
+                try {
+                    future.getValue().get();
+                } catch (final ExecutionException e) {
+                    failures.put(future.getKey(), e.getCause());
+                }
+            }
+
+            return logged(failures);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for graphs to be migrated.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void migrate(final String graphName, final Consumer<SchemaMigration> action) {
+        try (MDC.MDCCloseable graph = MDC.putCloseable(SlowStatementLog.GRAPH, graphName)) {
+            if (graphNames.size() > 1) {
+                LOGGER.info("Migrating graph {}", graphName);
+            }
+            action.accept(migrations.apply(graphName));
+        } catch (final RuntimeException e) {
+            LOGGER.error("Migration of graph {} failed.", graphName, e);
+            throw e;
+        }
+    }
+
+    private Map<String, Throwable> logged(final Map<String, Throwable> failures) {
+        if (graphNames.size() > 1) {
+            LOGGER.info("Migrated {} of {} graphs.", graphNames.size() - failures.size(), graphNames.size());
+        }
+
+        return failures;
+    }
+}
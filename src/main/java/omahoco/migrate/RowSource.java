@@ -0,0 +1,15 @@
+package omahoco.migrate;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Supplies the rows of a data migration lazily, so they don't all have to be held in memory at once.
+ */
+@FunctionalInterface
+public interface RowSource {
+    /**
+     * Opens a new stream over the rows, which must be closed once it has been consumed.
+     */
+    Stream<Map<String, Object>> open();
+}
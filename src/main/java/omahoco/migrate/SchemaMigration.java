@@ -1,65 +1,138 @@
 package omahoco.migrate;
 
 import omahoco.migrate.config.Profile;
+import omahoco.migrate.execute.StatementBatch;
+import omahoco.migrate.execute.StatementBatcher;
+import omahoco.migrate.execute.StatementExecutor;
+import omahoco.migrate.graph.GraphSchema;
 import omahoco.migrate.graph.Schema;
+import omahoco.migrate.graph.SlowStatementLog;
 import omahoco.migrate.io.MigrationFileLoader;
 import omahoco.migrate.io.MigrationSource;
 import omahoco.migrate.parse.SimpleStatementParser;
-import com.datastax.driver.dse.DseSession;
+import com.codahale.metrics.MetricRegistry;
 import com.datastax.driver.dse.graph.GraphResultSet;
 import com.datastax.driver.dse.graph.GraphStatement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import javax.inject.Inject;
 import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-public final class SchemaMigration implements AutoCloseable {
+public final class SchemaMigration {
     private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigration.class);
     private final Profile profile;
-    private final MigrationFileLoader migrationFileLoader =
-            new MigrationFileLoader(new SimpleStatementParser());
-    private final DseSession dseSession;
+    private final MigrationFileLoader migrationFileLoader;
     private int maxVersion = Integer.MAX_VALUE;
+    private BooleanSupplier stopSignal = () -> false;
     private final Schema<GraphResultSet, GraphStatement> schema;
     private final MigrationSource migrationSource;
     private final MigrationMetadata migrationMetadata;
+    private final MigrationLock migrationLock;
+    private final StatementBatcher statementBatcher;
+    private final StatementExecutor statementExecutor;
+    private final Object metadataLock = new Object();
+    private boolean schemaCreated;
 
-    @Inject
     SchemaMigration(
-            final DseSession dseSession,
             final Profile profile,
             final Schema<GraphResultSet, GraphStatement> schema,
             final MigrationMetadata migrationMetadata,
             final MigrationSource migrationSource) {
-        this.dseSession = dseSession;
+        this(profile, schema, migrationMetadata, migrationSource, MigrationLock.NONE,
+                new MigrationFileLoader(new SimpleStatementParser()), new MetricRegistry());
+    }
+
+    @Inject
+    SchemaMigration(
+            final Profile profile,
+            final Schema<GraphResultSet, GraphStatement> schema,
+            final MigrationMetadata migrationMetadata,
+            final MigrationSource migrationSource,
+            final MigrationLock migrationLock,
+            final MigrationFileLoader migrationFileLoader,
+            final MetricRegistry metricRegistry) {
+        this.migrationFileLoader = migrationFileLoader;
         this.profile = profile;
         this.schema = schema;
         this.migrationMetadata = migrationMetadata;
+        this.migrationLock = migrationLock;
         this.migrationSource = migrationSource;
+        this.statementBatcher =
+                new StatementBatcher(
+                        profile.getExecution().getBatchSize(),
+                        profile.getExecution().getBatchBytes(),
+                        profile.getExecution().isMergeSchemaStatements(),
+                        GraphSchema::isSchemaChange);
+        this.statementExecutor = new StatementExecutor(schema, profile.getExecution(), metricRegistry);
     }
 
     public void setMaxVersion(final int maxVersion) {
         this.maxVersion = maxVersion;
     }
 
-    public void migrate() {
-        schema.create(profile.getOptions());
+    /**
+     * @param stopSignal checked before each migration file is applied, the migration stops once it is true.
+     */
+    public void setStopSignal(final BooleanSupplier stopSignal) {
+        this.stopSignal = Objects.requireNonNull(stopSignal);
+    }
 
-        final List<Migration> fileMigrations =
-                migrationSource
-                        .getMigrations()
-                        .stream()
-                        .map(migrationFileLoader::load)
-                        .collect(Collectors.toList());
+    public void migrate() {
+        migrate(migrationFileLoader.load(migrationSource.getMigrations()));
+    }
 
+    /**
+     * Applies the migration files that haven't been applied to the graph. The files can be shared with the migrations
+     * of other graphs.
+     * <p>
+     * The migrations are applied holding the {@link MigrationLock} of the graph. A runner that waited for the lock
+     * reads the applied migrations again, so it finds the migrations applied by the runner that held it. The lease
+     * is checked before each batch of statements is sent, so a runner that loses it stops within the migration
+     * file it is applying, before another runner can take the lock and apply the same statements.
+     */
+    public void migrate(final List<Migration> fileMigrations) {
         LOGGER.info("Found {} migration files.", fileMigrations.size());
 
+        if (isApplied(migrationMetadata.getSummary(), fileMigrations)) {
+            return;
+        }
+
+        try (MigrationLock.Lease lease = migrationLock.acquire()) {
+            final Optional<MigrationSummary> summary = migrationMetadata.getSummary();
+            if (isApplied(summary, fileMigrations)) {
+                return;
+            }
+
+            final BooleanSupplier leaseLost = () -> !lease.isHeld();
+            migrate(fileMigrations, summary, () -> stopSignal.getAsBoolean() || leaseLost.getAsBoolean(), leaseLost);
+        }
+    }
+
+    private void migrate(
+            final List<Migration> fileMigrations,
+            final Optional<MigrationSummary> summary,
+            final BooleanSupplier stopped,
+            final BooleanSupplier leaseLost) {
+        // The graph only needs creating once when the migration is kept to apply files as they appear.
+        if (!schemaCreated) {
+            schema.create(profile.getOptions());
+            schemaCreated = true;
+        }
+
         final Map<String, Migration> appliedMigrations =
                 migrationMetadata
                         .getMigrations()
@@ -67,48 +140,216 @@ public final class SchemaMigration implements AutoCloseable {
                         .collect(Collectors.toMap(t -> t.getFileName(), Function.identity()));
 
         final List<Migration> migrationsToApply =
-                fileMigrations
+                removeCompacted(summary, fileMigrations)
                         .stream()
                         .filter(t -> applyMigrationFilter(appliedMigrations, t, maxVersion))
                         .collect(Collectors.toList());
 
         LOGGER.info("{} migration files need to be applied to the database.", migrationsToApply.size());
+        if (migrationsToApply.isEmpty()) {
+            // The summary is missing or stale, or this pass wouldn't have been needed. Writing it lets the next run
+            // with nothing to apply stop after reading it.
+            migrationMetadata.rebuildSummary(appliedMigrations.values());
+        }
+
+        applyMigrations(fileMigrations, appliedMigrations, migrationsToApply, getCheckpoints(), stopped, leaseLost);
+    }
+
+    private static boolean isApplied(final Optional<MigrationSummary> summary, final List<Migration> fileMigrations) {
+        if (summary.isPresent() && summary.get().getFingerprint().equals(MigrationFingerprint.of(fileMigrations))) {
+            LOGGER.info("All migration files have already been applied to the database.");
+            return true;
+        }
 
-        applyMigrations(appliedMigrations, migrationsToApply);
+        return false;
     }
 
-    private void applyMigrations(final Map<String, Migration> appliedMigrations,
-                                 final List<Migration> migrationsToApply) {
-        for (final Migration migration : migrationsToApply) {
-            final Migration dbMigration = appliedMigrations.get(migration.getFileName());
-            if (dbMigration != null && !migration.getCheckSum().equals(dbMigration.getCheckSum())) {
-                throw new IllegalStateException(
-                        MessageFormat.format(
-                                "Migration {0} already applied with checksum {1} at {2}",
-                                migration.getFileName(), dbMigration.getCheckSum(), dbMigration.getAppliedAt()));
+    /**
+     * Folds the history of applied migrations up to and including {@code version} into the migration summary.
+     */
+    public void compact(final int version) {
+        try (MigrationLock.Lease lease = migrationLock.acquire()) {
+            migrationMetadata.compact(version);
+        }
+    }
+
+    /**
+     * Compacted migrations no longer have their own records, so they are checked as a whole against the fingerprint
+     * in the summary.
+     */
+    private static List<Migration> removeCompacted(
+            final Optional<MigrationSummary> summary,
+            final List<Migration> fileMigrations) {
+        if (!summary.isPresent() || !summary.get().isCompacted()) {
+            return fileMigrations;
+        }
+
+        final Map<Boolean, List<Migration>> compacted =
+                fileMigrations.stream().collect(Collectors.partitioningBy(summary.get()::isCompacted));
+
+        if (!MigrationFingerprint.of(compacted.get(true)).equals(summary.get().getCompactedFingerprint())) {
+            throw new IllegalStateException(
+                    MessageFormat.format(
+                            "The migration files up to {0} don''t match the compacted migration history",
+                            summary.get().getCompactedThrough()));
+        }
+
+        return compacted.get(false);
+    }
+
+    /**
+     * Checkpoints are only read when they are being written, a checkpoint left behind while they were enabled is
+     * otherwise ignored.
+     */
+    private Map<String, MigrationCheckpoint> getCheckpoints() {
+        if (profile.getExecution().getCheckpointInterval() == 0) {
+            return Collections.emptyMap();
+        }
+
+        return migrationMetadata.getCheckpoints();
+    }
+
+    private void applyMigrations(final List<Migration> fileMigrations,
+                                 final Map<String, Migration> appliedMigrations,
+                                 final List<Migration> migrationsToApply,
+                                 final Map<String, MigrationCheckpoint> checkpoints,
+                                 final BooleanSupplier stopped,
+                                 final BooleanSupplier leaseLost) {
+        new MigrationScheduler(fileMigrations, migrationsToApply, profile.getExecution().getMigrationParallelism())
+                .run(t -> applyMigration(appliedMigrations, t, checkpoints, leaseLost), stopped);
+    }
+
+    /**
+     * Applies one migration file, called concurrently for migrations that don't depend on each other. Writes to the
+     * migration metadata are serialized as it keeps state between calls.
+     */
+    private void applyMigration(final Map<String, Migration> appliedMigrations,
+                                final Migration migration,
+                                final Map<String, MigrationCheckpoint> checkpoints,
+                                final BooleanSupplier leaseLost) {
+        final Migration dbMigration = appliedMigrations.get(migration.getFileName());
+        if (dbMigration != null && !migration.getCheckSum().equals(dbMigration.getCheckSum())) {
+            throw new IllegalStateException(
+                    MessageFormat.format(
+                            "Migration {0} already applied with checksum {1} at {2}, {3}",
+                            migration.getFileName(), dbMigration.getCheckSum(), dbMigration.getAppliedAt(),
+                            describeDifference(dbMigration, migration)));
+        }
+
+        final int resumeFrom = getResumeIndex(checkpoints.get(migration.getFileName()), migration);
+        final AtomicInteger parsedStatements = new AtomicInteger();
+        final AtomicBoolean checkpointed = new AtomicBoolean(checkpoints.containsKey(migration.getFileName()));
+        int executedStatements = 0;
+        try (MDC.MDCCloseable location = MDC.putCloseable(SlowStatementLog.MIGRATION, migration.getFileName());
+             Stream<String> statements = migration.streamStatements();
+             Stream<Map<String, Object>> rows = migration.streamRows()) {
+            final Iterator<StatementBatch> batches;
+            if (migration.hasRows()) {
+                batches = statementBatcher.batchRows(
+                        getTemplate(migration, statements),
+                        rows.skip(resumeFrom).peek(t -> parsedStatements.incrementAndGet()).iterator(),
+                        resumeFrom);
+            } else {
+                batches = statementBatcher.batch(
+                        statements.skip(resumeFrom).peek(t -> parsedStatements.incrementAndGet()).iterator(),
+                        resumeFrom);
             }
 
+            executedStatements =
+                    statementExecutor.execute(
+                            batches,
+                            t -> {
+                                synchronized (metadataLock) {
+                                    migrationMetadata.saveCheckpoint(
+                                            new MigrationCheckpoint(
+                                                    migration.getFileName(), migration.getCheckSum(), t));
+                                }
+                                checkpointed.set(true);
+                            },
+                            leaseLost);
+        } finally {
+            logApplied(migration, resumeFrom, executedStatements, parsedStatements.get());
+        }
+
+        synchronized (metadataLock) {
+            migrationMetadata.saveMigration(migration);
+            if (checkpointed.get()) {
+                migrationMetadata.removeCheckpoint(migration.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Logs the statements executed out of all the statements of the file, including those applied before a resume.
+     */
+    private static void logApplied(
+            final Migration migration,
+            final int resumeFrom,
+            final int executedStatements,
+            final int parsedStatements) {
+        if (resumeFrom == 0) {
+            LOGGER.info("{} - Applied {} of {} statements.",
+                    migration.getFileName(), executedStatements, parsedStatements);
+            return;
+        }
+
+        LOGGER.info("{} - Applied {} of {} statements, the first {} were applied before resuming.",
+                migration.getFileName(), executedStatements, resumeFrom + parsedStatements, resumeFrom);
+    }
+
+    /**
+     * @return the only statement of a data migration, the template that writes each row.
+     */
+    private static String getTemplate(final Migration migration, final Stream<String> statements) {
+        return statements
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Data migration " + migration.getFileName()
+                        + " has no template"));
+    }
+
+    private static int getResumeIndex(final MigrationCheckpoint checkpoint, final Migration migration) {
+        if (checkpoint == null) {
             LOGGER.info("Applying migration file {}", migration.getFileName());
-            int executedStatements = 0;
-            try {
-                for (final String statement : migration.getStatements()) {
-                    try {
-                        schema.execute(statement);
-                        executedStatements++;
-                    } catch (final Exception e) {
-                        LOGGER.error("Statement execution failed on statement # {}", executedStatements, e);
-                        LOGGER.error("'{}'", statement);
-                    }
+            return 0;
+        }
+
+        if (!checkpoint.matches(migration)) {
+            LOGGER.warn("Migration file {} changed since it was partly applied, applying it from the start.",
+                    migration.getFileName());
+            return 0;
+        }
+
+        LOGGER.info("Resuming migration file {} from statement # {}",
+                migration.getFileName(), checkpoint.getStatementIndex() + 1);
+        return checkpoint.getStatementIndex();
+    }
+
+    /**
+     * Compares the statements of an applied migration with its file. Only done to report a checksum mismatch as the
+     * contents of the applied migration are fetched from the database.
+     */
+    private static String describeDifference(final Migration applied, final Migration migration) {
+        try (Stream<String> appliedStatements = applied.streamStatements();
+             Stream<String> statements = migration.streamStatements()) {
+            final Iterator<String> appliedIterator = appliedStatements.iterator();
+            final Iterator<String> iterator = statements.iterator();
+            int index = 1;
+
+            while (appliedIterator.hasNext() && iterator.hasNext()) {
+                if (!appliedIterator.next().equals(iterator.next())) {
+                    return "statement #" + index + " differs";
                 }
-            } finally {
-                LOGGER.info(
-                        "{} - Applied {} of {} statements.",
-                        migration.getFileName(),
-                        executedStatements,
-                        migration.getStatements().size());
+                index++;
             }
 
-            migrationMetadata.saveMigration(migration);
+            if (appliedIterator.hasNext() || iterator.hasNext()) {
+                return "the number of statements differs after statement #" + (index - 1);
+            }
+
+            return "the statements are the same";
+        } catch (final RuntimeException e) {
+            LOGGER.warn("Unable to compare migration {} with the applied version", migration.getFileName(), e);
+            return "the statements could not be compared";
         }
     }
 
@@ -123,9 +364,4 @@ public final class SchemaMigration implements AutoCloseable {
                 || !migrationApplied.get().getCheckSum().equals(migration.getCheckSum()))
                 && migration.getVersion() <= maxVersion;
     }
-
-    @Override
-    public void close() throws Exception {
-        dseSession.getCluster().close();
-    }
 }
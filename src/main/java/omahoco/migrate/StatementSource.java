@@ -0,0 +1,14 @@
+package omahoco.migrate;
+
+import java.util.stream.Stream;
+
+/**
+ * Supplies the statements of a migration lazily, so they don't all have to be held in memory at once.
+ */
+@FunctionalInterface
+public interface StatementSource {
+    /**
+     * Opens a new stream over the statements, which must be closed once it has been consumed.
+     */
+    Stream<String> open();
+}
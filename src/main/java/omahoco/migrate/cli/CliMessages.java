@@ -0,0 +1,30 @@
+package omahoco.migrate.cli;
+
+import org.kohsuke.args4j.Localizable;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+
+/**
+ * Messages for command line errors that args4j can't detect by itself, such as options required depending on the
+ * configuration.
+ */
+public enum CliMessages implements Localizable {
+    REQUIRED_OPTION_WITHOUT_CLUSTERS("Option \"{0}\" is required unless the configuration lists clusters");
+
+    private final String pattern;
+
+    CliMessages(final String pattern) {
+        this.pattern = pattern;
+    }
+
+    @Override
+    public String formatWithLocale(final Locale locale, final Object... args) {
+        return new MessageFormat(pattern, locale).format(args);
+    }
+
+    @Override
+    public String format(final Object... args) {
+        return formatWithLocale(Locale.getDefault(), args);
+    }
+}
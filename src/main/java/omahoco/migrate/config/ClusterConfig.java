@@ -0,0 +1,64 @@
+package omahoco.migrate.config;
+
+import java.util.List;
+
+/**
+ * A cluster to migrate, from the {@code clusters} section of the configuration or the command line.
+ */
+public final class ClusterConfig {
+    private static final int DEFAULT_PORT = 9042;
+    private List<String> hosts;
+    private int port = DEFAULT_PORT;
+    private boolean ssl;
+    private String userName;
+    private String password;
+    private String profile;
+
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    public void setHosts(final List<String> hosts) {
+        this.hosts = hosts;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(final int port) {
+        this.port = port;
+    }
+
+    public boolean isSsl() {
+        return ssl;
+    }
+
+    public void setSsl(final boolean ssl) {
+        this.ssl = ssl;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(final String userName) {
+        this.userName = userName;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(final String password) {
+        this.password = password;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public void setProfile(final String profile) {
+        this.profile = profile;
+    }
+}
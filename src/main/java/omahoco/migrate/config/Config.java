@@ -1,12 +1,33 @@
 package omahoco.migrate.config;
 
+import java.util.List;
 import java.util.Map;
 
 public final class Config {
     private String schema;
+    private List<String> schemas;
+    private String schemaPattern;
+    private int graphParallelism = 1;
     private Map<String, Profile> profiles;
     private String migrationPath;
     private String configPath;
+    private String encoding = "UTF-8";
+    private int loadThreads = Runtime.getRuntime().availableProcessors();
+    private String cachePath;
+    private ContentStorage contentStorage = ContentStorage.FULL;
+    private int maxContentLength;
+    private String metricsFile;
+    private Map<String, ClusterConfig> clusters;
+    private RolloutConfig rollout = new RolloutConfig();
+
+    /**
+     * How the statements of applied migrations are stored.
+     */
+    public enum ContentStorage {
+        FULL,
+        GZIP,
+        CHECKSUM
+    }
 
     public String getSchema() {
         return schema;
@@ -16,6 +37,30 @@ public final class Config {
         this.schema = schema;
     }
 
+    public List<String> getSchemas() {
+        return schemas;
+    }
+
+    public void setSchemas(final List<String> schemas) {
+        this.schemas = schemas;
+    }
+
+    public String getSchemaPattern() {
+        return schemaPattern;
+    }
+
+    public void setSchemaPattern(final String schemaPattern) {
+        this.schemaPattern = schemaPattern;
+    }
+
+    public int getGraphParallelism() {
+        return graphParallelism;
+    }
+
+    public void setGraphParallelism(final int graphParallelism) {
+        this.graphParallelism = graphParallelism;
+    }
+
     public Map<String, Profile> getProfiles() {
         return profiles;
     }
@@ -39,4 +84,72 @@ public final class Config {
     public void setConfigPath(final String configPath) {
         this.configPath = configPath;
     }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(final String encoding) {
+        this.encoding = encoding;
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    public void setLoadThreads(final int loadThreads) {
+        this.loadThreads = loadThreads;
+    }
+
+    public String getCachePath() {
+        return cachePath;
+    }
+
+    public void setCachePath(final String cachePath) {
+        this.cachePath = cachePath;
+    }
+
+    public ContentStorage getContentStorage() {
+        return contentStorage;
+    }
+
+    public void setContentStorage(final ContentStorage contentStorage) {
+        this.contentStorage = contentStorage;
+    }
+
+    /**
+     * @return the length in characters of the statements of a migration past which only its checksum is stored,
+     * 0 to store the contents of every migration.
+     */
+    public int getMaxContentLength() {
+        return maxContentLength;
+    }
+
+    public void setMaxContentLength(final int maxContentLength) {
+        this.maxContentLength = maxContentLength;
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public void setMetricsFile(final String metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public Map<String, ClusterConfig> getClusters() {
+        return clusters;
+    }
+
+    public void setClusters(final Map<String, ClusterConfig> clusters) {
+        this.clusters = clusters;
+    }
+
+    public RolloutConfig getRollout() {
+        return rollout;
+    }
+
+    public void setRollout(final RolloutConfig rollout) {
+        this.rollout = rollout;
+    }
 }
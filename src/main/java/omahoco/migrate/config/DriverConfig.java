@@ -0,0 +1,62 @@
+package omahoco.migrate.config;
+
+/**
+ * Tunes the driver's connection to a cluster, in the {@code driver} section of a profile. Settings that aren't set
+ * keep the driver's defaults.
+ */
+public final class DriverConfig {
+    private Compression compression = Compression.NONE;
+    private PoolingConfig pooling = new PoolingConfig();
+    private LoadBalancingConfig loadBalancing = new LoadBalancingConfig();
+    private SocketConfig socket = new SocketConfig();
+    private GraphConfig graph = new GraphConfig();
+
+    public enum Compression {
+        NONE,
+        LZ4,
+        SNAPPY
+    }
+
+    /**
+     * @return how requests and responses are compressed, worthwhile for large scripts and batches.
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(final Compression compression) {
+        this.compression = compression;
+    }
+
+    public PoolingConfig getPooling() {
+        return pooling;
+    }
+
+    public void setPooling(final PoolingConfig pooling) {
+        this.pooling = pooling;
+    }
+
+    public LoadBalancingConfig getLoadBalancing() {
+        return loadBalancing;
+    }
+
+    public void setLoadBalancing(final LoadBalancingConfig loadBalancing) {
+        this.loadBalancing = loadBalancing;
+    }
+
+    public SocketConfig getSocket() {
+        return socket;
+    }
+
+    public void setSocket(final SocketConfig socket) {
+        this.socket = socket;
+    }
+
+    public GraphConfig getGraph() {
+        return graph;
+    }
+
+    public void setGraph(final GraphConfig graph) {
+        this.graph = graph;
+    }
+}
@@ -0,0 +1,95 @@
+package omahoco.migrate.config;
+
+public final class ExecutionConfig {
+    private static final int DEFAULT_BATCH_BYTES = 64 * 1024;
+    private int batchSize = 1;
+    private int batchBytes = DEFAULT_BATCH_BYTES;
+    private int maxInFlight = 1;
+    private boolean deferSchemaAgreement;
+    private boolean mergeSchemaStatements;
+    private boolean parameterizeLiterals;
+    private int checkpointInterval;
+    private int slowStatementMillis;
+    private double traceSampleRate;
+    private int migrationParallelism = 1;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchBytes() {
+        return batchBytes;
+    }
+
+    public void setBatchBytes(final int batchBytes) {
+        this.batchBytes = batchBytes;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(final int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public boolean isDeferSchemaAgreement() {
+        return deferSchemaAgreement;
+    }
+
+    public void setDeferSchemaAgreement(final boolean deferSchemaAgreement) {
+        this.deferSchemaAgreement = deferSchemaAgreement;
+    }
+
+    public boolean isMergeSchemaStatements() {
+        return mergeSchemaStatements;
+    }
+
+    public void setMergeSchemaStatements(final boolean mergeSchemaStatements) {
+        this.mergeSchemaStatements = mergeSchemaStatements;
+    }
+
+    public boolean isParameterizeLiterals() {
+        return parameterizeLiterals;
+    }
+
+    public void setParameterizeLiterals(final boolean parameterizeLiterals) {
+        this.parameterizeLiterals = parameterizeLiterals;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval(final int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public int getSlowStatementMillis() {
+        return slowStatementMillis;
+    }
+
+    public void setSlowStatementMillis(final int slowStatementMillis) {
+        this.slowStatementMillis = slowStatementMillis;
+    }
+
+    public double getTraceSampleRate() {
+        return traceSampleRate;
+    }
+
+    public void setTraceSampleRate(final double traceSampleRate) {
+        this.traceSampleRate = traceSampleRate;
+    }
+
+    public int getMigrationParallelism() {
+        return migrationParallelism;
+    }
+
+    public void setMigrationParallelism(final int migrationParallelism) {
+        this.migrationParallelism = migrationParallelism;
+    }
+}
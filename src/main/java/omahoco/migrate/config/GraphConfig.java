@@ -0,0 +1,44 @@
+package omahoco.migrate.config;
+
+/**
+ * The options of graph requests. Settings that aren't set keep the driver's defaults.
+ */
+public final class GraphConfig {
+    private Integer readTimeoutMillis;
+    private String readConsistency;
+    private String writeConsistency;
+
+    /**
+     * @return how long a host has to respond to a graph request, 0 for no timeout. Index builds and large scripts can
+     * take much longer than other requests.
+     */
+    public Integer getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public void setReadTimeoutMillis(final Integer readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * @return the consistency level of graph reads, e.g. {@code LOCAL_QUORUM}.
+     */
+    public String getReadConsistency() {
+        return readConsistency;
+    }
+
+    public void setReadConsistency(final String readConsistency) {
+        this.readConsistency = readConsistency;
+    }
+
+    /**
+     * @return the consistency level of graph writes, e.g. {@code LOCAL_QUORUM}.
+     */
+    public String getWriteConsistency() {
+        return writeConsistency;
+    }
+
+    public void setWriteConsistency(final String writeConsistency) {
+        this.writeConsistency = writeConsistency;
+    }
+}
@@ -0,0 +1,41 @@
+package omahoco.migrate.config;
+
+/**
+ * How requests are spread over the hosts of a cluster. Requests go to the hosts of the local data center, the data
+ * center of the first contact point to respond unless {@code localDc} is set.
+ */
+public final class LoadBalancingConfig {
+    private String localDc;
+    private int usedHostsPerRemoteDc;
+    private boolean tokenAware = true;
+
+    public String getLocalDc() {
+        return localDc;
+    }
+
+    public void setLocalDc(final String localDc) {
+        this.localDc = localDc;
+    }
+
+    /**
+     * @return the number of hosts of each remote data center tried once the local hosts have been tried.
+     */
+    public int getUsedHostsPerRemoteDc() {
+        return usedHostsPerRemoteDc;
+    }
+
+    public void setUsedHostsPerRemoteDc(final int usedHostsPerRemoteDc) {
+        this.usedHostsPerRemoteDc = usedHostsPerRemoteDc;
+    }
+
+    /**
+     * @return true to send requests with a routing key to a replica first.
+     */
+    public boolean isTokenAware() {
+        return tokenAware;
+    }
+
+    public void setTokenAware(final boolean tokenAware) {
+        this.tokenAware = tokenAware;
+    }
+}
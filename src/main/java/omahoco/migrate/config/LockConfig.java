@@ -0,0 +1,91 @@
+package omahoco.migrate.config;
+
+/**
+ * The lock that keeps runners from migrating a graph at the same time, held as a lease in a table of the
+ * {@code keyspace}. The lock is only taken when a keyspace is set.
+ */
+public final class LockConfig {
+    private static final String DEFAULT_TABLE = "migration_lock";
+    private static final int DEFAULT_TTL_SECONDS = 60;
+    private static final int DEFAULT_HEARTBEAT_MILLIS = 10000;
+    private static final int DEFAULT_POLL_MILLIS = 1000;
+    private String keyspace;
+    private String replication;
+    private String table = DEFAULT_TABLE;
+    private int ttlSeconds = DEFAULT_TTL_SECONDS;
+    private int heartbeatMillis = DEFAULT_HEARTBEAT_MILLIS;
+    private int pollMillis = DEFAULT_POLL_MILLIS;
+    private int waitTimeoutSeconds;
+
+    public String getKeyspace() {
+        return keyspace;
+    }
+
+    public void setKeyspace(final String keyspace) {
+        this.keyspace = keyspace;
+    }
+
+    /**
+     * @return the replication of the keyspace, which is created when it is set, e.g.
+     * {@code {'class': 'NetworkTopologyStrategy', 'dc1': 3}}.
+     */
+    public String getReplication() {
+        return replication;
+    }
+
+    public void setReplication(final String replication) {
+        this.replication = replication;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(final String table) {
+        this.table = table;
+    }
+
+    /**
+     * @return how long a lease lasts without being renewed, after which the lock of a runner that died is free.
+     */
+    public int getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(final int ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * @return how often the holder renews its lease.
+     */
+    public int getHeartbeatMillis() {
+        return heartbeatMillis;
+    }
+
+    public void setHeartbeatMillis(final int heartbeatMillis) {
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * @return how often a waiting runner tries to take the lock.
+     */
+    public int getPollMillis() {
+        return pollMillis;
+    }
+
+    public void setPollMillis(final int pollMillis) {
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * @return how long a runner waits for the lock before it fails, 0 to wait for as long as it is held.
+     */
+    public int getWaitTimeoutSeconds() {
+        return waitTimeoutSeconds;
+    }
+
+    public void setWaitTimeoutSeconds(final int waitTimeoutSeconds) {
+        this.waitTimeoutSeconds = waitTimeoutSeconds;
+    }
+}
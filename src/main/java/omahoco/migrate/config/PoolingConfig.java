@@ -0,0 +1,70 @@
+package omahoco.migrate.config;
+
+/**
+ * The connection pool to each host in the local data center. Settings that aren't set keep the driver's defaults.
+ */
+public final class PoolingConfig {
+    private Integer coreConnectionsPerHost;
+    private Integer maxConnectionsPerHost;
+    private Integer maxRequestsPerConnection;
+    private Integer maxQueueSize;
+    private Integer poolTimeoutMillis;
+    private Integer heartbeatIntervalSeconds;
+
+    public Integer getCoreConnectionsPerHost() {
+        return coreConnectionsPerHost;
+    }
+
+    public void setCoreConnectionsPerHost(final Integer coreConnectionsPerHost) {
+        this.coreConnectionsPerHost = coreConnectionsPerHost;
+    }
+
+    public Integer getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(final Integer maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    /**
+     * @return the most requests in flight on one connection.
+     */
+    public Integer getMaxRequestsPerConnection() {
+        return maxRequestsPerConnection;
+    }
+
+    public void setMaxRequestsPerConnection(final Integer maxRequestsPerConnection) {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+
+    /**
+     * @return the most requests waiting for a connection once every connection is busy.
+     */
+    public Integer getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(final Integer maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * @return how long a request waits for a connection before it fails.
+     */
+    public Integer getPoolTimeoutMillis() {
+        return poolTimeoutMillis;
+    }
+
+    public void setPoolTimeoutMillis(final Integer poolTimeoutMillis) {
+        this.poolTimeoutMillis = poolTimeoutMillis;
+    }
+
+    public Integer getHeartbeatIntervalSeconds() {
+        return heartbeatIntervalSeconds;
+    }
+
+    public void setHeartbeatIntervalSeconds(final Integer heartbeatIntervalSeconds) {
+        this.heartbeatIntervalSeconds = heartbeatIntervalSeconds;
+    }
+}
@@ -4,6 +4,10 @@ import java.util.Map;
 
 public final class Profile {
     private Map<String, String> options;
+    private ExecutionConfig execution = new ExecutionConfig();
+    private SchemaAgreementConfig schemaAgreement = new SchemaAgreementConfig();
+    private DriverConfig driver = new DriverConfig();
+    private LockConfig lock = new LockConfig();
 
     public Map<String, String> getOptions() {
         return options;
@@ -12,4 +16,36 @@ public final class Profile {
     public void setOptions(final Map<String, String> options) {
         this.options = options;
     }
+
+    public ExecutionConfig getExecution() {
+        return execution;
+    }
+
+    public void setExecution(final ExecutionConfig execution) {
+        this.execution = execution;
+    }
+
+    public SchemaAgreementConfig getSchemaAgreement() {
+        return schemaAgreement;
+    }
+
+    public void setSchemaAgreement(final SchemaAgreementConfig schemaAgreement) {
+        this.schemaAgreement = schemaAgreement;
+    }
+
+    public DriverConfig getDriver() {
+        return driver;
+    }
+
+    public void setDriver(final DriverConfig driver) {
+        this.driver = driver;
+    }
+
+    public LockConfig getLock() {
+        return lock;
+    }
+
+    public void setLock(final LockConfig lock) {
+        this.lock = lock;
+    }
 }
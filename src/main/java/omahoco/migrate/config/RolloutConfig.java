@@ -0,0 +1,39 @@
+package omahoco.migrate.config;
+
+/**
+ * How a run rolls out to the clusters in the {@code clusters} section of the configuration.
+ */
+public final class RolloutConfig {
+    private int parallelism;
+    private FailurePolicy failurePolicy = FailurePolicy.STOP;
+
+    public enum FailurePolicy {
+        /**
+         * Clusters that haven't started are skipped, and the others stop before their next migration file.
+         */
+        STOP,
+        /**
+         * Every cluster is migrated regardless of failures on the others.
+         */
+        CONTINUE
+    }
+
+    /**
+     * @return the number of clusters migrated at the same time, 0 for all of them.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(final int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public FailurePolicy getFailurePolicy() {
+        return failurePolicy;
+    }
+
+    public void setFailurePolicy(final FailurePolicy failurePolicy) {
+        this.failurePolicy = failurePolicy;
+    }
+}
@@ -0,0 +1,34 @@
+package omahoco.migrate.config;
+
+public final class SchemaAgreementConfig {
+    private static final int DEFAULT_TIMEOUT_MILLIS = 15000;
+    private static final int DEFAULT_INITIAL_DELAY_MILLIS = 5;
+    private static final int DEFAULT_MAX_DELAY_MILLIS = 1000;
+    private int timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private int initialDelayMillis = DEFAULT_INITIAL_DELAY_MILLIS;
+    private int maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(final int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public int getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public void setInitialDelayMillis(final int initialDelayMillis) {
+        this.initialDelayMillis = initialDelayMillis;
+    }
+
+    public int getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public void setMaxDelayMillis(final int maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+}
@@ -0,0 +1,56 @@
+package omahoco.migrate.config;
+
+/**
+ * How an {@link omahoco.migrate.graph.InMemorySchema} simulates a cluster: the latency of each request, the
+ * failures it injects and how long schema changes take to reach agreement.
+ */
+public final class SimulationConfig {
+    private int latencyMicros;
+    private int jitterMicros;
+    private double failureRate;
+    private int schemaAgreementMillis;
+
+    /**
+     * @return the latency of every request, before jitter.
+     */
+    public int getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    public void setLatencyMicros(final int latencyMicros) {
+        this.latencyMicros = latencyMicros;
+    }
+
+    /**
+     * @return the most latency added at random to each request.
+     */
+    public int getJitterMicros() {
+        return jitterMicros;
+    }
+
+    public void setJitterMicros(final int jitterMicros) {
+        this.jitterMicros = jitterMicros;
+    }
+
+    /**
+     * @return the fraction of requests that fail, between 0 and 1.
+     */
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    public void setFailureRate(final double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * @return how long it takes for a schema change to reach agreement once it has been executed.
+     */
+    public int getSchemaAgreementMillis() {
+        return schemaAgreementMillis;
+    }
+
+    public void setSchemaAgreementMillis(final int schemaAgreementMillis) {
+        this.schemaAgreementMillis = schemaAgreementMillis;
+    }
+}
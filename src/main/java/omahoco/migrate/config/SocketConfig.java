@@ -0,0 +1,46 @@
+package omahoco.migrate.config;
+
+/**
+ * The sockets of the connections to a cluster. Settings that aren't set keep the driver's defaults.
+ */
+public final class SocketConfig {
+    private Integer connectTimeoutMillis;
+    private Integer readTimeoutMillis;
+    private Boolean keepAlive;
+    private Boolean tcpNoDelay;
+
+    public Integer getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(final Integer connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    /**
+     * @return how long a host has to respond to a request that isn't a graph request.
+     */
+    public Integer getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public void setReadTimeoutMillis(final Integer readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    public Boolean getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(final Boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public Boolean getTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(final Boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+}
@@ -0,0 +1,160 @@
+package omahoco.migrate.di;
+
+import omahoco.migrate.config.DriverConfig;
+import omahoco.migrate.config.GraphConfig;
+import omahoco.migrate.config.LoadBalancingConfig;
+import omahoco.migrate.config.PoolingConfig;
+import omahoco.migrate.config.SocketConfig;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.ProtocolOptions;
+import com.datastax.driver.core.SocketOptions;
+import com.datastax.driver.core.policies.ChainableLoadBalancingPolicy;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.datastax.driver.dse.DseCluster;
+import com.datastax.driver.dse.DseConfiguration;
+import com.datastax.driver.dse.DseLoadBalancingPolicy;
+import com.datastax.driver.dse.graph.GraphOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Applies the {@code driver} section of a profile to the builder of a cluster, and logs the settings the cluster
+ * ends up with. Pooling settings apply to the hosts of the local data center.
+ */
+final class DriverOptions {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DriverOptions.class);
+
+    private DriverOptions() {
+    }
+
+    static DseCluster.Builder apply(final DseCluster.Builder builder, final DriverConfig config) {
+        builder.withCompression(ProtocolOptions.Compression.valueOf(config.getCompression().name()));
+        builder.withPoolingOptions(getPoolingOptions(config.getPooling()));
+        builder.withLoadBalancingPolicy(getLoadBalancingPolicy(config.getLoadBalancing()));
+        builder.withSocketOptions(getSocketOptions(config.getSocket()));
+        builder.withGraphOptions(getGraphOptions(config.getGraph()));
+        return builder;
+    }
+
+    /**
+     * Logs the settings of a connected cluster. The driver's pooling defaults are only known once the protocol
+     * version has been negotiated.
+     */
+    static void log(final String clusterName, final DseConfiguration configuration) {
+        final PoolingOptions pooling = configuration.getPoolingOptions();
+        final SocketOptions socket = configuration.getSocketOptions();
+        final GraphOptions graph = configuration.getGraphOptions();
+        LOGGER.info(
+                "Driver settings of cluster {}: compression {}, load balancing {}, {}-{} connections per host, "
+                        + "{} requests per connection, queue size {}, pool timeout {} ms, heartbeat {} s, "
+                        + "connect timeout {} ms, read timeout {} ms, keep alive {}, no delay {}, "
+                        + "graph read timeout {} ms, graph consistency read {} write {}",
+                clusterName,
+                configuration.getProtocolOptions().getCompression(),
+                describe(configuration.getPolicies().getLoadBalancingPolicy()),
+                pooling.getCoreConnectionsPerHost(HostDistance.LOCAL),
+                pooling.getMaxConnectionsPerHost(HostDistance.LOCAL),
+                pooling.getMaxRequestsPerConnection(HostDistance.LOCAL),
+                pooling.getMaxQueueSize(),
+                pooling.getPoolTimeoutMillis(),
+                pooling.getHeartbeatIntervalSeconds(),
+                socket.getConnectTimeoutMillis(),
+                socket.getReadTimeoutMillis(),
+                socket.getKeepAlive(),
+                socket.getTcpNoDelay(),
+                graph.getReadTimeoutMillis(),
+                graph.getGraphReadConsistencyLevel(),
+                graph.getGraphWriteConsistencyLevel());
+    }
+
+    private static PoolingOptions getPoolingOptions(final PoolingConfig config) {
+        final PoolingOptions options = new PoolingOptions();
+        if (config.getCoreConnectionsPerHost() != null && config.getMaxConnectionsPerHost() != null) {
+            options.setConnectionsPerHost(
+                    HostDistance.LOCAL, config.getCoreConnectionsPerHost(), config.getMaxConnectionsPerHost());
+        } else {
+            setIfPresent(config.getCoreConnectionsPerHost(),
+                    t -> options.setCoreConnectionsPerHost(HostDistance.LOCAL, t));
+            setIfPresent(config.getMaxConnectionsPerHost(),
+                    t -> options.setMaxConnectionsPerHost(HostDistance.LOCAL, t));
+        }
+
+        setIfPresent(config.getMaxRequestsPerConnection(),
+                t -> options.setMaxRequestsPerConnection(HostDistance.LOCAL, t));
+        setIfPresent(config.getMaxQueueSize(), options::setMaxQueueSize);
+        setIfPresent(config.getPoolTimeoutMillis(), options::setPoolTimeoutMillis);
+        setIfPresent(config.getHeartbeatIntervalSeconds(), options::setHeartbeatIntervalSeconds);
+        return options;
+    }
+
+    /**
+     * @return the driver's default policy, optionally without token awareness, pinned to the configured local data
+     * center.
+     */
+    private static LoadBalancingPolicy getLoadBalancingPolicy(final LoadBalancingConfig config) {
+        if (config.getUsedHostsPerRemoteDc() < 0) {
+            throw new IllegalArgumentException("Used hosts per remote data center must not be negative, was "
+                    + config.getUsedHostsPerRemoteDc());
+        }
+
+        final DCAwareRoundRobinPolicy.Builder dcAware =
+                DCAwareRoundRobinPolicy.builder().withUsedHostsPerRemoteDc(config.getUsedHostsPerRemoteDc());
+        if (config.getLocalDc() != null) {
+            dcAware.withLocalDc(config.getLocalDc());
+        }
+
+        LoadBalancingPolicy policy = dcAware.build();
+        if (config.isTokenAware()) {
+            policy = new TokenAwarePolicy(policy);
+        }
+
+        return new DseLoadBalancingPolicy(policy);
+    }
+
+    private static SocketOptions getSocketOptions(final SocketConfig config) {
+        final SocketOptions options = new SocketOptions();
+        setIfPresent(config.getConnectTimeoutMillis(), options::setConnectTimeoutMillis);
+        setIfPresent(config.getReadTimeoutMillis(), options::setReadTimeoutMillis);
+        setIfPresent(config.getKeepAlive(), options::setKeepAlive);
+        setIfPresent(config.getTcpNoDelay(), options::setTcpNoDelay);
+        return options;
+    }
+
+    private static GraphOptions getGraphOptions(final GraphConfig config) {
+        final GraphOptions options = new GraphOptions();
+        setIfPresent(config.getReadTimeoutMillis(), options::setReadTimeoutMillis);
+        setIfPresent(config.getReadConsistency(), t -> options.setGraphReadConsistencyLevel(consistencyLevel(t)));
+        setIfPresent(config.getWriteConsistency(), t -> options.setGraphWriteConsistencyLevel(consistencyLevel(t)));
+        return options;
+    }
+
+    private static ConsistencyLevel consistencyLevel(final String name) {
+        try {
+            return ConsistencyLevel.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (final IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown consistency level: " + name, e);
+        }
+    }
+
+    private static String describe(final LoadBalancingPolicy policy) {
+        if (policy instanceof ChainableLoadBalancingPolicy) {
+            return policy.getClass().getSimpleName()
+                    + "(" + describe(((ChainableLoadBalancingPolicy) policy).getChildPolicy()) + ")";
+        }
+
+        return policy.getClass().getSimpleName();
+    }
+
+    private static <T> void setIfPresent(final T value, final Consumer<T> setter) {
+        if (value != null) {
+            setter.accept(value);
+        }
+    }
+}
@@ -1,70 +1,90 @@
 package omahoco.migrate.di;
 
-import omahoco.migrate.MigrationCli;
-import omahoco.migrate.MigrationMetadata;
+import omahoco.migrate.config.ClusterConfig;
 import omahoco.migrate.config.Config;
+import omahoco.migrate.config.DriverConfig;
 import omahoco.migrate.config.Profile;
-import omahoco.migrate.graph.GraphMigrationMetadata;
-import omahoco.migrate.graph.GraphSchema;
-import omahoco.migrate.graph.Schema;
-import omahoco.migrate.io.FileMigrationSource;
-import omahoco.migrate.io.MigrationSource;
-import omahoco.migrate.util.Delayer;
-import omahoco.migrate.util.ThreadSleepDelayer;
+import omahoco.migrate.graph.LeaseTable;
+import omahoco.migrate.graph.SchemaAgreementWaiter;
+import omahoco.migrate.graph.SlowStatementLog;
+import com.codahale.metrics.MetricRegistry;
 import com.datastax.driver.dse.DseCluster;
 import com.datastax.driver.dse.DseSession;
-import com.datastax.driver.dse.graph.GraphResultSet;
-import com.datastax.driver.dse.graph.GraphStatement;
 import com.google.inject.AbstractModule;
-import com.google.inject.TypeLiteral;
+import com.google.inject.Singleton;
 
 import java.util.Objects;
 
+/**
+ * Binds the connection to one cluster, installed in a child injector of the {@link MigrationModule} injector. The
+ * graphs of the cluster are bound by a {@link GraphModule} in child injectors of this one.
+ */
 public final class DseModule extends AbstractModule {
-    private final MigrationCli.MigrationArgs migrationArgs;
+    private static final String DRIVER_METRICS = "driver";
+    private final String clusterName;
+    private final ClusterConfig clusterConfig;
     private final Config config;
-    private final String profileName;
-    private DseCluster dseCluster;
+    private final MetricRegistry metricRegistry;
 
     public DseModule(
-            final MigrationCli.MigrationArgs migrationArgs,
+            final String clusterName,
+            final ClusterConfig clusterConfig,
             final Config config,
-            final String profileName) {
-        this.migrationArgs = Objects.requireNonNull(migrationArgs);
+            final MetricRegistry metricRegistry) {
+        this.clusterName = Objects.requireNonNull(clusterName);
+        this.clusterConfig = Objects.requireNonNull(clusterConfig);
         this.config = Objects.requireNonNull(config);
-        this.profileName = profileName;
+        this.metricRegistry = Objects.requireNonNull(metricRegistry);
     }
 
     @Override
     protected void configure() {
-        bind(Delayer.class).to(ThreadSleepDelayer.class);
+        final Profile profile = getProfile(clusterConfig.getProfile());
+        DriverConfig driverConfig = new DriverConfig();
+        if (profile != null) {
+            driverConfig = profile.getDriver();
+        }
 
-        dseCluster = getClusterBuilder(migrationArgs).build();
+        // The driver's metrics are reported with ours rather than over JMX on their own.
+        final DseCluster dseCluster = DriverOptions.apply(getClusterBuilder(clusterConfig), driverConfig)
+                .withClusterName(clusterName)
+                .withoutJMXReporting()
+                .build();
         bind(DseCluster.class).toInstance(dseCluster);
         bind(DseSession.class).toInstance(dseCluster.connect());
+        DriverOptions.log(clusterName, dseCluster.getConfiguration());
+        metricRegistry.register(getDriverMetricsName(), dseCluster.getMetrics().getRegistry());
+
+        bind(Profile.class).toInstance(profile);
+        bind(SlowStatementLog.class).toInstance(new SlowStatementLog(profile.getExecution()));
+        // Schema agreement is cluster wide, so one waiter is shared by the graphs bound by each GraphModule.
+        bind(SchemaAgreementWaiter.class).in(Singleton.class);
+        // The lock table is created once for the graphs of the cluster.
+        bind(LeaseTable.class).in(Singleton.class);
+    }
 
-        bind(Profile.class).toInstance(getProfile(profileName));
-        bind(Config.class).toInstance(config);
-
-        bind(GraphSchema.SchemaInfo.class).toInstance(new GraphSchema.SchemaInfo(config.getSchema()));
-        bind(new TypeLiteral<Schema<GraphResultSet, GraphStatement>>() {
-        }).to(GraphSchema.class);
-        bind(MigrationMetadata.class).to(GraphMigrationMetadata.class);
+    /**
+     * @return the prefix of the driver's metrics, which is qualified by the cluster name when the configuration lists
+     * clusters.
+     */
+    private String getDriverMetricsName() {
+        if (config.getClusters() == null || config.getClusters().isEmpty()) {
+            return DRIVER_METRICS;
+        }
 
-        bind(MigrationSource.class).to(FileMigrationSource.class);
+        return MetricRegistry.name(DRIVER_METRICS, clusterName);
     }
 
-    private static DseCluster.Builder getClusterBuilder(
-            final MigrationCli.MigrationArgs migrationArgs) {
-        final DseCluster.Builder builder = DseCluster.builder().withPort(migrationArgs.getPort());
-        migrationArgs.getHosts().forEach(t -> builder.addContactPoint(t));
+    private static DseCluster.Builder getClusterBuilder(final ClusterConfig clusterConfig) {
+        final DseCluster.Builder builder = DseCluster.builder().withPort(clusterConfig.getPort());
+        clusterConfig.getHosts().forEach(t -> builder.addContactPoint(t));
 
-        if (migrationArgs.isSsl()) {
+        if (clusterConfig.isSsl()) {
             builder.withSSL();
         }
 
-        if (migrationArgs.getUserName() != null) {
-            builder.withCredentials(migrationArgs.getUserName(), migrationArgs.getPassword());
+        if (clusterConfig.getUserName() != null) {
+            builder.withCredentials(clusterConfig.getUserName(), clusterConfig.getPassword());
         }
 
         return builder;
@@ -0,0 +1,71 @@
+package omahoco.migrate.di;
+
+import omahoco.migrate.MigrationLock;
+import omahoco.migrate.MigrationMetadata;
+import omahoco.migrate.SchemaMigration;
+import omahoco.migrate.config.Config;
+import omahoco.migrate.config.Profile;
+import omahoco.migrate.graph.ContentStorage;
+import omahoco.migrate.graph.GraphMigrationMetadata;
+import omahoco.migrate.graph.GraphSchema;
+import omahoco.migrate.graph.LeaseTable;
+import omahoco.migrate.graph.Schema;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.dse.graph.GraphResultSet;
+import com.datastax.driver.dse.graph.GraphStatement;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+
+import java.util.Objects;
+
+/**
+ * Binds the migration of one graph, installed in a child injector of the {@link DseModule} injector for each graph
+ * so the session, configuration and loaded migration files are shared between graphs.
+ */
+public final class GraphModule extends AbstractModule {
+    private final String schemaName;
+
+    public GraphModule(final String schemaName) {
+        this.schemaName = Objects.requireNonNull(schemaName);
+    }
+
+    @Override
+    protected void configure() {
+        bind(GraphSchema.SchemaInfo.class).toInstance(new GraphSchema.SchemaInfo(schemaName));
+        bind(new TypeLiteral<Schema<GraphResultSet, GraphStatement>>() {
+        }).to(GraphSchema.class);
+        bind(GraphSchema.class).in(Singleton.class);
+        bind(MigrationMetadata.class).to(GraphMigrationMetadata.class);
+        bind(SchemaMigration.class);
+    }
+
+    /**
+     * @return the migration metadata of the graph, storing migration contents as configured.
+     */
+    @Provides
+    GraphMigrationMetadata provideMigrationMetadata(
+            final Schema<GraphResultSet, GraphStatement> schema,
+            final Config config,
+            final MetricRegistry metricRegistry) {
+        return new GraphMigrationMetadata(
+                schema,
+                ContentStorage.valueOf(config.getContentStorage().name()),
+                config.getMaxContentLength(),
+                metricRegistry);
+    }
+
+    /**
+     * @return the lock of the graph, named after it, when the profile configures a lock table.
+     */
+    @Provides
+    MigrationLock provideMigrationLock(final Profile profile, final Provider<LeaseTable> leaseTable) {
+        if (profile.getLock().getKeyspace() == null) {
+            return MigrationLock.NONE;
+        }
+
+        return leaseTable.get().lock(schemaName);
+    }
+}
@@ -0,0 +1,67 @@
+package omahoco.migrate.di;
+
+import omahoco.migrate.config.Config;
+import omahoco.migrate.io.ChecksumCache;
+import omahoco.migrate.io.FileMigrationSource;
+import omahoco.migrate.io.MigrationFileLoader;
+import omahoco.migrate.io.MigrationSource;
+import omahoco.migrate.parse.SimpleStatementParser;
+import omahoco.migrate.util.Delayer;
+import omahoco.migrate.util.MetricsReporter;
+import omahoco.migrate.util.SignallingDelayer;
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.AbstractModule;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Binds what is shared by every cluster of a run: the configuration, the migration files and the metrics. Each
+ * cluster is bound by a {@link DseModule} in a child injector.
+ */
+public final class MigrationModule extends AbstractModule {
+    private static final String CHECKSUM_CACHE_FILE = "checksums.bin";
+    private final Config config;
+    private final MetricRegistry metricRegistry;
+
+    public MigrationModule(final Config config, final MetricRegistry metricRegistry) {
+        this.config = Objects.requireNonNull(config);
+        this.metricRegistry = Objects.requireNonNull(metricRegistry);
+    }
+
+    @Override
+    protected void configure() {
+        bind(Delayer.class).to(SignallingDelayer.class);
+        bind(MetricRegistry.class).toInstance(metricRegistry);
+        bind(MetricsReporter.class).toInstance(new MetricsReporter(metricRegistry, getMetricsFile()));
+        bind(Config.class).toInstance(config);
+
+        bind(MigrationSource.class).to(FileMigrationSource.class);
+        bind(MigrationFileLoader.class).toInstance(
+                new MigrationFileLoader(
+                        new SimpleStatementParser(),
+                        Charset.forName(config.getEncoding()),
+                        config.getLoadThreads(),
+                        getChecksumCache(),
+                        metricRegistry));
+    }
+
+    private Path getMetricsFile() {
+        if (config.getMetricsFile() == null) {
+            return null;
+        }
+
+        return new File(config.getConfigPath(), config.getMetricsFile()).toPath();
+    }
+
+    private ChecksumCache getChecksumCache() {
+        if (config.getCachePath() == null) {
+            return ChecksumCache.disabled();
+        }
+
+        return new ChecksumCache(
+                new File(new File(config.getConfigPath(), config.getCachePath()), CHECKSUM_CACHE_FILE).toPath());
+    }
+}
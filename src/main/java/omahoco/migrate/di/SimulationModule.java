@@ -0,0 +1,47 @@
+package omahoco.migrate.di;
+
+import omahoco.migrate.MigrationLock;
+import omahoco.migrate.MigrationMetadata;
+import omahoco.migrate.SchemaMigration;
+import omahoco.migrate.config.Profile;
+import omahoco.migrate.config.SimulationConfig;
+import omahoco.migrate.graph.InMemoryMigrationLock;
+import omahoco.migrate.graph.InMemoryMigrationMetadata;
+import omahoco.migrate.graph.InMemorySchema;
+import omahoco.migrate.graph.Schema;
+import com.datastax.driver.dse.graph.GraphResultSet;
+import com.datastax.driver.dse.graph.GraphStatement;
+import com.google.inject.AbstractModule;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+
+import java.util.Objects;
+
+/**
+ * Binds the migration of one graph held in memory, standing in for the {@link DseModule} and {@link GraphModule} of a
+ * cluster. Installed in a child injector of the {@link MigrationModule} injector, it runs the whole migration
+ * pipeline against an {@link InMemorySchema} without a cluster, e.g. to benchmark execution settings.
+ */
+public final class SimulationModule extends AbstractModule {
+    private final Profile profile;
+    private final SimulationConfig simulation;
+
+    public SimulationModule(final Profile profile, final SimulationConfig simulation) {
+        this.profile = Objects.requireNonNull(profile);
+        this.simulation = Objects.requireNonNull(simulation);
+    }
+
+    @Override
+    protected void configure() {
+        bind(Profile.class).toInstance(profile);
+        bind(SimulationConfig.class).toInstance(simulation);
+        bind(new TypeLiteral<Schema<GraphResultSet, GraphStatement>>() {
+        }).to(InMemorySchema.class);
+        bind(InMemorySchema.class).in(Singleton.class);
+        bind(MigrationMetadata.class).to(InMemoryMigrationMetadata.class);
+        bind(InMemoryMigrationMetadata.class).in(Singleton.class);
+        bind(MigrationLock.class).to(InMemoryMigrationLock.class);
+        bind(InMemoryMigrationLock.class).in(Singleton.class);
+        bind(SchemaMigration.class);
+    }
+}
@@ -0,0 +1,121 @@
+package omahoco.migrate.execute;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A run of consecutive statements from a migration that are sent to the server as a single script. The rows of a
+ * data migration are batched as a script that loops over a {@code rows} parameter, writing each row with the
+ * migration's template.
+ */
+public final class StatementBatch {
+    private static final String SCRIPT_SEPARATOR = "\n";
+    private static final String ROWS_PARAMETER = "rows";
+    private static final String ROWS_SCRIPT = "for (row in rows) {\n%s\n}";
+    private final int firstIndex;
+    private final List<String> statements;
+    private final boolean schemaChange;
+    private final List<Map<String, Object>> rows;
+
+    public StatementBatch(final int firstIndex, final List<String> statements, final boolean schemaChange) {
+        this(firstIndex, statements, schemaChange, Collections.emptyList());
+    }
+
+    private StatementBatch(
+            final int firstIndex,
+            final List<String> statements,
+            final boolean schemaChange,
+            final List<Map<String, Object>> rows) {
+        this.firstIndex = firstIndex;
+        this.statements = Collections.unmodifiableList(Objects.requireNonNull(statements));
+        this.schemaChange = schemaChange;
+        this.rows = Collections.unmodifiableList(Objects.requireNonNull(rows));
+    }
+
+    /**
+     * @return a batch writing each row with {@code template}, in which the row being written is {@code row}.
+     */
+    public static StatementBatch ofRows(
+            final int firstIndex,
+            final String template,
+            final List<Map<String, Object>> rows) {
+        return new StatementBatch(firstIndex, Collections.singletonList(template), false, rows);
+    }
+
+    /**
+     * @return the zero based position of the first statement of the batch within its migration.
+     */
+    public int getFirstIndex() {
+        return firstIndex;
+    }
+
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    public boolean isSchemaChange() {
+        return schemaChange;
+    }
+
+    public boolean hasRows() {
+        return !rows.isEmpty();
+    }
+
+    public List<Map<String, Object>> getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the number of statements, or of rows in a batch of rows.
+     */
+    public int size() {
+        if (hasRows()) {
+            return rows.size();
+        }
+
+        return statements.size();
+    }
+
+    public String getScript() {
+        if (hasRows()) {
+            return String.format(ROWS_SCRIPT, statements.get(0));
+        }
+
+        if (statements.size() == 1) {
+            return statements.get(0);
+        }
+
+        return String.join(SCRIPT_SEPARATOR, statements);
+    }
+
+    /**
+     * @return the parameters of the script, the rows of a batch of rows.
+     */
+    public Map<String, Object> getParameters() {
+        if (hasRows()) {
+            return Collections.singletonMap(ROWS_PARAMETER, rows);
+        }
+
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @return a batch for each statement or row, to execute them one at a time.
+     */
+    public List<StatementBatch> split() {
+        final List<StatementBatch> batches = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            if (hasRows()) {
+                batches.add(ofRows(firstIndex + i, statements.get(0), Collections.singletonList(rows.get(i))));
+            } else {
+                batches.add(
+                        new StatementBatch(firstIndex + i, Collections.singletonList(statements.get(i)), schemaChange));
+            }
+        }
+
+        return batches;
+    }
+}
@@ -0,0 +1,149 @@
+package omahoco.migrate.execute;
+
+import com.google.common.base.Utf8;
+import com.google.common.collect.Iterators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Groups consecutive data statements into batches, bounded by a statement count and a script size in bytes.
+ * Schema statements are only merged with other schema statements when requested, otherwise each one is returned
+ * as a batch of its own.
+ */
+public final class StatementBatcher {
+    private final int maxStatements;
+    private final int maxBytes;
+    private final boolean mergeSchemaStatements;
+    private final Predicate<String> isSchemaChange;
+
+    public StatementBatcher(final int maxStatements, final int maxBytes, final Predicate<String> isSchemaChange) {
+        this(maxStatements, maxBytes, false, isSchemaChange);
+    }
+
+    public StatementBatcher(
+            final int maxStatements,
+            final int maxBytes,
+            final boolean mergeSchemaStatements,
+            final Predicate<String> isSchemaChange) {
+        if (maxStatements < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, was " + maxStatements);
+        }
+
+        this.maxStatements = maxStatements;
+        this.maxBytes = maxBytes;
+        this.mergeSchemaStatements = mergeSchemaStatements;
+        this.isSchemaChange = Objects.requireNonNull(isSchemaChange);
+    }
+
+    public Iterator<StatementBatch> batch(final Iterator<String> statements) {
+        return batch(statements, 0);
+    }
+
+    /**
+     * @param firstIndex the index within the migration of the first statement, when earlier statements are skipped.
+     */
+    public Iterator<StatementBatch> batch(final Iterator<String> statements, final int firstIndex) {
+        return new BatchIterator(statements, firstIndex);
+    }
+
+    /**
+     * Groups the rows of a data migration into batches of up to the maximum number of statements, each row counting
+     * as a statement. Rows are sent as parameters, so the script size bound doesn't apply.
+     */
+    public Iterator<StatementBatch> batchRows(
+            final String template,
+            final Iterator<Map<String, Object>> rows,
+            final int firstIndex) {
+        final Iterator<List<Map<String, Object>>> partitions = Iterators.partition(rows, maxStatements);
+
+        return new Iterator<StatementBatch>() {
+            private int index = firstIndex;
+
+            @Override
+            public boolean hasNext() {
+                return partitions.hasNext();
+            }
+
+            @Override
+            public StatementBatch next() {
+                final List<Map<String, Object>> partition = partitions.next();
+                final StatementBatch batch = StatementBatch.ofRows(index, template, partition);
+                index += partition.size();
+
+                return batch;
+            }
+        };
+    }
+
+    private final class BatchIterator implements Iterator<StatementBatch> {
+        private final Iterator<String> statements;
+        private String pending;
+        private int index;
+
+        private BatchIterator(final Iterator<String> statements, final int firstIndex) {
+            this.statements = Objects.requireNonNull(statements);
+            this.index = firstIndex;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pending != null || statements.hasNext();
+        }
+
+        @Override
+        public StatementBatch next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final int firstIndex = index;
+            final String first = take();
+
+            final boolean schemaChange = isSchemaChange.test(first);
+            if (schemaChange && !mergeSchemaStatements) {
+                return new StatementBatch(firstIndex, Collections.singletonList(first), true);
+            }
+
+            final List<String> batch = new ArrayList<>();
+            batch.add(first);
+            int bytes = Utf8.encodedLength(first);
+
+            while (batch.size() < maxStatements && (pending != null || statements.hasNext())) {
+                final String candidate = peek();
+                final int candidateBytes = Utf8.encodedLength(candidate) + 1;
+
+                if (isSchemaChange.test(candidate) != schemaChange || bytes + candidateBytes > maxBytes) {
+                    break;
+                }
+
+                batch.add(take());
+                bytes += candidateBytes;
+            }
+
+            return new StatementBatch(firstIndex, batch, schemaChange);
+        }
+
+        private String peek() {
+            if (pending == null) {
+                pending = statements.next();
+            }
+
+            return pending;
+        }
+
+        private String take() {
+            final String statement = peek();
+            pending = null;
+            index++;
+
+            return statement;
+        }
+    }
+}
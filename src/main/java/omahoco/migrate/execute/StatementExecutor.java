@@ -0,0 +1,374 @@
+package omahoco.migrate.execute;
+
+import omahoco.migrate.config.ExecutionConfig;
+import omahoco.migrate.graph.Schema;
+import omahoco.migrate.graph.SlowStatementLog;
+import omahoco.migrate.parse.LiteralParameterizer;
+import omahoco.migrate.parse.ParameterizedScript;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.dse.graph.GraphResultSet;
+import com.datastax.driver.dse.graph.GraphStatement;
+import com.datastax.driver.dse.graph.SimpleGraphStatement;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Executes the statement batches of a migration. Data batches are pipelined, with up to {@code maxInFlight}
+ * requests outstanding at any time. Schema batches act as barriers, every outstanding request completes before
+ * a schema change is sent and the schema change completes before any later statement is sent.
+ * <p>
+ * When schema agreement is deferred, a run of schema changes is sent without waiting for agreement in between.
+ * Agreement is awaited once, before the next data statement or at the end of the migration.
+ * <p>
+ * Literals in data scripts can be lifted into parameters with {@link LiteralParameterizer}, the number of distinct
+ * script shapes sent is logged at the end of each migration. Batches of rows are always sent with the rows as a
+ * parameter.
+ * <p>
+ * When a checkpoint interval is set, a checkpoint is passed the number of leading statements that have been handled
+ * each time it has advanced by at least the interval. Pipelined batches complete out of order, so the checkpoint
+ * only covers batches with every earlier batch complete. A failed batch holds the checkpoint back until failures
+ * are handled at the next barrier.
+ * <p>
+ * Several migrations can be executed concurrently, each with up to {@code maxInFlight} requests outstanding. Their
+ * schema changes are sent one at a time, as concurrent schema changes to one graph can conflict.
+ * <p>
+ * The numbers of the statements being sent are set in the {@link SlowStatementLog#STATEMENTS} {@link MDC} entry so
+ * slow statements can be attributed to them.
+ */
+public final class StatementExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementExecutor.class);
+    private static final int MAX_TRACKED_SHAPES = 100_000;
+    private static final long PERCENT = 100;
+    private final Schema<GraphResultSet, GraphStatement> schema;
+    private final int maxInFlight;
+    private final boolean deferSchemaAgreement;
+    private final boolean parameterizeLiterals;
+    private final int checkpointInterval;
+    private final Meter executed;
+    private final Counter failed;
+    private final LiteralParameterizer parameterizer = new LiteralParameterizer();
+    private final Object schemaChangeLock = new Object();
+
+    public StatementExecutor(final Schema<GraphResultSet, GraphStatement> schema, final ExecutionConfig config) {
+        this(schema, config, new MetricRegistry());
+    }
+
+    public StatementExecutor(
+            final Schema<GraphResultSet, GraphStatement> schema,
+            final ExecutionConfig config,
+            final MetricRegistry metricRegistry) {
+        if (config.getMaxInFlight() < 1) {
+            throw new IllegalArgumentException(
+                    "Max in flight requests must be at least 1, was " + config.getMaxInFlight());
+        }
+
+        if (config.getCheckpointInterval() < 0) {
+            throw new IllegalArgumentException(
+                    "Checkpoint interval must not be negative, was " + config.getCheckpointInterval());
+        }
+
+        this.schema = Objects.requireNonNull(schema);
+        this.maxInFlight = config.getMaxInFlight();
+        this.deferSchemaAgreement = config.isDeferSchemaAgreement();
+        this.parameterizeLiterals = config.isParameterizeLiterals();
+        this.checkpointInterval = config.getCheckpointInterval();
+        this.executed = metricRegistry.meter(MetricRegistry.name("statements", "executed"));
+        this.failed = metricRegistry.counter(MetricRegistry.name("statements", "failed"));
+    }
+
+    /**
+     * @return the number of statements executed successfully.
+     */
+    public int execute(final Iterator<StatementBatch> batches) {
+        return execute(batches, t -> {
+        });
+    }
+
+    /**
+     * @param checkpoint accepts the index of the first statement not yet handled, called on the calling thread.
+     * @return the number of statements executed successfully.
+     */
+    public int execute(final Iterator<StatementBatch> batches, final IntConsumer checkpoint) {
+        return execute(batches, checkpoint, () -> false);
+    }
+
+    /**
+     * @param checkpoint accepts the index of the first statement not yet handled, called on the calling thread.
+     * @param stopped checked before each batch is sent. Once it is true no more batches are sent, the outstanding
+     * requests complete and the execution fails.
+     * @return the number of statements executed successfully.
+     */
+    public int execute(
+            final Iterator<StatementBatch> batches,
+            final IntConsumer checkpoint,
+            final BooleanSupplier stopped) {
+        final Execution execution = new Execution();
+
+        try {
+            while (batches.hasNext()) {
+                final StatementBatch batch = batches.next();
+                if (stopped.getAsBoolean()) {
+                    throw new IllegalStateException(
+                            "Execution stopped before statement # " + (batch.getFirstIndex() + 1));
+                }
+                execution.start(batch);
+
+                if (batch.isSchemaChange()) {
+                    execution.await();
+                    synchronized (schemaChangeLock) {
+                        execution.executeSync(batch);
+                    }
+                } else if (maxInFlight == 1) {
+                    execution.await();
+                    execution.executeSync(batch);
+                } else {
+                    execution.submit(batch);
+                }
+
+                execution.checkpoint(checkpoint);
+            }
+        } finally {
+            execution.await();
+            execution.logShapes();
+        }
+
+        if (deferSchemaAgreement) {
+            schema.awaitSchemaAgreement();
+        }
+
+        return execution.executedStatements.get();
+    }
+
+    private final class Execution {
+        private final Semaphore permits = new Semaphore(maxInFlight);
+        private final AtomicInteger executedStatements = new AtomicInteger();
+        private final Queue<FailedBatch> failedBatches = new ConcurrentLinkedQueue<>();
+        // The end index of handled batches, by first index, that can't be checkpointed until earlier batches are.
+        private final Map<Integer, Integer> handled = new HashMap<>();
+        private int handledThrough = -1;
+        private int checkpointed;
+        // The parameterized scripts sent and the hashes of their distinct texts, only used on the calling thread.
+        private final Set<HashCode> shapes = new HashSet<>();
+        private long scripts;
+
+        private void submit(final StatementBatch batch) {
+            acquire(1);
+
+            final ListenableFuture<GraphResultSet> future;
+            try (MDC.MDCCloseable location = locate(batch)) {
+                future = schema.executeAsync(dataStatement(batch));
+            } catch (final RuntimeException e) {
+                permits.release();
+                failedBatches.add(new FailedBatch(batch, e));
+                return;
+            }
+
+            Futures.addCallback(future, new FutureCallback<GraphResultSet>() {
+                @Override
+                public void onSuccess(final GraphResultSet result) {
+                    executed(batch.size());
+                    handled(batch);
+                    permits.release();
+                }
+
+                @Override
+                public void onFailure(final Throwable t) {
+                    failedBatches.add(new FailedBatch(batch, t));
+                    permits.release();
+                }
+            });
+        }
+
+        private void executeSync(final StatementBatch batch) {
+            try (MDC.MDCCloseable location = locate(batch)) {
+                executeBatch(batch);
+                executed(batch.size());
+            } catch (final Exception e) {
+                handleFailure(batch, e);
+            }
+            handled(batch);
+        }
+
+        /**
+         * Waits for every outstanding request to complete, then handles failed batches in statement order so
+         * failures are reported the same way regardless of completion order.
+         */
+        private void await() {
+            acquire(maxInFlight);
+            permits.release(maxInFlight);
+
+            final List<FailedBatch> failed = new ArrayList<>(failedBatches);
+            failedBatches.clear();
+            failed.sort(Comparator.comparingInt(t -> t.batch.getFirstIndex()));
+            failed.forEach(t -> {
+                handleFailure(t.batch, t.cause);
+                handled(t.batch);
+            });
+        }
+
+        private synchronized void start(final StatementBatch batch) {
+            if (handledThrough < 0) {
+                handledThrough = batch.getFirstIndex();
+                checkpointed = handledThrough;
+            }
+        }
+
+        private synchronized void handled(final StatementBatch batch) {
+            handled.put(batch.getFirstIndex(), batch.getFirstIndex() + batch.size());
+            while (handled.containsKey(handledThrough)) {
+                handledThrough = handled.remove(handledThrough);
+            }
+        }
+
+        private void checkpoint(final IntConsumer checkpoint) {
+            final int through;
+            synchronized (this) {
+                through = handledThrough;
+            }
+
+            if (checkpointInterval > 0 && through - checkpointed >= checkpointInterval) {
+                checkpoint.accept(through);
+                checkpointed = through;
+            }
+        }
+
+        private void handleFailure(final StatementBatch batch, final Throwable cause) {
+            if (batch.size() == 1) {
+                logStatementFailure(batch, cause);
+                return;
+            }
+
+            // Schema changes aren't transactional, part of a failed schema script may have been applied.
+            if (batch.isSchemaChange()) {
+                failed.inc(batch.size());
+                LOGGER.error("Schema statements # {} to # {} failed.",
+                        batch.getFirstIndex() + 1, batch.getFirstIndex() + batch.size(), cause);
+                LOGGER.error("'{}'", batch.getScript());
+                return;
+            }
+
+            // A script is executed in a single transaction, so a failed batch leaves nothing behind and
+            // can be replayed one statement at a time to find the statements that failed.
+            LOGGER.warn("Batch of statements # {} to # {} failed, retrying statements individually.",
+                    batch.getFirstIndex() + 1, batch.getFirstIndex() + batch.size(), cause);
+            for (final StatementBatch single : batch.split()) {
+                try (MDC.MDCCloseable location = locate(single)) {
+                    executeBatch(single);
+                    executed(1);
+                } catch (final Exception e) {
+                    logStatementFailure(single, e);
+                }
+            }
+        }
+
+        private void executed(final int statements) {
+            executedStatements.addAndGet(statements);
+            executed.mark(statements);
+        }
+
+        private void executeBatch(final StatementBatch batch) {
+            if (batch.isSchemaChange() && deferSchemaAgreement) {
+                schema.executeDeferred(batch.getScript());
+            } else if (!batch.isSchemaChange() && (parameterizeLiterals || batch.hasRows())) {
+                schema.execute(dataStatement(batch));
+            } else {
+                schema.execute(batch.getScript());
+            }
+        }
+
+        private GraphStatement dataStatement(final StatementBatch batch) {
+            if (batch.hasRows()) {
+                return new SimpleGraphStatement(batch.getScript(), batch.getParameters());
+            }
+
+            if (!parameterizeLiterals) {
+                return new SimpleGraphStatement(batch.getScript());
+            }
+
+            final ParameterizedScript parameterized = parameterizer.parameterize(batch.getScript());
+            scripts++;
+            if (shapes.size() < MAX_TRACKED_SHAPES) {
+                shapes.add(Hashing.murmur3_128().hashString(parameterized.getScript(), StandardCharsets.UTF_8));
+            }
+
+            return new SimpleGraphStatement(parameterized.getScript(), parameterized.getParameters());
+        }
+
+        private void logShapes() {
+            if (!parameterizeLiterals || scripts == 0) {
+                return;
+            }
+
+            String distinct = String.valueOf(shapes.size());
+            if (shapes.size() >= MAX_TRACKED_SHAPES) {
+                distinct = "at least " + distinct;
+            }
+
+            LOGGER.info("Literals parameterized in {} data scripts, {} distinct shapes ({}% reused).",
+                    scripts, distinct, (scripts - shapes.size()) * PERCENT / scripts);
+        }
+
+        private void acquire(final int count) {
+            try {
+                permits.acquire(count);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for statements to complete.", e);
+            }
+        }
+    }
+
+    private static MDC.MDCCloseable locate(final StatementBatch batch) {
+        if (batch.size() == 1) {
+            return MDC.putCloseable(SlowStatementLog.STATEMENTS, String.valueOf(batch.getFirstIndex() + 1));
+        }
+
+        return MDC.putCloseable(
+                SlowStatementLog.STATEMENTS,
+                (batch.getFirstIndex() + 1) + " to # " + (batch.getFirstIndex() + batch.size()));
+    }
+
+    private void logStatementFailure(final StatementBatch batch, final Throwable cause) {
+        failed.inc();
+        LOGGER.error("Statement execution failed on statement # {}", batch.getFirstIndex() + 1, cause);
+        LOGGER.error("'{}'", batch.getScript());
+        if (batch.hasRows()) {
+            LOGGER.error("Row: {}", batch.getRows().get(0));
+        }
+    }
+
+    private static final class FailedBatch {
+        private final StatementBatch batch;
+        private final Throwable cause;
+
+        private FailedBatch(final StatementBatch batch, final Throwable cause) {
+            this.batch = batch;
+            this.cause = cause;
+        }
+    }
+}
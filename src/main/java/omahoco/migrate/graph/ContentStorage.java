@@ -0,0 +1,170 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.Migration;
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * How the contents of an applied migration are stored in its {@code migrationContents} property. The format is
+ * recorded alongside the contents so migrations stored with any policy can be read back.
+ * <p>
+ * Contents are built a statement at a time. When a maximum length is set, reading stops once the statements pass it
+ * and only the checksum of the migration is stored, otherwise the whole migration is stored.
+ */
+public enum ContentStorage {
+    /**
+     * The statements as text, one per line.
+     */
+    FULL("full") {
+        @Override
+        Optional<String> store(final Migration migration, final int maxLength) {
+            final StringBuilder contents = new StringBuilder();
+            if (!write(migration, contents, maxLength)) {
+                return Optional.empty();
+            }
+
+            return Optional.of(contents.toString());
+        }
+
+        @Override
+        Stream<String> load(final String fileName, final String contents) {
+            return LINE_SEPARATOR.splitAsStream(contents);
+        }
+    },
+    /**
+     * The statements gzipped and Base64 encoded, so they still fit the text property.
+     */
+    GZIP("gzip") {
+        @Override
+        Optional<String> store(final Migration migration, final int maxLength) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            try (OutputStream base64 = Base64.getEncoder().wrap(bytes);
+                 Writer writer = new OutputStreamWriter(new GZIPOutputStream(base64), StandardCharsets.UTF_8)) {
+                if (!write(migration, writer, maxLength)) {
+                    return Optional.empty();
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return Optional.of(new String(bytes.toByteArray(), StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        Stream<String> load(final String fileName, final String contents) {
+            final byte[] compressed = Base64.getDecoder().decode(contents);
+
+            try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                return LINE_SEPARATOR.splitAsStream(new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8));
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    },
+    /**
+     * Nothing but the checksum, which is always stored. The statements of the migration can't be read back.
+     */
+    CHECKSUM("checksum") {
+        @Override
+        Optional<String> store(final Migration migration, final int maxLength) {
+            return Optional.of("");
+        }
+
+        @Override
+        Stream<String> load(final String fileName, final String contents) {
+            throw new IllegalStateException("Only the checksum of migration " + fileName + " was stored.");
+        }
+    };
+
+    /**
+     * A maximum length that stores the contents of every migration, however long.
+     */
+    static final int UNLIMITED = 0;
+    private static final Pattern LINE_SEPARATOR = Pattern.compile(Pattern.quote(System.lineSeparator()));
+    private final String format;
+
+    ContentStorage(final String format) {
+        this.format = format;
+    }
+
+    /**
+     * @return the value of the {@code migrationContentsFormat} property.
+     */
+    String getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the storage for a {@code migrationContentsFormat}, migrations saved before the format was recorded
+     * are stored in full.
+     */
+    static ContentStorage fromFormat(final String format) {
+        if (format == null) {
+            return FULL;
+        }
+
+        for (final ContentStorage storage : values()) {
+            if (storage.format.equals(format)) {
+                return storage;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown migration contents format: " + format);
+    }
+
+    /**
+     * @param maxLength the maximum length of the statements in characters, before any compression, or
+     * {@link #UNLIMITED}.
+     * @return the contents to store, or empty when the statements are longer than {@code maxLength} characters.
+     * Reading stops once the limit is passed, so no more than about {@code maxLength} characters are held in memory.
+     */
+    abstract Optional<String> store(Migration migration, int maxLength);
+
+    abstract Stream<String> load(String fileName, String contents);
+
+    /**
+     * Writes the statements of a migration one per line, until their length passes {@code maxLength}.
+     *
+     * @return false if the statements passed {@code maxLength} before all of them were written.
+     */
+    private static boolean write(final Migration migration, final Appendable out, final int maxLength) {
+        try (Stream<String> statements = migration.streamStatements()) {
+            final Iterator<String> iterator = statements.iterator();
+            long length = 0;
+            while (iterator.hasNext()) {
+                final String statement = iterator.next();
+                length += statement.length();
+                if (maxLength != UNLIMITED && length > maxLength) {
+                    return false;
+                }
+
+                out.append(statement);
+                if (iterator.hasNext()) {
+                    out.append(System.lineSeparator());
+                    length += System.lineSeparator().length();
+                }
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return true;
+    }
+}
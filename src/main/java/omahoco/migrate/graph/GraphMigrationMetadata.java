@@ -1,17 +1,23 @@
 package omahoco.migrate.graph;
 
 import omahoco.migrate.Migration;
+import omahoco.migrate.MigrationCheckpoint;
+import omahoco.migrate.MigrationFingerprint;
 import omahoco.migrate.MigrationMetadata;
+import omahoco.migrate.MigrationSummary;
 import omahoco.migrate.parse.SimpleStatementParser;
 import omahoco.migrate.parse.StatementParser;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.exceptions.DriverException;
 import com.datastax.driver.dse.graph.GraphNode;
 import com.datastax.driver.dse.graph.GraphResultSet;
 import com.datastax.driver.dse.graph.GraphStatement;
 import com.datastax.driver.dse.graph.SimpleGraphStatement;
-import com.datastax.driver.dse.graph.Vertex;
 import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.inject.Inject;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
@@ -19,47 +25,129 @@ import java.io.InputStreamReader;
 import java.sql.Timestamp;
 import java.text.MessageFormat;
 import java.time.Instant;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Stores a record of each applied migration, and a summary with a {@link MigrationFingerprint} of the whole history
+ * that is updated as each migration is saved. The progress of a migration being applied is kept in a checkpoint
+ * until the migration is saved.
+ */
 public final class GraphMigrationMetadata implements MigrationMetadata {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphMigrationMetadata.class);
     private static final String DATABASE_MIGRATION_LABEL = "databaseMigration";
+    private static final String SUMMARY_LABEL = "databaseMigrationSummary";
     private static final String CREATE_METADATA_RESOURCE = "migration_metadata.gremlin";
+    private static final String CHECKPOINT_LABEL = "databaseMigrationCheckpoint";
+    private static final String CREATE_SUMMARY_RESOURCE = "migration_summary.gremlin";
+    private static final String CREATE_CHECKPOINT_RESOURCE = "migration_checkpoint.gremlin";
     private final Schema<GraphResultSet, GraphStatement> graphSchema;
     private final StatementParser parser = new SimpleStatementParser();
+    private final ContentStorage contentStorage;
+    private final int maxContentLength;
+    private final Timer getMigrationsTimer;
+    private final Timer saveMigrationTimer;
     private boolean metadataExists = false;
+    private boolean summaryExists = false;
+    private boolean contentsFormatExists = false;
+    private boolean checkpointExists = false;
+    private boolean summaryRead = false;
+    private MigrationSummary summary;
 
-    @Inject
     public GraphMigrationMetadata(final Schema<GraphResultSet, GraphStatement> graphSchema) {
+        this(graphSchema, ContentStorage.FULL, ContentStorage.UNLIMITED, new MetricRegistry());
+    }
+
+    /**
+     * @param maxContentLength the length in characters past which only the checksum of a migration is stored, or
+     * {@link ContentStorage#UNLIMITED} to store the contents of every migration.
+     */
+    public GraphMigrationMetadata(
+            final Schema<GraphResultSet, GraphStatement> graphSchema,
+            final ContentStorage contentStorage,
+            final int maxContentLength,
+            final MetricRegistry metricRegistry) {
+        if (maxContentLength < 0) {
+            throw new IllegalArgumentException("maxContentLength must not be negative: " + maxContentLength);
+        }
+
         this.graphSchema = Objects.requireNonNull(graphSchema);
+        this.contentStorage = Objects.requireNonNull(contentStorage);
+        this.maxContentLength = maxContentLength;
+        this.getMigrationsTimer = metricRegistry.timer(MetricRegistry.name("metadata", "getMigrations"));
+        this.saveMigrationTimer = metricRegistry.timer(MetricRegistry.name("metadata", "saveMigration"));
     }
 
+    /**
+     * Fetches the filename, version, checksum and time applied of each migration. Contents can be large so they
+     * aren't fetched until the statements of a migration are streamed.
+     */
     @Override
     public List<Migration> getMigrations() {
+        try (Timer.Context context = getMigrationsTimer.time()) {
+            return readMigrations();
+        }
+    }
+
+    @Override
+    public void saveMigration(final Migration migration) {
+        try (Timer.Context context = saveMigrationTimer.time()) {
+            writeMigration(migration);
+        }
+    }
+
+    private List<Migration> readMigrations() {
         final GraphStatement statement =
                 new SimpleGraphStatement(
                         MessageFormat.format(
                                 Statements.GET_MIGRATION_TEMPLATE,
                                 DATABASE_MIGRATION_LABEL,
-                                DATABASE_MIGRATION_LABEL));
+                                DATABASE_MIGRATION_LABEL,
+                                Properties.MIGRATION_FILENAME,
+                                Properties.MIGRATION_VERSION,
+                                Properties.MIGRATION_CHECKSUM,
+                                Properties.MIGRATION_APPLIED_AT));
 
-        return graphSchema
-                .execute(statement)
-                .all()
-                .stream()
-                .map(GraphNode::asVertex)
-                .map(MigrationMapper::toMigration)
-                .sorted(Comparator.comparing(Migration::getFileName))
-                .collect(Collectors.toList());
+        final List<Migration> migrations = new ArrayList<>();
+        for (final GraphNode node : graphSchema.execute(statement)) {
+            final Migration migration = MigrationMapper.toMigration(node);
+            migration.setStatementSource(() -> getStatements(migration.getFileName()));
+            migrations.add(migration);
+        }
+        migrations.sort(Comparator.comparing(Migration::getFileName));
+
+        return migrations;
     }
 
-    @Override
-    public void saveMigration(final Migration migration) {
+    private void writeMigration(final Migration migration) {
         init();
 
+        ContentStorage storage = contentStorage;
+        final Optional<String> contents = contentStorage.store(migration, maxContentLength);
+        if (!contents.isPresent()) {
+            LOGGER.info("Contents of migration {} are longer than {} characters, only its checksum is stored.",
+                    migration.getFileName(), maxContentLength);
+            storage = ContentStorage.CHECKSUM;
+        }
+
+        String formatProperty = "";
+        final ImmutableMap.Builder<String, Object> parameters = ImmutableMap.builder();
+        if (storage != ContentStorage.FULL) {
+            initContentsFormat();
+            formatProperty =
+                    MessageFormat.format(Statements.CONTENTS_FORMAT_TEMPLATE, Properties.MIGRATION_CONTENTS_FORMAT);
+            parameters.put("format", storage.getFormat());
+        }
+
         final String statement =
                 MessageFormat.format(
                         Statements.SAVE_MIGRATION_TEMPLATE,
@@ -68,45 +156,373 @@ public final class GraphMigrationMetadata implements MigrationMetadata {
                         Properties.MIGRATION_VERSION,
                         Properties.MIGRATION_CHECKSUM,
                         Properties.MIGRATION_CONTENTS,
-                        Properties.MIGRATION_APPLIED_AT);
+                        Properties.MIGRATION_APPLIED_AT,
+                        formatProperty);
 
         final GraphStatement graphStatement =
                 new SimpleGraphStatement(
                         statement,
-                        ImmutableMap.<String, Object>builder()
+                        parameters
                                 .put("vertexLabel", DATABASE_MIGRATION_LABEL)
                                 .put("filename", migration.getFileName())
                                 .put("version", migration.getVersion())
                                 .put("checksum", migration.getCheckSum())
-                                .put("contents", migration.getContents())
+                                .put("contents", contents.orElse(""))
                                 .put("appliedAt", Timestamp.from(Instant.now()))
                                 .build());
 
         graphSchema.execute(graphStatement);
+        updateSummary(migration);
+    }
+
+    /**
+     * Reads the summary from the graph on every call, as other runners may have applied migrations since it was last
+     * read. The summary read is kept to be rolled forward as migrations are saved.
+     */
+    @Override
+    public Optional<MigrationSummary> getSummary() {
+        summary = readSummary();
+        summaryRead = true;
+
+        return Optional.ofNullable(summary);
+    }
+
+    /**
+     * Writes the rebuilt summary only when it differs from the summary last read, so a run with nothing to apply
+     * writes nothing once the summary is current.
+     */
+    @Override
+    public void rebuildSummary(final Collection<Migration> applied) {
+        MigrationSummary current = summary;
+        if (!summaryRead) {
+            current = getSummary().orElse(null);
+        }
+
+        if (current == null && applied.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Migration> sorted = new TreeMap<>();
+        applied.forEach(t -> sorted.put(t.getFileName(), t));
+        final MigrationSummary rebuilt = rebuildSummary(current, sorted.values());
+        if (current != null
+                && rebuilt.getFingerprint().equals(current.getFingerprint())
+                && rebuilt.getLastFileName().equals(current.getLastFileName())) {
+            return;
+        }
+
+        LOGGER.info("Writing the migration summary rebuilt from {} applied migrations.", applied.size());
+        init();
+        writeSummary(rebuilt);
+    }
+
+    /**
+     * Compacts the applied migrations in filename order, stopping at the first migration after {@code version}, so
+     * the compacted migrations are always a prefix of the history. Records left behind by an interrupted compaction
+     * are removed as well.
+     */
+    @Override
+    public int compact(final int version) {
+        init();
+
+        final List<Migration> applied = getMigrations();
+        final MigrationSummary current = getSummary().orElseGet(() -> rebuildSummary(null, applied));
+        final List<Migration> remove = new ArrayList<>();
+        final List<Migration> fold = new ArrayList<>();
+
+        for (final Migration migration : applied) {
+            if (current.isCompacted(migration)) {
+                remove.add(migration);
+            } else if (migration.getVersion() <= version) {
+                fold.add(migration);
+            } else {
+                break;
+            }
+        }
+
+        String compactedThrough = current.getCompactedThrough();
+        if (!fold.isEmpty()) {
+            compactedThrough = fold.get(fold.size() - 1).getFileName();
+        }
+
+        // The summary is written first, so an interrupted compaction only leaves records that are already compacted.
+        writeSummary(
+                new MigrationSummary(
+                        current.getFingerprint(),
+                        current.getLastFileName(),
+                        compactedThrough,
+                        MigrationFingerprint.of(current.getCompactedFingerprint(), fold)));
+
+        remove.addAll(fold);
+        for (final Migration migration : remove) {
+            graphSchema.execute(
+                    new SimpleGraphStatement(
+                            MessageFormat.format(
+                                    Statements.DROP_MIGRATION_TEMPLATE,
+                                    DATABASE_MIGRATION_LABEL,
+                                    DATABASE_MIGRATION_LABEL,
+                                    Properties.MIGRATION_FILENAME),
+                            ImmutableMap.of("filename", migration.getFileName())));
+        }
+
+        LOGGER.info("Compacted {} applied migrations, history is compacted up to {}.", fold.size(), compactedThrough);
+        return fold.size();
+    }
+
+    @Override
+    public Map<String, MigrationCheckpoint> getCheckpoints() {
+        final GraphStatement statement =
+                new SimpleGraphStatement(
+                        MessageFormat.format(
+                                Statements.GET_CHECKPOINTS_TEMPLATE,
+                                CHECKPOINT_LABEL,
+                                CHECKPOINT_LABEL,
+                                Properties.CHECKPOINT_FILENAME,
+                                Properties.CHECKPOINT_CHECKSUM,
+                                Properties.CHECKPOINT_STATEMENT_INDEX));
+
+        final Map<String, MigrationCheckpoint> checkpoints = new HashMap<>();
+        try {
+            for (final GraphNode node : graphSchema.execute(statement)) {
+                final MigrationCheckpoint checkpoint = CheckpointMapper.toCheckpoint(node);
+                checkpoints.put(checkpoint.getFileName(), checkpoint);
+            }
+        } catch (final DriverException e) {
+            // Expected until the graph and the checkpoint vertex label have been created.
+            LOGGER.debug("Unable to read migration checkpoints.", e);
+        }
+
+        return checkpoints;
+    }
+
+    @Override
+    public void saveCheckpoint(final MigrationCheckpoint checkpoint) {
+        initCheckpoint();
+
+        graphSchema.execute(
+                new SimpleGraphStatement(
+                        MessageFormat.format(
+                                Statements.SAVE_CHECKPOINT_TEMPLATE,
+                                CHECKPOINT_LABEL,
+                                Properties.MIGRATION_LABEL,
+                                Properties.CHECKPOINT_FILENAME,
+                                Properties.CHECKPOINT_CHECKSUM,
+                                Properties.CHECKPOINT_STATEMENT_INDEX,
+                                Properties.CHECKPOINT_UPDATED_AT),
+                        ImmutableMap.<String, Object>builder()
+                                .put("filename", checkpoint.getFileName())
+                                .put("checksum", checkpoint.getCheckSum())
+                                .put("statementIndex", checkpoint.getStatementIndex())
+                                .put("updatedAt", Timestamp.from(Instant.now()))
+                                .build()));
+    }
+
+    @Override
+    public void removeCheckpoint(final String fileName) {
+        graphSchema.execute(
+                new SimpleGraphStatement(
+                        MessageFormat.format(
+                                Statements.DROP_MIGRATION_TEMPLATE,
+                                CHECKPOINT_LABEL,
+                                CHECKPOINT_LABEL,
+                                Properties.CHECKPOINT_FILENAME),
+                        ImmutableMap.of("filename", fileName)));
+    }
+
+    private MigrationSummary readSummary() {
+        final GraphStatement statement =
+                new SimpleGraphStatement(
+                        MessageFormat.format(
+                                Statements.GET_SUMMARY_TEMPLATE,
+                                SUMMARY_LABEL,
+                                SUMMARY_LABEL,
+                                Properties.SUMMARY_FINGERPRINT,
+                                Properties.SUMMARY_LAST_FILENAME,
+                                Properties.SUMMARY_COMPACTED_THROUGH,
+                                Properties.SUMMARY_COMPACTED_FINGERPRINT));
+
+        final GraphNode node;
+        try {
+            node = graphSchema.execute(statement).one();
+        } catch (final DriverException e) {
+            // Expected until the graph and the summary vertex label have been created.
+            LOGGER.debug("Unable to read the migration summary.", e);
+            return null;
+        }
+
+        if (node == null) {
+            return null;
+        }
+
+        return SummaryMapper.toSummary(node);
+    }
+
+    /**
+     * Rolls the summary last read or written forward, which is current while the migrations are applied holding the
+     * migration lock.
+     */
+    private void updateSummary(final Migration migration) {
+        MigrationSummary current = summary;
+        if (!summaryRead) {
+            current = getSummary().orElse(null);
+        }
+
+        if (current != null && migration.getFileName().compareTo(current.getLastFileName()) > 0) {
+            writeSummary(
+                    new MigrationSummary(
+                            MigrationFingerprint.roll(current.getFingerprint(), migration),
+                            migration.getFileName(),
+                            current.getCompactedThrough(),
+                            current.getCompactedFingerprint()));
+            return;
+        }
+
+        // Applied out of filename order, or there is no summary yet, so rebuild it from the migration records.
+        final Map<String, Migration> applied = new TreeMap<>();
+        getMigrations().forEach(t -> applied.put(t.getFileName(), t));
+        applied.put(migration.getFileName(), migration);
+        writeSummary(rebuildSummary(current, applied.values()));
+    }
+
+    private static MigrationSummary rebuildSummary(
+            final MigrationSummary current,
+            final Collection<Migration> applied) {
+        String compactedThrough = "";
+        String compactedFingerprint = MigrationFingerprint.EMPTY;
+        if (current != null) {
+            compactedThrough = current.getCompactedThrough();
+            compactedFingerprint = current.getCompactedFingerprint();
+        }
+
+        final List<Migration> uncompacted = new ArrayList<>();
+        for (final Migration migration : applied) {
+            if (current == null || !current.isCompacted(migration)) {
+                uncompacted.add(migration);
+            }
+        }
+
+        String lastFileName = compactedThrough;
+        for (final Migration migration : uncompacted) {
+            if (migration.getFileName().compareTo(lastFileName) > 0) {
+                lastFileName = migration.getFileName();
+            }
+        }
+
+        return new MigrationSummary(
+                MigrationFingerprint.of(compactedFingerprint, uncompacted),
+                lastFileName,
+                compactedThrough,
+                compactedFingerprint);
+    }
+
+    private void writeSummary(final MigrationSummary updated) {
+        initSummary();
+
+        final String statement =
+                MessageFormat.format(
+                        Statements.SAVE_SUMMARY_TEMPLATE,
+                        SUMMARY_LABEL,
+                        Properties.MIGRATION_LABEL,
+                        Properties.SUMMARY_FINGERPRINT,
+                        Properties.SUMMARY_LAST_FILENAME,
+                        Properties.SUMMARY_COMPACTED_THROUGH,
+                        Properties.SUMMARY_COMPACTED_FINGERPRINT);
+
+        graphSchema.execute(
+                new SimpleGraphStatement(
+                        statement,
+                        ImmutableMap.<String, Object>builder()
+                                .put("fingerprint", updated.getFingerprint())
+                                .put("lastFilename", updated.getLastFileName())
+                                .put("compactedThrough", updated.getCompactedThrough())
+                                .put("compactedFingerprint", updated.getCompactedFingerprint())
+                                .build()));
+
+        summary = updated;
+        summaryRead = true;
+    }
+
+    private Stream<String> getStatements(final String fileName) {
+        final GraphStatement statement =
+                new SimpleGraphStatement(
+                        MessageFormat.format(
+                                Statements.GET_MIGRATION_CONTENTS_TEMPLATE,
+                                DATABASE_MIGRATION_LABEL,
+                                DATABASE_MIGRATION_LABEL,
+                                Properties.MIGRATION_FILENAME),
+                        ImmutableMap.of("filename", fileName));
+
+        final GraphNode node = graphSchema.execute(statement).one();
+        if (node == null) {
+            return Stream.empty();
+        }
+
+        final GraphNode format = node.get(Properties.MIGRATION_CONTENTS_FORMAT);
+        final ContentStorage storage;
+        if (format == null || format.isNull()) {
+            storage = ContentStorage.FULL;
+        } else {
+            storage = ContentStorage.fromFormat(format.get(0).asString());
+        }
+
+        return storage.load(fileName, node.get(Properties.MIGRATION_CONTENTS).get(0).asString());
     }
 
     private void init() {
-        if (!metadataExists()) {
-            createMigrationMetadataVertex();
+        if (!metadataExists) {
+            metadataExists = graphSchema.execute(Statements.METADATA_EXISTS).one().asBoolean();
+        }
+
+        if (!metadataExists) {
+            executeResource(CREATE_METADATA_RESOURCE);
+            metadataExists = true;
         }
     }
 
-    private boolean metadataExists() {
-        if (metadataExists) {
-            return true;
+    private void initSummary() {
+        if (!summaryExists) {
+            summaryExists = graphSchema.execute(Statements.SUMMARY_EXISTS).one().asBoolean();
         }
 
-        return graphSchema.execute(Statements.METADATA_EXISTS).one().asBoolean();
+        if (!summaryExists) {
+            executeResource(CREATE_SUMMARY_RESOURCE);
+            summaryExists = true;
+        }
     }
 
-    private void createMigrationMetadataVertex() {
-        final InputStream inputStream = getClass().getResourceAsStream(CREATE_METADATA_RESOURCE);
+    private void initCheckpoint() {
+        if (!checkpointExists) {
+            checkpointExists = graphSchema.execute(Statements.CHECKPOINT_EXISTS).one().asBoolean();
+        }
+
+        if (!checkpointExists) {
+            executeResource(CREATE_CHECKPOINT_RESOURCE);
+            checkpointExists = true;
+        }
+    }
+
+    /**
+     * Adds the contents format property to metadata created before it existed.
+     */
+    private void initContentsFormat() {
+        if (contentsFormatExists) {
+            return;
+        }
+
+        if (!graphSchema.execute(Statements.CONTENTS_FORMAT_EXISTS).one().asBoolean()) {
+            graphSchema.execute(Statements.CREATE_CONTENTS_FORMAT_PROPERTY);
+            graphSchema.execute(Statements.ADD_CONTENTS_FORMAT_PROPERTY);
+        }
+        contentsFormatExists = true;
+    }
+
+    private void executeResource(final String resource) {
+        final InputStream inputStream = getClass().getResourceAsStream(resource);
 
         try {
             final List<String> statements =
                     parser.parse(readLines(inputStream));
             statements.forEach(graphSchema::execute);
-            metadataExists = true;
         } catch (final IOException e) {
             throw new IllegalStateException(e);
         }
@@ -119,30 +535,35 @@ public final class GraphMigrationMetadata implements MigrationMetadata {
     }
 
     private static class MigrationMapper {
-        private static Migration toMigration(final Vertex vertex) {
-            final Migration migration =
-                    new Migration(vertex.getProperty(Properties.MIGRATION_FILENAME).getValue().asString());
-            migration.setVersion(vertex.getProperty(Properties.MIGRATION_VERSION).getValue().asInt());
-            migration.setCheckSum(
-                    vertex.getProperty(Properties.MIGRATION_CHECKSUM).getValue().asString());
-            migration.setStatements(
-                    Arrays.asList(
-                            vertex
-                                    .getProperty(Properties.MIGRATION_CONTENTS)
-                                    .getValue()
-                                    .asString()
-                                    .split(System.lineSeparator())));
-            migration.setAppliedAt(
-                    vertex
-                            .getProperty(Properties.MIGRATION_APPLIED_AT)
-                            .getValue()
-                            .as(Timestamp.class)
-                            .toInstant());
+        private static Migration toMigration(final GraphNode node) {
+            final Migration migration = new Migration(node.get(Properties.MIGRATION_FILENAME).asString());
+            migration.setVersion(node.get(Properties.MIGRATION_VERSION).asInt());
+            migration.setCheckSum(node.get(Properties.MIGRATION_CHECKSUM).asString());
+            migration.setAppliedAt(node.get(Properties.MIGRATION_APPLIED_AT).as(Timestamp.class).toInstant());
 
             return migration;
         }
     }
 
+    private static class SummaryMapper {
+        private static MigrationSummary toSummary(final GraphNode node) {
+            return new MigrationSummary(
+                    node.get(Properties.SUMMARY_FINGERPRINT).asString(),
+                    node.get(Properties.SUMMARY_LAST_FILENAME).asString(),
+                    node.get(Properties.SUMMARY_COMPACTED_THROUGH).asString(),
+                    node.get(Properties.SUMMARY_COMPACTED_FINGERPRINT).asString());
+        }
+    }
+
+    private static class CheckpointMapper {
+        private static MigrationCheckpoint toCheckpoint(final GraphNode node) {
+            return new MigrationCheckpoint(
+                    node.get(Properties.CHECKPOINT_FILENAME).asString(),
+                    node.get(Properties.CHECKPOINT_CHECKSUM).asString(),
+                    node.get(Properties.CHECKPOINT_STATEMENT_INDEX).asInt());
+        }
+    }
+
     private static class Properties {
         private static final String MIGRATION_LABEL = "migrationLabel";
         private static final String MIGRATION_FILENAME = "migrationFilename";
@@ -150,16 +571,66 @@ public final class GraphMigrationMetadata implements MigrationMetadata {
         private static final String MIGRATION_CHECKSUM = "migrationChecksum";
         private static final String MIGRATION_CONTENTS = "migrationContents";
         private static final String MIGRATION_APPLIED_AT = "migrationAppliedAt";
+        private static final String MIGRATION_CONTENTS_FORMAT = "migrationContentsFormat";
+        private static final String SUMMARY_FINGERPRINT = "summaryFingerprint";
+        private static final String SUMMARY_LAST_FILENAME = "summaryLastFilename";
+        private static final String SUMMARY_COMPACTED_THROUGH = "summaryCompactedThrough";
+        private static final String SUMMARY_COMPACTED_FINGERPRINT = "summaryCompactedFingerprint";
+        private static final String CHECKPOINT_FILENAME = "checkpointFilename";
+        private static final String CHECKPOINT_CHECKSUM = "checkpointChecksum";
+        private static final String CHECKPOINT_STATEMENT_INDEX = "checkpointStatementIndex";
+        private static final String CHECKPOINT_UPDATED_AT = "checkpointUpdatedAt";
     }
 
     private static class Statements {
         private static final GraphStatement METADATA_EXISTS =
                 new SimpleGraphStatement(
                         String.format("schema.vertexLabel('%s').exists()", DATABASE_MIGRATION_LABEL));
+        private static final GraphStatement SUMMARY_EXISTS =
+                new SimpleGraphStatement(String.format("schema.vertexLabel('%s').exists()", SUMMARY_LABEL));
+        private static final GraphStatement CHECKPOINT_EXISTS =
+                new SimpleGraphStatement(String.format("schema.vertexLabel('%s').exists()", CHECKPOINT_LABEL));
         private static final String GET_MIGRATION_TEMPLATE =
-                "g.V().hasLabel(''{0}'').has(''migrationLabel'', ''{1}'')";
+                "g.V().hasLabel(''{0}'').has(''migrationLabel'', ''{1}'')"
+                        + ".project(''{2}'', ''{3}'', ''{4}'', ''{5}'')"
+                        + ".by(''{2}'').by(''{3}'').by(''{4}'').by(''{5}'')";
+        private static final String GET_MIGRATION_CONTENTS_TEMPLATE =
+                "g.V().hasLabel(''{0}'').has(''migrationLabel'', ''{1}'').has(''{2}'', filename).valueMap()";
+        private static final GraphStatement CONTENTS_FORMAT_EXISTS =
+                new SimpleGraphStatement(
+                        String.format("schema.vertexLabel('%s').describe().contains(\"'%s'\")",
+                                DATABASE_MIGRATION_LABEL, Properties.MIGRATION_CONTENTS_FORMAT));
+        private static final GraphStatement CREATE_CONTENTS_FORMAT_PROPERTY =
+                new SimpleGraphStatement(
+                        String.format("schema.propertyKey('%s').Text().ifNotExists().create()",
+                                Properties.MIGRATION_CONTENTS_FORMAT));
+        private static final GraphStatement ADD_CONTENTS_FORMAT_PROPERTY =
+                new SimpleGraphStatement(
+                        String.format("schema.vertexLabel('%s').properties('%s').add()",
+                                DATABASE_MIGRATION_LABEL, Properties.MIGRATION_CONTENTS_FORMAT));
+        private static final String CONTENTS_FORMAT_TEMPLATE = ", ''{0}'', format";
+        private static final String DROP_MIGRATION_TEMPLATE =
+                "g.V().hasLabel(''{0}'').has(''migrationLabel'', ''{1}'').has(''{2}'', filename).drop()";
+        private static final String GET_SUMMARY_TEMPLATE =
+                "g.V().hasLabel(''{0}'').has(''migrationLabel'', ''{1}'')"
+                        + ".project(''{2}'', ''{3}'', ''{4}'', ''{5}'')"
+                        + ".by(''{2}'').by(''{3}'').by(''{4}'').by(''{5}'')";
+        private static final String SAVE_SUMMARY_TEMPLATE =
+                "g.V().hasLabel(''{0}'').has(''{1}'', ''{0}'').fold()"
+                        + ".coalesce(unfold(), addV(''{0}'').property(''{1}'', ''{0}''))"
+                        + ".property(''{2}'', fingerprint).property(''{3}'', lastFilename)"
+                        + ".property(''{4}'', compactedThrough).property(''{5}'', compactedFingerprint)";
+        private static final String GET_CHECKPOINTS_TEMPLATE =
+                "g.V().hasLabel(''{0}'').has(''migrationLabel'', ''{1}'')"
+                        + ".project(''{2}'', ''{3}'', ''{4}'')"
+                        + ".by(''{2}'').by(''{3}'').by(''{4}'')";
+        private static final String SAVE_CHECKPOINT_TEMPLATE =
+                "g.V().hasLabel(''{0}'').has(''{1}'', ''{0}'').has(''{2}'', filename).fold()"
+                        + ".coalesce(unfold(), addV(''{0}'').property(''{1}'', ''{0}'').property(''{2}'', filename))"
+                        + ".property(''{3}'', checksum).property(''{4}'', statementIndex)"
+                        + ".property(''{5}'', updatedAt)";
         private static final String SAVE_MIGRATION_TEMPLATE =
                 "graph.addVertex(label, vertexLabel, ''{0}'', vertexLabel,''{1}'', filename, ''{2}'', version, ''{3}''"
-                        + ", checksum, ''{4}'', contents, ''{5}'', appliedAt)";
+                        + ", checksum, ''{4}'', contents, ''{5}'', appliedAt{6})";
     }
 }
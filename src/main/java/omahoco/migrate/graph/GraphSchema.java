@@ -1,22 +1,36 @@
 package omahoco.migrate.graph;
 
-import omahoco.migrate.util.Delayer;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.datastax.driver.dse.DseSession;
+import com.datastax.driver.dse.graph.GraphNode;
 import com.datastax.driver.dse.graph.GraphResultSet;
 import com.datastax.driver.dse.graph.GraphStatement;
 import com.datastax.driver.dse.graph.SimpleGraphStatement;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Executes statements against the graph, waiting for schema agreement after schema changes. The latency of schema
+ * and data statements is timed separately in the {@code statements.schema} and {@code statements.data} metrics.
+ * Slow statements are logged, and sampled statements traced, by the {@link SlowStatementLog}.
+ */
 public final class GraphSchema implements Schema<GraphResultSet, GraphStatement> {
     private static final Logger LOGGER = LoggerFactory.getLogger(GraphSchema.class);
     private static final String COMMAND_SEPARATOR = ".";
@@ -25,18 +39,34 @@ public final class GraphSchema implements Schema<GraphResultSet, GraphStatement>
     private static final String SET_STATEMENT = "set(\"%s\")";
     private static final String CREATE_COMMAND = "ifNotExists().create()";
     private static final String DROP_COMMAND = "drop()";
-    private static final int SCHEMA_AGREEMENT_ATTEMPTS = 15;
-    private static final int RETRY_DELAY_MILLIS = 1000;
+    private static final String LIST_GRAPHS_STATEMENT = "system.graphs()";
 
     private final DseSession dseSession;
-    private final Delayer delayer;
+    private final SchemaAgreementWaiter schemaAgreementWaiter;
     private final SchemaInfo schemaInfo;
+    private final Timer schemaTimer;
+    private final Timer dataTimer;
+    private final Counter failures;
+    private final SlowStatementLog slowStatementLog;
+    // Deferred schema changes bump the pending generation; a wait only marks agreed the generation it saw
+    // before waiting, so a change deferred by another thread meanwhile stays pending.
+    private final AtomicLong pendingGeneration = new AtomicLong();
+    private final AtomicLong agreedGeneration = new AtomicLong();
 
     @Inject
-    public GraphSchema(final Delayer delayer, final SchemaInfo schemaInfo, final DseSession session) {
+    public GraphSchema(
+            final SchemaAgreementWaiter schemaAgreementWaiter,
+            final SchemaInfo schemaInfo,
+            final DseSession session,
+            final MetricRegistry metricRegistry,
+            final SlowStatementLog slowStatementLog) {
         this.dseSession = Objects.requireNonNull(session);
         this.schemaInfo = Objects.requireNonNull(schemaInfo);
-        this.delayer = Objects.requireNonNull(delayer);
+        this.schemaAgreementWaiter = Objects.requireNonNull(schemaAgreementWaiter);
+        this.schemaTimer = metricRegistry.timer(MetricRegistry.name("statements", "schema"));
+        this.dataTimer = metricRegistry.timer(MetricRegistry.name("statements", "data"));
+        this.failures = metricRegistry.counter(MetricRegistry.name("statements", "failures"));
+        this.slowStatementLog = Objects.requireNonNull(slowStatementLog);
     }
 
     @Override
@@ -74,16 +104,71 @@ public final class GraphSchema implements Schema<GraphResultSet, GraphStatement>
 
     @Override
     public GraphResultSet execute(final GraphStatement graphStatement) {
-        final GraphResultSet resultSet =
-                dseSession.executeGraph(graphStatement.setGraphName(schemaInfo.getSchemaName()));
+        final boolean schemaChange = isSchemaChange(graphStatement);
+        if (!schemaChange) {
+            awaitSchemaAgreement();
+        }
 
-        if (isSchemaChange(graphStatement)) {
+        final GraphResultSet resultSet = timedExecute(graphStatement, schemaChange);
+
+        if (schemaChange) {
             waitForSchemaAgreement(resultSet);
         }
 
         return resultSet;
     }
 
+    @Override
+    public ListenableFuture<GraphResultSet> executeAsync(final GraphStatement graphStatement) {
+        if (isSchemaChange(graphStatement)) {
+            throw new IllegalArgumentException("Schema changes can't be executed asynchronously.");
+        }
+
+        awaitSchemaAgreement();
+
+        final String location = slowStatementLog.location();
+        final GraphStatement sampled = slowStatementLog.sample(graphStatement);
+        final Timer.Context context = dataTimer.time();
+        final ListenableFuture<GraphResultSet> future =
+                dseSession.executeGraphAsync(sampled.setGraphName(schemaInfo.getSchemaName()));
+        Futures.addCallback(future, new FutureCallback<GraphResultSet>() {
+            @Override
+            public void onSuccess(final GraphResultSet result) {
+                slowStatementLog.completed(location, sampled, result, context.stop());
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                context.stop();
+                failures.inc();
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public void executeDeferred(final String statement) {
+        final GraphStatement graphStatement = new SimpleGraphStatement(statement);
+        if (!isSchemaChange(graphStatement)) {
+            execute(graphStatement);
+            return;
+        }
+
+        final GraphResultSet resultSet = timedExecute(graphStatement, true);
+
+        if (!resultSet.getExecutionInfo().isSchemaInAgreement()) {
+            pendingGeneration.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void awaitSchemaAgreement() {
+        if (isSchemaAgreementPending()) {
+            waitForSchemaAgreement();
+        }
+    }
+
     @VisibleForTesting
     static boolean isSchemaChange(final GraphStatement statement) {
         if (!(statement instanceof SimpleGraphStatement)) {
@@ -91,24 +176,63 @@ public final class GraphSchema implements Schema<GraphResultSet, GraphStatement>
                     "Unsupported statement type: " + statement.getClass().getCanonicalName());
         }
 
-        final String query = ((SimpleGraphStatement) statement).getQueryString();
+        return isSchemaChange(((SimpleGraphStatement) statement).getQueryString());
+    }
 
+    public static boolean isSchemaChange(final String query) {
         return query.startsWith("schema.");
     }
 
+    /**
+     * @return the names of the graphs that exist in the cluster.
+     */
+    public static List<String> listGraphs(final DseSession session) {
+        final List<String> graphNames = new ArrayList<>();
+        for (final GraphNode node : session.executeGraph(new SimpleGraphStatement(LIST_GRAPHS_STATEMENT)
+                .setSystemQuery())) {
+            graphNames.add(node.asString());
+        }
+
+        return graphNames;
+    }
+
+    private GraphResultSet timedExecute(final GraphStatement graphStatement, final boolean schemaChange) {
+        Timer timer = dataTimer;
+        if (schemaChange) {
+            timer = schemaTimer;
+        }
+
+        final GraphStatement sampled = slowStatementLog.sample(graphStatement);
+        final Timer.Context context = timer.time();
+        final GraphResultSet resultSet;
+        try {
+            resultSet = dseSession.executeGraph(sampled.setGraphName(schemaInfo.getSchemaName()));
+        } catch (final RuntimeException e) {
+            context.stop();
+            failures.inc();
+            throw e;
+        }
+
+        slowStatementLog.completed(slowStatementLog.location(), sampled, resultSet, context.stop());
+        return resultSet;
+    }
+
     private void waitForSchemaAgreement(final GraphResultSet resultSet) {
-        if (resultSet.getExecutionInfo().isSchemaInAgreement()) {
+        if (resultSet.getExecutionInfo().isSchemaInAgreement() && !isSchemaAgreementPending()) {
             return;
         }
 
-        for (int i = 0; i < SCHEMA_AGREEMENT_ATTEMPTS; i++) {
-            if (dseSession.getCluster().getMetadata().checkSchemaAgreement()) {
-                return;
-            }
-            LOGGER.info("Waiting for schema agreement.");
-            delayer.delay(RETRY_DELAY_MILLIS);
-        }
-        throw new IllegalStateException("Failed to achieve schema agreement across the cluster.");
+        waitForSchemaAgreement();
+    }
+
+    private void waitForSchemaAgreement() {
+        final long generation = pendingGeneration.get();
+        schemaAgreementWaiter.await();
+        agreedGeneration.accumulateAndGet(generation, Math::max);
+    }
+
+    private boolean isSchemaAgreementPending() {
+        return pendingGeneration.get() > agreedGeneration.get();
     }
 
     private String combine(final Supplier<Optional<String>>... supplier) {
@@ -0,0 +1,57 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.MigrationLock;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lock of a graph held in memory, shared by the runners of one process. Its leases don't expire.
+ */
+public final class InMemoryMigrationLock implements MigrationLock {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryMigrationLock.class);
+    private final Semaphore permit = new Semaphore(1, true);
+    private final Timer waitTimer;
+
+    @Inject
+    public InMemoryMigrationLock(final MetricRegistry metricRegistry) {
+        this.waitTimer = metricRegistry.timer(MetricRegistry.name("lock", "wait"));
+    }
+
+    @Override
+    public Lease acquire() {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            permit.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the migration lock.", e);
+        }
+
+        final long elapsed = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+        waitTimer.update(elapsed, TimeUnit.NANOSECONDS);
+        LOGGER.info("Acquired in-memory migration lock after waiting {} ms.", TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return new Lease() {
+            private boolean released;
+
+            @Override
+            public boolean isHeld() {
+                return !released;
+            }
+
+            @Override
+            public synchronized void close() {
+                if (!released) {
+                    released = true;
+                    permit.release();
+                }
+            }
+        };
+    }
+}
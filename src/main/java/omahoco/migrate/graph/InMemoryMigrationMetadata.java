@@ -0,0 +1,124 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.Migration;
+import omahoco.migrate.MigrationCheckpoint;
+import omahoco.migrate.MigrationFingerprint;
+import omahoco.migrate.MigrationMetadata;
+import omahoco.migrate.MigrationSummary;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * The history of applied migrations held in memory, keeping the summary and compacting the history the same way as
+ * {@link GraphMigrationMetadata}. Only the checksums of applied migrations are kept, not their statements.
+ */
+public final class InMemoryMigrationMetadata implements MigrationMetadata {
+    private final NavigableMap<String, Migration> applied = new TreeMap<>();
+    private final Map<String, MigrationCheckpoint> checkpoints = new HashMap<>();
+    private MigrationSummary summary;
+
+    @Override
+    public synchronized List<Migration> getMigrations() {
+        return new ArrayList<>(applied.values());
+    }
+
+    @Override
+    public synchronized Optional<MigrationSummary> getSummary() {
+        return Optional.ofNullable(summary);
+    }
+
+    @Override
+    public synchronized void saveMigration(final Migration migration) {
+        final Migration record = new Migration(migration.getFileName(), migration.getCheckSum());
+        record.setVersion(migration.getVersion());
+        record.setAppliedAt(Instant.now());
+        applied.put(record.getFileName(), record);
+
+        if (summary != null && record.getFileName().compareTo(summary.getLastFileName()) > 0) {
+            summary = new MigrationSummary(
+                    MigrationFingerprint.roll(summary.getFingerprint(), record),
+                    record.getFileName(),
+                    summary.getCompactedThrough(),
+                    summary.getCompactedFingerprint());
+            return;
+        }
+
+        // Applied out of filename order, or there is no summary yet, so rebuild it from the history.
+        summary = rebuild();
+    }
+
+    /**
+     * The history is the only source of the summary, so this only writes a summary for a history that has none.
+     */
+    @Override
+    public synchronized void rebuildSummary(final Collection<Migration> migrations) {
+        if (!applied.isEmpty()) {
+            summary = rebuild();
+        }
+    }
+
+    private MigrationSummary rebuild() {
+        String compactedThrough = "";
+        String compactedFingerprint = MigrationFingerprint.EMPTY;
+        if (summary != null) {
+            compactedThrough = summary.getCompactedThrough();
+            compactedFingerprint = summary.getCompactedFingerprint();
+        }
+
+        return new MigrationSummary(
+                MigrationFingerprint.of(compactedFingerprint, applied.values()),
+                applied.lastKey(),
+                compactedThrough,
+                compactedFingerprint);
+    }
+
+    /**
+     * Compacts the applied migrations in filename order, stopping at the first migration after {@code version}.
+     */
+    @Override
+    public synchronized int compact(final int version) {
+        final List<Migration> fold = new ArrayList<>();
+        for (final Migration migration : applied.values()) {
+            if (migration.getVersion() > version) {
+                break;
+            }
+            fold.add(migration);
+        }
+
+        if (summary == null || fold.isEmpty()) {
+            return 0;
+        }
+
+        summary = new MigrationSummary(
+                summary.getFingerprint(),
+                summary.getLastFileName(),
+                fold.get(fold.size() - 1).getFileName(),
+                MigrationFingerprint.of(summary.getCompactedFingerprint(), fold));
+        fold.forEach(t -> applied.remove(t.getFileName()));
+
+        return fold.size();
+    }
+
+    @Override
+    public synchronized Map<String, MigrationCheckpoint> getCheckpoints() {
+        return new HashMap<>(checkpoints);
+    }
+
+    @Override
+    public synchronized void saveCheckpoint(final MigrationCheckpoint checkpoint) {
+        checkpoints.put(checkpoint.getFileName(), checkpoint);
+    }
+
+    @Override
+    public synchronized void removeCheckpoint(final String fileName) {
+        checkpoints.remove(fileName);
+    }
+}
@@ -0,0 +1,309 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.config.SimulationConfig;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.dse.graph.GraphNode;
+import com.datastax.driver.dse.graph.GraphResultSet;
+import com.datastax.driver.dse.graph.GraphStatement;
+import com.datastax.driver.dse.graph.SimpleGraphStatement;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A graph held in memory, standing in for a cluster in benchmarks and tests. Statements aren't interpreted, schema
+ * changes are recorded and data requests are counted. Each request takes the configured latency, plus up to the
+ * configured jitter, and fails at the configured rate. Schema changes then take the configured time to reach
+ * agreement, which is awaited the way {@link GraphSchema} awaits it, including when agreement is deferred.
+ * <p>
+ * Asynchronous requests complete on a scheduler thread once their latency has elapsed, so they overlap like requests
+ * to a cluster do. The scheduler is stopped by {@link #close()}.
+ */
+public final class InMemorySchema implements Schema<GraphResultSet, GraphStatement>, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemorySchema.class);
+    private final int latencyMicros;
+    private final int jitterMicros;
+    private final double failureRate;
+    private final long schemaAgreementNanos;
+    private final ScheduledExecutorService scheduler;
+    private final Timer schemaTimer;
+    private final Timer dataTimer;
+    private final Timer agreementTimer;
+    private final Counter failures;
+    private final List<String> schemaChanges = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong dataRequests = new AtomicLong();
+    private volatile boolean created;
+    private volatile boolean schemaAgreementPending;
+
+    @Inject
+    public InMemorySchema(final SimulationConfig config, final MetricRegistry metricRegistry) {
+        if (config.getLatencyMicros() < 0 || config.getJitterMicros() < 0 || config.getSchemaAgreementMillis() < 0) {
+            throw new IllegalArgumentException("Simulated latencies and delays must not be negative.");
+        }
+
+        if (config.getFailureRate() < 0 || config.getFailureRate() > 1) {
+            throw new IllegalArgumentException(
+                    "Failure rate must be between 0 and 1, was " + config.getFailureRate());
+        }
+
+        this.latencyMicros = config.getLatencyMicros();
+        this.jitterMicros = config.getJitterMicros();
+        this.failureRate = config.getFailureRate();
+        this.schemaAgreementNanos = TimeUnit.MILLISECONDS.toNanos(config.getSchemaAgreementMillis());
+        this.scheduler = new ScheduledThreadPoolExecutor(
+                1, new ThreadFactoryBuilder().setNameFormat("in-memory-schema-%d").setDaemon(true).build());
+        this.schemaTimer = metricRegistry.timer(MetricRegistry.name("statements", "schema"));
+        this.dataTimer = metricRegistry.timer(MetricRegistry.name("statements", "data"));
+        this.agreementTimer = metricRegistry.timer(MetricRegistry.name("schemaAgreement", "wait"));
+        this.failures = metricRegistry.counter(MetricRegistry.name("statements", "failures"));
+    }
+
+    @Override
+    public void create() {
+        create(null);
+    }
+
+    @Override
+    public void create(final Map<String, String> options) {
+        if (!created) {
+            LOGGER.info("Creating in-memory schema");
+            created = true;
+        }
+    }
+
+    @Override
+    public void drop() {
+        created = false;
+        schemaChanges.clear();
+        dataRequests.set(0);
+    }
+
+    @Override
+    public void execute(final String statement) {
+        execute(new SimpleGraphStatement(statement));
+    }
+
+    @Override
+    public GraphResultSet execute(final GraphStatement graphStatement) {
+        final String query = query(graphStatement);
+        final boolean schemaChange = GraphSchema.isSchemaChange(query);
+        if (!schemaChange) {
+            awaitSchemaAgreement();
+        }
+
+        timedExecute(query, schemaChange);
+
+        if (schemaChange) {
+            waitForSchemaAgreement();
+        }
+
+        return EmptyResultSet.INSTANCE;
+    }
+
+    @Override
+    public ListenableFuture<GraphResultSet> executeAsync(final GraphStatement graphStatement) {
+        final String query = query(graphStatement);
+        if (GraphSchema.isSchemaChange(query)) {
+            throw new IllegalArgumentException("Schema changes can't be executed asynchronously.");
+        }
+
+        awaitSchemaAgreement();
+
+        final Timer.Context context = dataTimer.time();
+        final SettableFuture<GraphResultSet> future = SettableFuture.create();
+        scheduler.schedule(() -> {
+            context.stop();
+            if (injectFailure()) {
+                failures.inc();
+                future.setException(new InvalidQueryException("Injected failure"));
+                return;
+            }
+
+            dataRequests.incrementAndGet();
+            future.set(EmptyResultSet.INSTANCE);
+        }, latencyNanos(), TimeUnit.NANOSECONDS);
+
+        return future;
+    }
+
+    @Override
+    public void executeDeferred(final String statement) {
+        if (!GraphSchema.isSchemaChange(statement)) {
+            execute(statement);
+            return;
+        }
+
+        timedExecute(statement, true);
+        schemaAgreementPending = true;
+    }
+
+    @Override
+    public void awaitSchemaAgreement() {
+        if (schemaAgreementPending) {
+            waitForSchemaAgreement();
+        }
+    }
+
+    /**
+     * @return the schema changes executed since the schema was created, in the order they were executed.
+     */
+    public List<String> getSchemaChanges() {
+        synchronized (schemaChanges) {
+            return new ArrayList<>(schemaChanges);
+        }
+    }
+
+    /**
+     * @return the number of data requests that succeeded, a batch being one request.
+     */
+    public long getDataRequests() {
+        return dataRequests.get();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void timedExecute(final String query, final boolean schemaChange) {
+        Timer timer = dataTimer;
+        if (schemaChange) {
+            timer = schemaTimer;
+        }
+
+        try (Timer.Context context = timer.time()) {
+            sleep(latencyNanos());
+            if (injectFailure()) {
+                failures.inc();
+                throw new InvalidQueryException("Injected failure");
+            }
+        }
+
+        if (schemaChange) {
+            schemaChanges.add(query);
+        } else {
+            dataRequests.incrementAndGet();
+        }
+    }
+
+    private void waitForSchemaAgreement() {
+        try (Timer.Context context = agreementTimer.time()) {
+            sleep(schemaAgreementNanos);
+        }
+        schemaAgreementPending = false;
+    }
+
+    private long latencyNanos() {
+        long micros = latencyMicros;
+        if (jitterMicros > 0) {
+            micros += ThreadLocalRandom.current().nextInt(jitterMicros + 1);
+        }
+
+        return TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    private boolean injectFailure() {
+        return failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate;
+    }
+
+    private static void sleep(final long nanos) {
+        final long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted during a simulated request.");
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    private static String query(final GraphStatement statement) {
+        if (!(statement instanceof SimpleGraphStatement)) {
+            throw new IllegalArgumentException(
+                    "Unsupported statement type: " + statement.getClass().getCanonicalName());
+        }
+
+        return ((SimpleGraphStatement) statement).getQueryString();
+    }
+
+    /**
+     * The result of every request, none of which return anything.
+     */
+    private static final class EmptyResultSet extends GraphResultSet {
+        private static final EmptyResultSet INSTANCE = new EmptyResultSet();
+
+        private EmptyResultSet() {
+            super(null);
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return true;
+        }
+
+        @Override
+        public GraphNode one() {
+            return null;
+        }
+
+        @Override
+        public List<GraphNode> all() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Iterator<GraphNode> iterator() {
+            return Collections.emptyIterator();
+        }
+
+        @Deprecated
+        @Override
+        public int getAvailableWithoutFetching() {
+            return 0;
+        }
+
+        @Deprecated
+        @Override
+        public boolean isFullyFetched() {
+            return true;
+        }
+
+        @Deprecated
+        @Override
+        public ListenableFuture<GraphResultSet> fetchMoreResults() {
+            return Futures.immediateFuture(this);
+        }
+
+        @Override
+        public ExecutionInfo getExecutionInfo() {
+            return null;
+        }
+
+        @Override
+        public List<ExecutionInfo> getAllExecutionInfo() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.MigrationLock;
+import omahoco.migrate.config.LockConfig;
+import omahoco.migrate.config.Profile;
+import omahoco.migrate.util.Delayer;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.dse.DseSession;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locks held as leases in a table of the cluster, one row per lock. A lease is taken and renewed with lightweight
+ * transactions, so only one runner holds a lock at a time, and expires with the TTL of its row when the runner holding
+ * it stops renewing it. Runners waiting for a lock poll the row until they take it.
+ * <p>
+ * The table is created on first use, along with its keyspace when a replication is configured.
+ */
+public final class LeaseTable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeaseTable.class);
+    private static final String OWNER = "owner";
+    private final DseSession dseSession;
+    private final Delayer delayer;
+    private final LockConfig config;
+    private final Ticker ticker;
+    private final Timer waitTimer;
+    private final String owner;
+    private final String table;
+    private boolean created;
+
+    @Inject
+    public LeaseTable(
+            final DseSession dseSession,
+            final Delayer delayer,
+            final Profile profile,
+            final MetricRegistry metricRegistry) {
+        this(dseSession, delayer, profile.getLock(), metricRegistry, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    LeaseTable(
+            final DseSession dseSession,
+            final Delayer delayer,
+            final LockConfig config,
+            final MetricRegistry metricRegistry,
+            final Ticker ticker) {
+        if (config.getKeyspace() == null) {
+            throw new IllegalArgumentException("The keyspace of the lock table is not set.");
+        }
+
+        if (config.getTtlSeconds() < 1 || config.getPollMillis() < 1 || config.getHeartbeatMillis() < 1
+                || config.getHeartbeatMillis() >= TimeUnit.SECONDS.toMillis(config.getTtlSeconds())) {
+            throw new IllegalArgumentException(
+                    "The lock TTL and poll interval must be positive, and the heartbeat shorter than the TTL.");
+        }
+
+        this.dseSession = Objects.requireNonNull(dseSession);
+        this.delayer = Objects.requireNonNull(delayer);
+        this.config = config;
+        this.ticker = Objects.requireNonNull(ticker);
+        this.waitTimer = metricRegistry.timer(MetricRegistry.name("lock", "wait"));
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+        this.table =
+                Metadata.quoteIfNecessary(config.getKeyspace()) + "." + Metadata.quoteIfNecessary(config.getTable());
+    }
+
+    /**
+     * @return the lock named {@code name}, e.g. the name of the graph it guards.
+     */
+    public MigrationLock lock(final String name) {
+        return () -> acquire(name);
+    }
+
+    /**
+     * Waits until this runner holds the lock named {@code name}.
+     *
+     * @return the lease of the lock, renewed in the background until it is closed.
+     */
+    public MigrationLock.Lease acquire(final String name) {
+        createTable();
+
+        final Stopwatch stopwatch = Stopwatch.createStarted(ticker);
+        final Date acquiredAt = new Date();
+        String holder = null;
+        while (true) {
+            final ResultSet result = dseSession.execute(new SimpleStatement(
+                    "INSERT INTO " + table + " (name, owner, acquired_at) VALUES (?, ?, ?) IF NOT EXISTS USING TTL ?",
+                    name, owner, acquiredAt, config.getTtlSeconds()));
+            if (result.wasApplied()) {
+                break;
+            }
+
+            final String current = getOwner(result.one());
+            if (!current.equals(holder)) {
+                LOGGER.info("Migration lock {} is held by {}, waiting for it to be released.", name, current);
+                holder = current;
+            }
+
+            long delay = config.getPollMillis();
+            if (config.getWaitTimeoutSeconds() > 0) {
+                final long remaining = TimeUnit.SECONDS.toMillis(config.getWaitTimeoutSeconds())
+                        - stopwatch.elapsed(TimeUnit.MILLISECONDS);
+                if (remaining <= 0) {
+                    throw new IllegalStateException(
+                            "Timed out after " + config.getWaitTimeoutSeconds() + " s waiting for migration lock "
+                                    + name + " held by " + current);
+                }
+                delay = Math.min(delay, remaining);
+            }
+
+            delayer.delay((int) delay);
+        }
+
+        final long elapsed = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+        waitTimer.update(elapsed, TimeUnit.NANOSECONDS);
+        LOGGER.info("Acquired migration lock {} as {} after waiting {} ms.",
+                name, owner, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return new Lease(name, acquiredAt);
+    }
+
+    private synchronized void createTable() {
+        if (created) {
+            return;
+        }
+
+        if (config.getReplication() != null) {
+            dseSession.execute("CREATE KEYSPACE IF NOT EXISTS " + Metadata.quoteIfNecessary(config.getKeyspace())
+                    + " WITH replication = " + config.getReplication());
+        }
+
+        dseSession.execute("CREATE TABLE IF NOT EXISTS " + table
+                + " (name text PRIMARY KEY, owner text, acquired_at timestamp)");
+        created = true;
+    }
+
+    private static String getOwner(final Row row) {
+        if (row == null) {
+            return "an unknown runner";
+        }
+
+        return String.valueOf(row.getString(OWNER));
+    }
+
+    /**
+     * A lease renewed on its own thread, as the runner holding it is busy applying migrations.
+     */
+    private final class Lease implements MigrationLock.Lease {
+        private final String name;
+        private final Date acquiredAt;
+        private final long ttlNanos;
+        private final Stopwatch held;
+        private final ScheduledExecutorService heartbeat;
+        private volatile long renewedAt;
+        private volatile boolean lost;
+
+        private Lease(final String name, final Date acquiredAt) {
+            this.name = name;
+            this.acquiredAt = acquiredAt;
+            this.ttlNanos = TimeUnit.SECONDS.toNanos(config.getTtlSeconds());
+            this.held = Stopwatch.createStarted(ticker);
+            this.renewedAt = ticker.read();
+            this.heartbeat = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("migration-lock-%d").setDaemon(true).build());
+            heartbeat.scheduleWithFixedDelay(
+                    this::renew, config.getHeartbeatMillis(), config.getHeartbeatMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public boolean isHeld() {
+            return !lost && ticker.read() - renewedAt < ttlNanos;
+        }
+
+        private void renew() {
+            final long now = ticker.read();
+            try {
+                final ResultSet result = dseSession.execute(new SimpleStatement(
+                        "UPDATE " + table + " USING TTL ? SET owner = ?, acquired_at = ? WHERE name = ? IF owner = ?",
+                        config.getTtlSeconds(), owner, acquiredAt, name, owner));
+                if (result.wasApplied()) {
+                    renewedAt = now;
+                    return;
+                }
+
+                LOGGER.error("Lost migration lock {}, it is now held by {}.", name, getOwner(result.one()));
+                lost = true;
+                heartbeat.shutdown();
+            } catch (final DriverException e) {
+                if (!isHeld()) {
+                    LOGGER.error("Lost migration lock {}, it couldn't be renewed within its {} s TTL.",
+                            name, config.getTtlSeconds(), e);
+                    heartbeat.shutdown();
+                    return;
+                }
+                LOGGER.warn("Unable to renew migration lock {}, retrying.", name, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            heartbeat.shutdownNow();
+            try {
+                dseSession.execute(new SimpleStatement(
+                        "DELETE FROM " + table + " WHERE name = ? IF owner = ?", name, owner));
+                LOGGER.info("Released migration lock {} after holding it for {} ms.",
+                        name, held.elapsed(TimeUnit.MILLISECONDS));
+            } catch (final DriverException e) {
+                LOGGER.warn("Unable to release migration lock {}, it expires within {} s.",
+                        name, config.getTtlSeconds(), e);
+            }
+            lost = true;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package omahoco.migrate.graph;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import java.util.Map;
 
 public interface Schema<T, V> {
@@ -12,4 +14,21 @@ public interface Schema<T, V> {
     void execute(String statement);
 
     T execute(V statement);
+
+    /**
+     * Executes a schema change without waiting for schema agreement. Agreement is awaited before the next
+     * statement that isn't a schema change is executed, or when {@link #awaitSchemaAgreement()} is called.
+     */
+    void executeDeferred(String statement);
+
+    /**
+     * Waits for agreement on any schema changes executed by {@link #executeDeferred(String)}.
+     */
+    void awaitSchemaAgreement();
+
+    /**
+     * Executes a statement without blocking. Schema changes are not supported, as they need to wait for
+     * schema agreement before any statement that depends on them can run.
+     */
+    ListenableFuture<T> executeAsync(V statement);
 }
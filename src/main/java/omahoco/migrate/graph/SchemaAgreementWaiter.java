@@ -0,0 +1,153 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.config.Profile;
+import omahoco.migrate.config.SchemaAgreementConfig;
+import omahoco.migrate.util.Delayer;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.SchemaChangeListener;
+import com.datastax.driver.core.SchemaChangeListenerBase;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.dse.DseSession;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Ticker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits until all hosts that are up agree on the schema. Agreement is polled with an exponential backoff starting
+ * at a few milliseconds, and driver schema change and host state events wake the waiter up to check again straight
+ * away. The listeners are unregistered from the cluster when the waiter is closed.
+ */
+public final class SchemaAgreementWaiter implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaAgreementWaiter.class);
+    private final DseSession dseSession;
+    private final Delayer delayer;
+    private final SchemaAgreementConfig config;
+    private final Ticker ticker;
+    private final Timer waitTimer;
+    private final Counter failures;
+    private final Listener listener = new Listener();
+
+    @Inject
+    public SchemaAgreementWaiter(
+            final DseSession dseSession,
+            final Delayer delayer,
+            final Profile profile,
+            final MetricRegistry metricRegistry) {
+        this(dseSession, delayer, profile.getSchemaAgreement(), metricRegistry, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    SchemaAgreementWaiter(
+            final DseSession dseSession,
+            final Delayer delayer,
+            final SchemaAgreementConfig config,
+            final MetricRegistry metricRegistry,
+            final Ticker ticker) {
+        this.dseSession = Objects.requireNonNull(dseSession);
+        this.delayer = Objects.requireNonNull(delayer);
+        this.config = Objects.requireNonNull(config);
+        this.ticker = Objects.requireNonNull(ticker);
+        this.waitTimer = metricRegistry.timer(MetricRegistry.name("schemaAgreement", "wait"));
+        this.failures = metricRegistry.counter(MetricRegistry.name("schemaAgreement", "failures"));
+
+        dseSession.getCluster().register((Host.StateListener) listener);
+        dseSession.getCluster().register((SchemaChangeListener) listener);
+    }
+
+    @Override
+    public void close() {
+        dseSession.getCluster().unregister((Host.StateListener) listener);
+        dseSession.getCluster().unregister((SchemaChangeListener) listener);
+    }
+
+    public void await() {
+        final Stopwatch stopwatch = Stopwatch.createStarted(ticker);
+        long delay = config.getInitialDelayMillis();
+
+        while (!dseSession.getCluster().getMetadata().checkSchemaAgreement()) {
+            final long remaining = config.getTimeoutMillis() - stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            if (remaining <= 0) {
+                failures.inc();
+                throw new IllegalStateException(
+                        "Failed to achieve schema agreement across the cluster within "
+                                + config.getTimeoutMillis() + " ms.");
+            }
+
+            delayer.delay((int) Math.min(delay, remaining));
+            delay = Math.min(delay * 2, config.getMaxDelayMillis());
+        }
+
+        final long elapsed = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+        waitTimer.update(elapsed, TimeUnit.NANOSECONDS);
+        LOGGER.info("Schema agreement reached in {} ms.", TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private final class Listener extends SchemaChangeListenerBase implements Host.StateListener {
+        @Override
+        public void onKeyspaceAdded(final KeyspaceMetadata keyspace) {
+            delayer.wake();
+        }
+
+        @Override
+        public void onKeyspaceChanged(final KeyspaceMetadata current, final KeyspaceMetadata previous) {
+            delayer.wake();
+        }
+
+        @Override
+        public void onTableAdded(final TableMetadata table) {
+            delayer.wake();
+        }
+
+        @Override
+        public void onTableChanged(final TableMetadata current, final TableMetadata previous) {
+            delayer.wake();
+        }
+
+        @Override
+        public void onTableRemoved(final TableMetadata table) {
+            delayer.wake();
+        }
+
+        @Override
+        public void onAdd(final Host host) {
+            delayer.wake();
+        }
+
+        @Override
+        public void onUp(final Host host) {
+            delayer.wake();
+        }
+
+        @Override
+        public void onDown(final Host host) {
+            delayer.wake();
+        }
+
+        @Override
+        public void onRemove(final Host host) {
+            delayer.wake();
+        }
+
+        @Override
+        public void onRegister(final Cluster cluster) {
+            // Nothing to do.
+        }
+
+        @Override
+        public void onUnregister(final Cluster cluster) {
+            // Nothing to do.
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.config.ExecutionConfig;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.QueryTrace;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.dse.graph.GraphOptions;
+import com.datastax.driver.dse.graph.GraphResultSet;
+import com.datastax.driver.dse.graph.GraphStatement;
+import com.datastax.driver.dse.graph.SimpleGraphStatement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs statements that take longer than the slow statement threshold with the details of their execution, and
+ * traces a sampled fraction of statements, logging the trace events once the trace is fetched.
+ * <p>
+ * Statements are attributed to the cluster, graph, migration file and statement numbers in the {@link #CLUSTER},
+ * {@link #GRAPH}, {@link #MIGRATION} and {@link #STATEMENTS} {@link MDC} entries of the thread that sends them.
+ * They are captured when a statement is sent as asynchronous statements complete on driver threads.
+ */
+public final class SlowStatementLog {
+    public static final String CLUSTER = "cluster";
+    public static final String GRAPH = "graph";
+    public static final String MIGRATION = "migration";
+    public static final String STATEMENTS = "statements";
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowStatementLog.class);
+    private static final int MAX_LOGGED_QUERY = 1000;
+    private final long slowStatementNanos;
+    private final double traceSampleRate;
+
+    public SlowStatementLog(final ExecutionConfig config) {
+        if (config.getSlowStatementMillis() < 0) {
+            throw new IllegalArgumentException(
+                    "Slow statement threshold must not be negative, was " + config.getSlowStatementMillis());
+        }
+
+        if (config.getTraceSampleRate() < 0 || config.getTraceSampleRate() > 1) {
+            throw new IllegalArgumentException(
+                    "Trace sample rate must be between 0 and 1, was " + config.getTraceSampleRate());
+        }
+
+        this.slowStatementNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowStatementMillis());
+        this.traceSampleRate = config.getTraceSampleRate();
+    }
+
+    /**
+     * @return a log that logs and traces nothing.
+     */
+    public static SlowStatementLog disabled() {
+        return new SlowStatementLog(new ExecutionConfig());
+    }
+
+    /**
+     * @return where the statements sent by the calling thread come from, e.g.
+     * {@code graph tenant1 v001_a.gremlin statement # 3}.
+     */
+    public String location() {
+        final List<String> parts = new ArrayList<>();
+        if (MDC.get(CLUSTER) != null) {
+            parts.add("cluster " + MDC.get(CLUSTER));
+        }
+
+        if (MDC.get(GRAPH) != null) {
+            parts.add("graph " + MDC.get(GRAPH));
+        }
+
+        if (MDC.get(MIGRATION) != null) {
+            parts.add(MDC.get(MIGRATION));
+        }
+
+        if (MDC.get(STATEMENTS) != null) {
+            parts.add("statement # " + MDC.get(STATEMENTS));
+        }
+
+        if (parts.isEmpty()) {
+            return "an unknown migration";
+        }
+
+        return String.join(" ", parts);
+    }
+
+    /**
+     * @return the statement to send, with tracing enabled when it is sampled.
+     */
+    public GraphStatement sample(final GraphStatement statement) {
+        if (traceSampleRate == 0
+                || !(statement instanceof SimpleGraphStatement)
+                || ThreadLocalRandom.current().nextDouble() >= traceSampleRate) {
+            return statement;
+        }
+
+        return new TracedStatement((SimpleGraphStatement) statement);
+    }
+
+    /**
+     * Logs a statement that completed after {@code elapsedNanos} when it was slow, and fetches its trace when it was
+     * traced. Safe to call on driver threads, the trace is fetched asynchronously.
+     *
+     * @return true when the statement was logged as slow.
+     */
+    public boolean completed(
+            final String location,
+            final GraphStatement statement,
+            final GraphResultSet resultSet,
+            final long elapsedNanos) {
+        final ExecutionInfo executionInfo = resultSet.getExecutionInfo();
+        if (statement instanceof TracedStatement && executionInfo != null) {
+            logTrace(location, executionInfo.getQueryTraceAsync());
+        }
+
+        if (slowStatementNanos == 0 || elapsedNanos < slowStatementNanos) {
+            return false;
+        }
+
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (executionInfo == null) {
+            LOGGER.warn("Slow statement in {} took {} ms: '{}'", location, elapsedMillis, query(statement));
+            return true;
+        }
+
+        LOGGER.warn(
+                "Slow statement in {} took {} ms: coordinator {}, tried hosts {}, {} retries, "
+                        + "{} speculative executions, consistency {}, schema in agreement {}, warnings {}: '{}'",
+                location,
+                elapsedMillis,
+                executionInfo.getQueriedHost(),
+                executionInfo.getTriedHosts(),
+                Math.max(0, executionInfo.getTriedHosts().size() - 1),
+                executionInfo.getSpeculativeExecutions(),
+                executionInfo.getAchievedConsistencyLevel(),
+                executionInfo.isSchemaInAgreement(),
+                executionInfo.getWarnings(),
+                query(statement));
+        return true;
+    }
+
+    private static void logTrace(final String location, final ListenableFuture<QueryTrace> trace) {
+        if (trace == null) {
+            return;
+        }
+
+        Futures.addCallback(trace, new FutureCallback<QueryTrace>() {
+            @Override
+            public void onSuccess(final QueryTrace result) {
+                LOGGER.info("Trace {} of statement in {}: coordinator {}, {} us",
+                        result.getTraceId(), location, result.getCoordinator(), result.getDurationMicros());
+                for (final QueryTrace.Event event : result.getEvents()) {
+                    LOGGER.info("  {} us on {} [{}] {}",
+                            event.getSourceElapsedMicros(), event.getSource(), event.getThreadName(),
+                            event.getDescription());
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                LOGGER.warn("Unable to fetch the trace of statement in {}", location, t);
+            }
+        });
+    }
+
+    private static String query(final GraphStatement statement) {
+        if (!(statement instanceof SimpleGraphStatement)) {
+            return statement.getClass().getSimpleName();
+        }
+
+        final String query = ((SimpleGraphStatement) statement).getQueryString();
+        if (query.length() <= MAX_LOGGED_QUERY) {
+            return query;
+        }
+
+        return query.substring(0, MAX_LOGGED_QUERY) + "...";
+    }
+
+    /**
+     * Graph statements have no tracing flag of their own, the statement the driver sends is built when it is
+     * executed. This enables tracing on the statement built from the wrapped one. The graph name, and anything else
+     * sent in the payload, is taken from this statement.
+     */
+    private static final class TracedStatement extends SimpleGraphStatement {
+        private final SimpleGraphStatement statement;
+
+        private TracedStatement(final SimpleGraphStatement statement) {
+            super(statement.getQueryString());
+            this.statement = statement;
+        }
+
+        @Override
+        public SimpleStatement unwrap(final GraphOptions graphOptions) {
+            final SimpleStatement unwrapped = statement.unwrap(graphOptions);
+            unwrapped.enableTracing();
+            return unwrapped;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package omahoco.migrate.io;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers the checksums of migration files between runs so unchanged files don't have to be read.
+ * <p>
+ * A cached checksum is only used when the size, modification time, change time and file key (device and inode) of
+ * the file are all unchanged. Like git's index, an entry is also distrusted while the file's modification time is
+ * too close to the time its checksum was computed, as the file could have been changed again within the resolution
+ * of the file system's timestamps. Any unreadable or unrecognised cache file is ignored and rewritten.
+ * <p>
+ * A checksum taken from the cache is trusted for comparing files with the applied migrations, but before the
+ * statements of a file are applied the file is checksummed again, see {@link MigrationFileLoader}. A stale entry is
+ * evicted and fails the migration before any of its statements are sent.
+ */
+public final class ChecksumCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChecksumCache.class);
+    private static final int MAGIC = 0x474d4343;
+    private static final int FORMAT_VERSION = 1;
+    private static final long RACY_WINDOW_MILLIS = 2000;
+    private static final ChecksumCache DISABLED = new ChecksumCache(null);
+    private final Path cacheFile;
+    private final Map<String, Entry> cached;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+    private final Set<String> fromCache = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger hits = new AtomicInteger();
+
+    public ChecksumCache(final Path cacheFile) {
+        this.cacheFile = cacheFile;
+        this.cached = read(cacheFile);
+    }
+
+    /**
+     * @return a cache that remembers nothing, every checksum is computed from the file.
+     */
+    public static ChecksumCache disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * @return the checksum of the file, from the cache if the file is known to be unchanged. Safe to call
+     * concurrently.
+     */
+    public String checksum(final Path path) throws IOException {
+        if (cacheFile == null) {
+            return MigrationFileReader.checksum(path);
+        }
+
+        final String key = key(path);
+        final FileStat stat = FileStat.of(path);
+        final Entry entry = cached.get(key);
+
+        if (entry != null && entry.stat.equals(stat) && !isRacy(stat, entry.verifiedAt)) {
+            current.put(key, entry);
+            fromCache.add(key);
+            hits.incrementAndGet();
+            return entry.checksum;
+        }
+
+        final long verifiedAt = System.currentTimeMillis();
+        final String checksum = MigrationFileReader.checksum(path);
+
+        // Only cache the checksum when the file didn't change while it was being read.
+        if (stat.equals(FileStat.of(path))) {
+            current.put(key, new Entry(stat, verifiedAt, checksum));
+        }
+        fromCache.remove(key);
+
+        return checksum;
+    }
+
+    /**
+     * @return true if the last checksum of the file was taken from the cache rather than computed from the file.
+     */
+    public boolean isFromCache(final Path path) {
+        return fromCache.contains(key(path));
+    }
+
+    /**
+     * Drops the entry of a file whose cached checksum turned out to be stale and saves the cache, so the next run
+     * checksums the file again.
+     */
+    public void evict(final Path path) {
+        if (cacheFile == null) {
+            return;
+        }
+
+        final String key = key(path);
+        fromCache.remove(key);
+        current.remove(key);
+        save();
+    }
+
+    /**
+     * Writes the entries of every file checksummed since the cache was read, dropping files that weren't seen.
+     */
+    public void save() {
+        if (cacheFile == null) {
+            return;
+        }
+
+        LOGGER.info("Checksums of {} of {} migration files taken from the cache.", hits.get(), current.size());
+        if (current.equals(cached)) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+            final Path temp = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), "checksums", ".tmp");
+            try {
+                write(temp, current);
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to save the checksum cache {}", cacheFile, e);
+        }
+    }
+
+    @VisibleForTesting
+    int getHits() {
+        return hits.get();
+    }
+
+    private static String key(final Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private static boolean isRacy(final FileStat stat, final long verifiedAt) {
+        return TimeUnit.NANOSECONDS.toMillis(stat.modifiedNanos) + RACY_WINDOW_MILLIS >= verifiedAt;
+    }
+
+    private static Map<String, Entry> read(final Path cacheFile) {
+        if (cacheFile == null || !Files.exists(cacheFile)) {
+            return Collections.emptyMap();
+        }
+
+        try (InputStream stream = Files.newInputStream(cacheFile);
+             DataInputStream input = new DataInputStream(new BufferedInputStream(stream))) {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                LOGGER.info("Ignoring checksum cache {} written in an unknown format", cacheFile);
+                return Collections.emptyMap();
+            }
+
+            final int count = input.readInt();
+            final Map<String, Entry> entries = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                final String key = input.readUTF();
+                final FileStat stat =
+                        new FileStat(input.readLong(), input.readLong(), input.readLong(), input.readUTF());
+                entries.put(key, new Entry(stat, input.readLong(), input.readUTF()));
+            }
+
+            return entries;
+        } catch (final IOException e) {
+            LOGGER.warn("Ignoring unreadable checksum cache {}", cacheFile, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private static void write(final Path file, final Map<String, Entry> entries) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream))) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(entries.size());
+
+            for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+                final FileStat stat = entry.getValue().stat;
+                output.writeUTF(entry.getKey());
+                output.writeLong(stat.size);
+                output.writeLong(stat.modifiedNanos);
+                output.writeLong(stat.changedNanos);
+                output.writeUTF(stat.fileKey);
+                output.writeLong(entry.getValue().verifiedAt);
+                output.writeUTF(entry.getValue().checksum);
+            }
+        }
+    }
+
+    private static final class FileStat {
+        private final long size;
+        private final long modifiedNanos;
+        private final long changedNanos;
+        private final String fileKey;
+
+        private FileStat(final long size, final long modifiedNanos, final long changedNanos, final String fileKey) {
+            this.size = size;
+            this.modifiedNanos = modifiedNanos;
+            this.changedNanos = changedNanos;
+            this.fileKey = fileKey;
+        }
+
+        private static FileStat of(final Path path) throws IOException {
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                throw new NoSuchFileException(path.toString(), null, "Not a regular file");
+            }
+
+            return new FileStat(
+                    attributes.size(),
+                    attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                    changeTime(path),
+                    Objects.toString(attributes.fileKey(), ""));
+        }
+
+        /**
+         * @return the inode change time where the file system has one, it changes when the modification time is set.
+         */
+        private static long changeTime(final Path path) {
+            try {
+                return ((FileTime) Files.getAttribute(path, "unix:ctime")).to(TimeUnit.NANOSECONDS);
+            } catch (final UnsupportedOperationException | IllegalArgumentException | IOException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            final FileStat that = (FileStat) o;
+            return size == that.size
+                    && modifiedNanos == that.modifiedNanos
+                    && changedNanos == that.changedNanos
+                    && fileKey.equals(that.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, modifiedNanos, changedNanos, fileKey);
+        }
+    }
+
+    private static final class Entry {
+        private final FileStat stat;
+        private final long verifiedAt;
+        private final String checksum;
+
+        private Entry(final FileStat stat, final long verifiedAt, final String checksum) {
+            this.stat = stat;
+            this.verifiedAt = verifiedAt;
+            this.checksum = checksum;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            final Entry that = (Entry) o;
+            return verifiedAt == that.verifiedAt && stat.equals(that.stat) && checksum.equals(that.checksum);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(stat, verifiedAt, checksum);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package omahoco.migrate.io;
 
 import omahoco.migrate.config.Config;
+import omahoco.migrate.parse.DataFileParser;
 
 import javax.inject.Inject;
 import java.io.File;
@@ -22,12 +23,9 @@ public final class FileMigrationSource implements MigrationSource {
     @Override
     public List<File> getMigrations() {
         try {
-            Path migrationPath = new File(config.getConfigPath(),
-                    config.getMigrationPath()).getCanonicalFile().toPath();
-
-            return Files.find(migrationPath, Integer.MAX_VALUE, (path, attributes) -> attributes.isRegularFile())
+            return Files.find(getMigrationPath(), Integer.MAX_VALUE, (path, attributes) -> attributes.isRegularFile())
                     .map(Path::toFile)
-                    .filter(t -> t.getName().endsWith(".gremlin") || t.getName().endsWith(".groovy"))
+                    .filter(t -> isMigrationFile(t.getName()))
                     .sorted()
                     .collect(Collectors.toList());
         } catch (IOException e) {
@@ -35,4 +33,15 @@ public final class FileMigrationSource implements MigrationSource {
                     + config.getMigrationPath(), e);
         }
     }
+
+    /**
+     * @return the directory the migration files are found in, searched recursively.
+     */
+    public Path getMigrationPath() throws IOException {
+        return new File(config.getConfigPath(), config.getMigrationPath()).getCanonicalFile().toPath();
+    }
+
+    static boolean isMigrationFile(final String name) {
+        return name.endsWith(".gremlin") || name.endsWith(".groovy") || DataFileParser.Format.of(name) != null;
+    }
 }
@@ -1,26 +1,138 @@
 package omahoco.migrate.io;
 
 import omahoco.migrate.Migration;
+import omahoco.migrate.parse.DataFileParser;
+import omahoco.migrate.parse.DependencyHeader;
 import omahoco.migrate.parse.StatementParser;
-import com.google.common.hash.HashCode;
-import com.google.common.hash.Hashing;
-import com.google.common.io.Files;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Loads the version and checksum of a migration file. Statements aren't read until they are streamed from the
+ * migration, and are then parsed as the file is read so only the statements of one chunk of the file are held in
+ * memory at a time. The rows of CSV and JSON lines data files are streamed the same way, see
+ * {@link DataFileParser}.
+ * <p>
+ * A list of files is loaded on a pool of {@code loadThreads} workers. Migrations are returned in the order of the
+ * files, and when several files fail the error for the first of them is thrown, so a run always fails the same way.
+ * Checksums of unchanged files are taken from the {@link ChecksumCache}, which is saved once all files are loaded.
+ * A checksum taken from the cache is verified against the file the first time the statements or rows of the file
+ * are streamed, before any of them is returned.
+ * The dependencies a file declares are read from its header, see {@link DependencyHeader}.
+ * <p>
+ * A file that is applied is read once here for its checksum and again when its statements are streamed. The
+ * checksum can't be taken from the parse pass instead, since it is needed to compare the file with the applied
+ * versions and to resume from a checkpoint before any statement is sent.
+ */
 public final class MigrationFileLoader {
     private static final Pattern VERSION_FILE_PATTERN =
-            Pattern.compile("^v(\\d{3})_.*.(gremlin|groovy)$", Pattern.CASE_INSENSITIVE);
+            Pattern.compile("^v(\\d{3})_.*.(gremlin|groovy|csv|jsonl)$", Pattern.CASE_INSENSITIVE);
     private final StatementParser parser;
+    private final Charset charset;
+    private final int loadThreads;
+    private final ChecksumCache checksumCache;
+    private final Timer loadTimer;
+    private final Counter bytesParsed;
+    private final Counter statementsParsed;
 
     public MigrationFileLoader(final StatementParser parser) {
+        this(parser, StandardCharsets.UTF_8, 1);
+    }
+
+    public MigrationFileLoader(final StatementParser parser, final Charset charset, final int loadThreads) {
+        this(parser, charset, loadThreads, ChecksumCache.disabled());
+    }
+
+    public MigrationFileLoader(
+            final StatementParser parser,
+            final Charset charset,
+            final int loadThreads,
+            final ChecksumCache checksumCache) {
+        this(parser, charset, loadThreads, checksumCache, new MetricRegistry());
+    }
+
+    public MigrationFileLoader(
+            final StatementParser parser,
+            final Charset charset,
+            final int loadThreads,
+            final ChecksumCache checksumCache,
+            final MetricRegistry metricRegistry) {
+        if (loadThreads < 1) {
+            throw new IllegalArgumentException("loadThreads must be at least 1: " + loadThreads);
+        }
+
         this.parser = Objects.requireNonNull(parser);
+        this.charset = Objects.requireNonNull(charset);
+        this.loadThreads = loadThreads;
+        this.checksumCache = Objects.requireNonNull(checksumCache);
+        this.loadTimer = metricRegistry.timer(MetricRegistry.name("files", "load"));
+        this.bytesParsed = metricRegistry.counter(MetricRegistry.name("files", "bytesParsed"));
+        this.statementsParsed = metricRegistry.counter(MetricRegistry.name("files", "statementsParsed"));
+    }
+
+    public List<Migration> load(final List<File> files) {
+        try (Timer.Context context = loadTimer.time()) {
+            return loadAll(files);
+        }
+    }
+
+    private List<Migration> loadAll(final List<File> files) {
+        final List<Migration> migrations = new ArrayList<>(files.size());
+
+        if (loadThreads == 1 || files.size() < 2) {
+            files.forEach(t -> migrations.add(load(t)));
+            checksumCache.save();
+            return migrations;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(loadThreads, files.size()),
+                new ThreadFactoryBuilder().setNameFormat("migration-loader-%d").setDaemon(true).build());
+        try {
+            final List<Future<Migration>> futures = new ArrayList<>(files.size());
+            files.forEach(t -> futures.add(executor.submit(() -> load(t))));
+
+            for (final Future<Migration> future : futures) {
+                migrations.add(getLoaded(future));
+            }
+            checksumCache.save();
+
+            return migrations;
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     public Migration load(final File file) {
@@ -34,22 +146,182 @@ public final class MigrationFileLoader {
             if (!m.find()) {
                 throw new IllegalArgumentException(
                         "Invalid filename, name must have the form: "
-                                + "v{version_number:03d}_{description}.{extension:(groovy|gremlin)} "
+                                + "v{version_number:03d}_{description}.{extension:(groovy|gremlin|csv|jsonl)} "
                                 + "e.g v001_migration.gremlin");
             }
 
             final Migration migration = new Migration(file.getName());
             migration.setVersion(Integer.valueOf(m.group(1)));
+            migration.setCheckSum(checksumCache.checksum(file.toPath()));
+            migration.setDependsOn(readDependencies(file));
+            final AtomicBoolean verified = new AtomicBoolean(!checksumCache.isFromCache(file.toPath()));
 
-            final HashCode hashCode = Files.asByteSource(file).hash(Hashing.crc32());
-            migration.setCheckSum(hashCode.toString());
-
-            final List<String> lines = Files.readLines(file, Charset.defaultCharset());
-            migration.setStatements(parser.parse(lines));
+            final DataFileParser.Format format = DataFileParser.Format.of(file.getName());
+            if (format == null) {
+                migration.setStatementSource(
+                        () -> stream(file, migration.getCheckSum(), verified, parser::newSession));
+            } else {
+                final DataFileParser dataParser = new DataFileParser(format);
+                migration.setStatementSource(() -> Stream.of(readTemplate(file)));
+                migration.setRowSource(
+                        () -> stream(file, migration.getCheckSum(), verified, dataParser::newSession));
+            }
 
             return migration;
         } catch (final IOException e) {
             throw new IllegalArgumentException(e);
         }
     }
+
+    private static Migration getLoaded(final Future<Migration> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading migration files", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private List<Integer> readDependencies(final File file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), charset)) {
+            return DependencyHeader.read(reader);
+        } catch (final IllegalArgumentException e) {
+            throw new IllegalArgumentException(file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String readTemplate(final File file) {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), charset)) {
+            return DataFileParser.readTemplate(reader.lines().iterator());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> Stream<T> stream(
+            final File file,
+            final String checkSum,
+            final AtomicBoolean verified,
+            final Function<Consumer<T>, StatementParser.Session> sessions) {
+        if (!verified.get()) {
+            verifyCachedChecksum(file, checkSum);
+            verified.set(true);
+        }
+
+        final MigrationFileReader reader;
+        try {
+            reader = new MigrationFileReader(file.toPath(), charset);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(
+                        new ParsingIterator<>(file, checkSum, reader, sessions),
+                        Spliterator.ORDERED | Spliterator.NONNULL),
+                false)
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    private void verifyCachedChecksum(final File file, final String checkSum) {
+        final String actual;
+        try {
+            actual = MigrationFileReader.checksum(file.toPath());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (!checkSum.equals(actual)) {
+            checksumCache.evict(file.toPath());
+            throw new IllegalStateException(
+                    MessageFormat.format(
+                            "Cached checksum {1} of migration {0} is stale, the file''s checksum is {2}. "
+                                    + "The entry was dropped from the checksum cache, run the migration again.",
+                            file.getName(), checkSum, actual));
+        }
+    }
+
+    /**
+     * Parses a file a chunk at a time as statements or rows are requested. The checksum is verified once the whole
+     * file has been read. That catches a file changed while it is being applied, but only after the statements read
+     * before the end of the file have been returned.
+     */
+    private final class ParsingIterator<T> implements Iterator<T> {
+        private final File file;
+        private final String checkSum;
+        private final MigrationFileReader reader;
+        private final Deque<T> statements = new ArrayDeque<>();
+        private final StatementParser.Session session;
+        private boolean finished;
+
+        private ParsingIterator(
+                final File file,
+                final String checkSum,
+                final MigrationFileReader reader,
+                final Function<Consumer<T>, StatementParser.Session> sessions) {
+            this.file = file;
+            this.checkSum = checkSum;
+            this.reader = reader;
+            this.session = sessions.apply(statements::add);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (statements.isEmpty() && !finished) {
+                final CharBuffer chars = read();
+
+                if (chars == null) {
+                    session.finish();
+                    finished = true;
+                    bytesParsed.inc(reader.size());
+                    verifyChecksum();
+                } else {
+                    session.accept(chars);
+                }
+            }
+
+            return !statements.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            statementsParsed.inc();
+            return statements.removeFirst();
+        }
+
+        private CharBuffer read() {
+            try {
+                return reader.read();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void verifyChecksum() {
+            if (!checkSum.equals(reader.checksum())) {
+                throw new IllegalStateException(
+                        MessageFormat.format(
+                                "Migration {0} changed while it was being applied, checksum {1} is now {2}",
+                                file.getName(), checkSum, reader.checksum()));
+            }
+        }
+    }
 }
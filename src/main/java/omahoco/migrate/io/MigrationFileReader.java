@@ -0,0 +1,150 @@
+package omahoco.migrate.io;
+
+import com.google.common.hash.HashCode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a migration file in a single pass, computing its CRC32 checksum as the contents are decoded. Small files are
+ * read through a buffer, large files are memory mapped a window at a time.
+ */
+final class MigrationFileReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MAP_THRESHOLD = 4L * 1024 * 1024;
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private final CRC32 crc = new CRC32();
+    private final CharsetDecoder decoder;
+    // Only allocated once decoding starts, a checksum doesn't need it.
+    private CharBuffer chars;
+    private ByteBuffer bytes = ByteBuffer.allocate(0);
+    // The file offset of the first byte in the buffer, and of the first byte not yet checksummed.
+    private long position;
+    private long checksummed;
+    private boolean endOfInput;
+    private boolean flushed;
+
+    MigrationFileReader(final Path path, final Charset charset) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.decoder =
+                charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Computes the checksum of a file without decoding it.
+     */
+    static String checksum(final Path path) throws IOException {
+        try (MigrationFileReader reader = new MigrationFileReader(path, StandardCharsets.UTF_8)) {
+            while (!reader.endOfInput) {
+                reader.bytes.position(reader.bytes.limit());
+                reader.fill();
+            }
+
+            return reader.checksum();
+        }
+    }
+
+    /**
+     * @return the next decoded characters, or null once the end of the file has been reached. The buffer is reused
+     * by the next call.
+     */
+    CharBuffer read() throws IOException {
+        if (chars == null) {
+            chars = CharBuffer.allocate(BUFFER_SIZE);
+        }
+        chars.clear();
+
+        while (!flushed) {
+            if (decoder.decode(bytes, chars, endOfInput).isOverflow()) {
+                break;
+            }
+
+            if (endOfInput) {
+                flushed = decoder.flush(chars).isUnderflow();
+                break;
+            }
+
+            fill();
+        }
+
+        chars.flip();
+        if (!chars.hasRemaining() && flushed) {
+            return null;
+        }
+
+        return chars;
+    }
+
+    /**
+     * @return the checksum of the file, formatted the same way as Guava's {@code Hashing.crc32()}. Only complete once
+     * the whole file has been read.
+     */
+    String checksum() {
+        return HashCode.fromInt((int) crc.getValue()).toString();
+    }
+
+    /**
+     * @return the size of the file in bytes when it was opened.
+     */
+    long size() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Replaces the bytes in the buffer that have been decoded with the bytes that follow them in the file.
+     */
+    private void fill() throws IOException {
+        final long consumed = position + bytes.position();
+
+        if (size >= MAP_THRESHOLD) {
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, consumed, Math.min(MAP_WINDOW, size - consumed));
+        } else {
+            if (bytes.capacity() == 0) {
+                bytes = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, size));
+            } else {
+                bytes.compact();
+            }
+
+            bytes.limit((int) Math.min(bytes.capacity(), bytes.position() + size - checksummed));
+            int read = 0;
+            while (bytes.hasRemaining() && read >= 0) {
+                read = channel.read(bytes);
+            }
+            bytes.flip();
+        }
+
+        position = consumed;
+        final long end = position + bytes.limit();
+        if (end <= checksummed && end < size) {
+            throw new IOException("File changed while it was being read: " + path);
+        }
+
+        final ByteBuffer unchecked = bytes.duplicate();
+        unchecked.position((int) (checksummed - position));
+        crc.update(unchecked);
+        checksummed = end;
+        endOfInput = end >= size;
+    }
+}
@@ -0,0 +1,186 @@
+package omahoco.migrate.io;
+
+import omahoco.migrate.Migration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the migration files of a {@link FileMigrationSource} loaded while watching its migration path, so only the
+ * files that are created or changed are loaded again. Changes are collected until the migration path has been quiet
+ * for {@code quietMillis}, so a file that is still being written, or a set of files being copied, is loaded once.
+ * <p>
+ * How soon a change is noticed depends on the platform's {@link WatchService}, on Linux it is notified straight away.
+ */
+public final class MigrationWatcher implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MigrationWatcher.class);
+    private final FileMigrationSource migrationSource;
+    private final MigrationFileLoader migrationFileLoader;
+    private final int quietMillis;
+    private final Path migrationPath;
+    private final WatchService watchService;
+    private Map<File, Migration> loaded = new LinkedHashMap<>();
+
+    public MigrationWatcher(
+            final FileMigrationSource migrationSource,
+            final MigrationFileLoader migrationFileLoader,
+            final int quietMillis) {
+        this.migrationSource = Objects.requireNonNull(migrationSource);
+        this.migrationFileLoader = Objects.requireNonNull(migrationFileLoader);
+        this.quietMillis = quietMillis;
+
+        try {
+            this.migrationPath = migrationSource.getMigrationPath();
+            this.watchService = migrationPath.getFileSystem().newWatchService();
+            register(migrationPath);
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Unable to watch the migration path.", e);
+        }
+    }
+
+    public Path getMigrationPath() {
+        return migrationPath;
+    }
+
+    /**
+     * Loads the migration files that haven't been loaded yet, e.g. every file when first called.
+     *
+     * @return every migration file, in file order.
+     */
+    public List<Migration> load() {
+        return load(new HashSet<>());
+    }
+
+    /**
+     * Waits until migration files are created, changed or deleted, then loads the files that were created or changed.
+     *
+     * @return every migration file, in file order.
+     */
+    public List<Migration> awaitChanges() {
+        final Set<Path> changed = new HashSet<>();
+        while (changed.isEmpty()) {
+            WatchKey key = poll(Long.MAX_VALUE);
+            while (key != null) {
+                collect(key, changed);
+                key = poll(quietMillis);
+            }
+        }
+
+        LOGGER.info("{} migration files changed.", changed.size());
+        return load(changed);
+    }
+
+    private List<Migration> load(final Set<Path> changed) {
+        final List<File> files = migrationSource.getMigrations();
+        final List<File> toLoad =
+                files.stream()
+                        .filter(t -> !loaded.containsKey(t) || changed.contains(t.toPath()))
+                        .collect(Collectors.toList());
+
+        // Nothing is kept when a file fails to load, so it is loaded again once it changes.
+        final List<Migration> migrations = migrationFileLoader.load(toLoad);
+        final Map<File, Migration> reloaded = new HashMap<>();
+        for (int i = 0; i < toLoad.size(); i++) {
+            reloaded.put(toLoad.get(i), migrations.get(i));
+        }
+
+        final Map<File, Migration> current = new LinkedHashMap<>();
+        files.forEach(t -> current.put(t, reloaded.getOrDefault(t, loaded.get(t))));
+        loaded = current;
+
+        LOGGER.info("Loaded {} of {} migration files.", toLoad.size(), files.size());
+        return new ArrayList<>(current.values());
+    }
+
+    private void collect(final WatchKey key, final Set<Path> changed) {
+        final Path directory = (Path) key.watchable();
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, so every file is loaded again.
+                LOGGER.warn("Missed changes to {}, loading every migration file.", directory);
+                loaded.clear();
+                changed.add(directory);
+                continue;
+            }
+
+            final Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // Files may have been created in the directory before it was watched.
+                try {
+                    register(path);
+                    changed.addAll(findMigrationFiles(path));
+                } catch (final IOException e) {
+                    LOGGER.warn("Unable to watch new directory {}", path, e);
+                }
+            } else if (FileMigrationSource.isMigrationFile(path.getFileName().toString())) {
+                changed.add(path);
+            }
+        }
+
+        if (!key.reset()) {
+            LOGGER.info("No longer watching {}", directory);
+        }
+    }
+
+    private WatchKey poll(final long timeoutMillis) {
+        try {
+            return watchService.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while watching for migration files.", e);
+        } catch (final ClosedWatchServiceException e) {
+            throw new IllegalStateException("The migration watcher was closed.", e);
+        }
+    }
+
+    private void register(final Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            final Iterator<Path> directories = paths.filter(t -> Files.isDirectory(t)).iterator();
+            while (directories.hasNext()) {
+                directories.next().register(
+                        watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+
+    private static List<Path> findMigrationFiles(final Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(t -> Files.isRegularFile(t))
+                    .filter(t -> FileMigrationSource.isMigrationFile(t.getFileName().toString()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to stop watching {}", migrationPath, e);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package omahoco.migrate.parse;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Parses data migration files. A data file starts with a header of line comments, one of which names the Gremlin
+ * template that writes a row, e.g. {@code // template: graph.addVertex(label, 'author', 'name', row.name)}. The
+ * rows follow, either as CSV records with a first record of column names, or as JSON lines with one object per line.
+ * <p>
+ * Like {@link StatementParser} the rows are parsed a chunk at a time, so memory use is bounded by the longest row.
+ * CSV values are strings, quoted values can contain commas, doubled quotes and line breaks. JSON lines are read with
+ * the YAML parser used for configuration, JSON being a subset of YAML, so values keep their JSON types.
+ */
+public final class DataFileParser {
+    private static final String COMMENT = "//";
+    private static final String TEMPLATE_DIRECTIVE = "template:";
+    private final Format format;
+
+    public DataFileParser(final Format format) {
+        this.format = Objects.requireNonNull(format);
+    }
+
+    public enum Format {
+        CSV(".csv"),
+        JSON_LINES(".jsonl");
+
+        private final String extension;
+
+        Format(final String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * @return the format of a data file, or null when the file is a script.
+         */
+        public static Format of(final String fileName) {
+            final String lowerCase = fileName.toLowerCase(Locale.ROOT);
+            for (final Format format : values()) {
+                if (lowerCase.endsWith(format.extension)) {
+                    return format;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Reads the template from the header, stopping at the first line that isn't part of it.
+     */
+    public static String readTemplate(final Iterator<String> lines) {
+        while (lines.hasNext()) {
+            final String line = lines.next().trim();
+            if (!isHeader(line)) {
+                break;
+            }
+
+            final String comment = line.substring(Math.min(line.length(), COMMENT.length())).trim();
+            if (comment.startsWith(TEMPLATE_DIRECTIVE)) {
+                return comment.substring(TEMPLATE_DIRECTIVE.length()).trim();
+            }
+        }
+
+        throw new IllegalArgumentException(
+                "Data files must start with a header naming the template that writes each row, e.g. "
+                        + "// template: graph.addVertex(label, 'author', 'name', row.name)");
+    }
+
+    /**
+     * Starts an incremental parse of a whole file, passing each row to {@code rows} once it is complete. The header is
+     * skipped.
+     */
+    public StatementParser.Session newSession(final Consumer<Map<String, Object>> rows) {
+        if (format == Format.CSV) {
+            return new CsvSession(rows);
+        }
+
+        return new JsonLinesSession(rows);
+    }
+
+    private static boolean isHeader(final String line) {
+        return line.isEmpty() || line.startsWith(COMMENT);
+    }
+
+    /**
+     * Skips the header a line at a time, then passes each character of the rows to {@link #body(char)}.
+     */
+    private abstract static class HeaderSession implements StatementParser.Session {
+        private final StringBuilder headerLine = new StringBuilder();
+        private boolean inHeader = true;
+
+        @Override
+        public final void accept(final CharSequence text) {
+            for (int i = 0; i < text.length(); i++) {
+                final char c = text.charAt(i);
+
+                if (!inHeader) {
+                    body(c);
+                } else if (c == '\n') {
+                    endHeaderLine();
+                } else {
+                    headerLine.append(c);
+                }
+            }
+        }
+
+        @Override
+        public final void finish() {
+            if (inHeader) {
+                endHeaderLine();
+            }
+            endBody();
+        }
+
+        abstract void body(char c);
+
+        abstract void endBody();
+
+        private void endHeaderLine() {
+            if (isHeader(headerLine.toString().trim())) {
+                headerLine.setLength(0);
+                return;
+            }
+
+            inHeader = false;
+            for (int i = 0; i < headerLine.length(); i++) {
+                body(headerLine.charAt(i));
+            }
+            body('\n');
+        }
+    }
+
+    private static final class CsvSession extends HeaderSession {
+        private final Consumer<Map<String, Object>> rows;
+        private final List<String> record = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private List<String> columns;
+        private int recordNumber;
+        private boolean quoted;
+        // A quote seen in a quoted field, either the end of the field or the first of a doubled quote.
+        private boolean pendingQuote;
+
+        private CsvSession(final Consumer<Map<String, Object>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        void body(final char c) {
+            if (quoted && !pendingQuote) {
+                if (c == '"') {
+                    pendingQuote = true;
+                } else {
+                    field.append(c);
+                }
+                return;
+            }
+
+            if (pendingQuote && c == '"') {
+                field.append(c);
+                pendingQuote = false;
+                return;
+            }
+            pendingQuote = false;
+            quoted = false;
+
+            if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                endField();
+            } else if (c == '\n') {
+                endRecord();
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+
+        @Override
+        void endBody() {
+            if (quoted && !pendingQuote) {
+                throw new IllegalArgumentException("Unterminated quoted value in CSV record " + (recordNumber + 1));
+            }
+            endRecord();
+        }
+
+        private void endField() {
+            record.add(field.toString());
+            field.setLength(0);
+        }
+
+        private void endRecord() {
+            quoted = false;
+            pendingQuote = false;
+            if (record.isEmpty() && field.length() == 0) {
+                return;
+            }
+
+            endField();
+            recordNumber++;
+            if (columns == null) {
+                columns = new ArrayList<>(record);
+            } else if (record.size() != columns.size()) {
+                throw new IllegalArgumentException(
+                        "CSV record " + recordNumber + " has " + record.size() + " values, expected "
+                                + columns.size());
+            } else {
+                final Map<String, Object> row = new LinkedHashMap<>();
+                for (int i = 0; i < columns.size(); i++) {
+                    row.put(columns.get(i), record.get(i));
+                }
+                rows.accept(row);
+            }
+            record.clear();
+        }
+    }
+
+    private static final class JsonLinesSession extends HeaderSession {
+        private final Consumer<Map<String, Object>> rows;
+        private final StringBuilder line = new StringBuilder();
+        private final Yaml yaml = new Yaml(new SafeConstructor());
+        private int lineNumber;
+
+        private JsonLinesSession(final Consumer<Map<String, Object>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        void body(final char c) {
+            if (c == '\n') {
+                endLine();
+            } else {
+                line.append(c);
+            }
+        }
+
+        @Override
+        void endBody() {
+            endLine();
+        }
+
+        private void endLine() {
+            final String json = line.toString().trim();
+            line.setLength(0);
+            if (json.isEmpty()) {
+                return;
+            }
+
+            lineNumber++;
+            final Object value;
+            try {
+                value = yaml.load(json);
+            } catch (final YAMLException e) {
+                throw new IllegalArgumentException("Invalid JSON in row " + lineNumber + ": " + json, e);
+            }
+
+            if (!(value instanceof Map)) {
+                throw new IllegalArgumentException("Row " + lineNumber + " is not a JSON object: " + json);
+            }
+
+            final Map<String, Object> row = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((k, v) -> row.put(String.valueOf(k), v));
+            rows.accept(row);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package omahoco.migrate.parse;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the dependencies a migration file declares in its header of line comments, e.g.
+ * {@code // depends: v001, v003}, naming the versions of the migrations it needs applied first. A file declaring
+ * {@code // depends: none} doesn't depend on any other migration. The parsers skip the header as they skip any
+ * comment, so the declaration has no effect on the statements of the file.
+ */
+public final class DependencyHeader {
+    private static final String COMMENT = "//";
+    private static final String DEPENDS_DIRECTIVE = "depends:";
+    private static final String NONE = "none";
+    private static final Pattern VERSION_PATTERN = Pattern.compile("v?(\\d+)", Pattern.CASE_INSENSITIVE);
+
+    private DependencyHeader() {
+    }
+
+    /**
+     * Reads the header, stopping at the first line that isn't part of it.
+     *
+     * @return the versions the migration depends on, or null when it doesn't declare its dependencies.
+     */
+    public static List<Integer> read(final Iterator<String> lines) {
+        while (lines.hasNext()) {
+            final String line = lines.next().trim();
+            if (!line.isEmpty() && !line.startsWith(COMMENT)) {
+                return null;
+            }
+
+            final String comment = line.substring(Math.min(line.length(), COMMENT.length())).trim();
+            if (comment.toLowerCase(Locale.ROOT).startsWith(DEPENDS_DIRECTIVE)) {
+                return parse(comment.substring(DEPENDS_DIRECTIVE.length()).trim());
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads the header from the start of a file a character at a time. Reading stops as soon as a line can't be a
+     * comment, so no more than the header and the first character of the first statement are read.
+     *
+     * @return the versions the migration depends on, or null when it doesn't declare its dependencies.
+     */
+    public static List<Integer> read(final Reader reader) {
+        return read(new AbstractIterator<String>() {
+            @Override
+            protected String computeNext() {
+                try {
+                    final String line = readLine(reader);
+                    if (line == null) {
+                        return endOfData();
+                    }
+
+                    return line;
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the next line, cut short once it is known not to be a comment, or null at the end of the file.
+     */
+    private static String readLine(final Reader reader) throws IOException {
+        int c = reader.read();
+        if (c < 0) {
+            return null;
+        }
+
+        final StringBuilder line = new StringBuilder();
+        boolean comment = false;
+        while (c >= 0 && c != '\n') {
+            line.append((char) c);
+            if (!comment) {
+                final String start = line.toString().trim();
+                comment = start.startsWith(COMMENT);
+                if (!comment && !start.isEmpty() && !COMMENT.startsWith(start)) {
+                    return line.toString();
+                }
+            }
+            c = reader.read();
+        }
+
+        return line.toString();
+    }
+
+    private static List<Integer> parse(final String declaration) {
+        if (declaration.equalsIgnoreCase(NONE)) {
+            return Collections.emptyList();
+        }
+
+        final List<Integer> versions = new ArrayList<>();
+        for (final String version : declaration.split(",")) {
+            final Matcher m = VERSION_PATTERN.matcher(version.trim());
+            if (!m.matches()) {
+                throw new IllegalArgumentException(
+                        "Invalid dependency '" + version.trim() + "', dependencies must be versions or none, "
+                                + "e.g. // depends: v001, v003");
+            }
+            versions.add(Integer.valueOf(m.group(1)));
+        }
+
+        return versions;
+    }
+}
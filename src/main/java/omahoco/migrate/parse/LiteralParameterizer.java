@@ -0,0 +1,361 @@
+package omahoco.migrate.parse;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Lifts string and integer literals out of a data script into named parameters, so scripts that differ only in
+ * their literal values have the same text and share one compiled script in the server's script cache.
+ * <p>
+ * Only literals whose value is certain are lifted: single quoted strings, double quoted strings without GString
+ * expressions and decimal integers that fit in a long. Anything else, such as triple quoted strings, unknown escape
+ * sequences, decimals (a {@code BigDecimal} in Groovy) or numbers with a type suffix, is left in the script.
+ * Scripts that already use the parameter prefix are left alone.
+ * <p>
+ * Only literals in value positions are lifted, property keys and labels stay in the script. Schema statements are
+ * left alone, as are map keys, the arguments of steps taking keys or labels such as {@code hasLabel} or
+ * {@code values}, the keys of {@code has}, {@code property}, {@code addVertex} and {@code addEdge} and any literal
+ * following a {@code label} argument.
+ */
+public final class LiteralParameterizer {
+    private static final String PREFIX = "_lit";
+    private static final int TRIPLE_QUOTE = 3;
+    private static final int UNICODE_ESCAPE_LENGTH = 4;
+    private static final int HEX_RADIX = 16;
+    private static final Pattern SCHEMA = Pattern.compile("\\bschema\\s*\\.");
+    private static final Set<String> KEY_STEPS = ImmutableSet.of(
+            "addE", "addV", "as", "both", "bothE", "by", "cap", "from", "hasKey", "hasLabel", "in", "inE", "out",
+            "outE", "properties", "propertyMap", "select", "to", "valueMap", "values");
+    private static final Set<String> CARDINALITIES = ImmutableSet.of("list", "set", "single");
+    private static final int ADD_EDGE_FIRST_VALUE = 3;
+
+    public ParameterizedScript parameterize(final String script) {
+        if (script.contains(PREFIX) || SCHEMA.matcher(script).find()) {
+            return new ParameterizedScript(script, Collections.emptyMap());
+        }
+
+        final StringBuilder out = new StringBuilder(script.length());
+        final Map<String, Object> parameters = new LinkedHashMap<>();
+        final Context context = new Context();
+        final int length = script.length();
+        int i = 0;
+
+        while (i < length) {
+            final char c = script.charAt(i);
+            final int end;
+
+            if (c == '/' && i + 1 < length && script.charAt(i + 1) == '/') {
+                end = indexOrEnd(script, "\n", i);
+            } else if (c == '/' && i + 1 < length && script.charAt(i + 1) == '*') {
+                end = indexOrEnd(script, "*/", i + 2) + 2;
+            } else if (c == '\'' || c == '"') {
+                end = string(script, i, context, out, parameters);
+            } else if (Character.isJavaIdentifierStart(c)) {
+                end = identifier(script, i);
+                context.identifier(script.substring(i, end), end);
+            } else if (Character.isDigit(c)) {
+                end = number(script, i, context, out, parameters);
+            } else {
+                context.punctuation(script, i);
+                end = i + 1;
+            }
+
+            if (end > i) {
+                out.append(script, i, Math.min(end, length));
+                i = end;
+            } else {
+                i = -end;
+            }
+        }
+
+        return new ParameterizedScript(out.toString(), parameters);
+    }
+
+    private static int indexOrEnd(final String script, final String text, final int from) {
+        final int index = script.indexOf(text, from);
+        if (index < 0) {
+            return script.length();
+        }
+
+        return index;
+    }
+
+    private static int identifier(final String script, final int start) {
+        int i = start + 1;
+        while (i < script.length() && Character.isJavaIdentifierPart(script.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    /**
+     * @return the end of a literal to copy as is, or the negated end of a literal that was replaced by a parameter.
+     */
+    private static int string(
+            final String script,
+            final int start,
+            final Context context,
+            final StringBuilder out,
+            final Map<String, Object> parameters) {
+        final char quote = script.charAt(start);
+
+        if (script.startsWith(tripleQuote(quote), start)) {
+            final int close = script.indexOf(tripleQuote(quote), start + TRIPLE_QUOTE);
+            if (close < 0) {
+                return script.length();
+            }
+
+            return close + TRIPLE_QUOTE;
+        }
+
+        final StringBuilder value = new StringBuilder();
+        boolean certain = true;
+        int i = start + 1;
+
+        while (i < script.length()) {
+            final char c = script.charAt(i);
+
+            if (c == quote) {
+                if (certain && context.isValue(script, i + 1)) {
+                    lift(value.toString(), out, parameters);
+                    return -(i + 1);
+                }
+                return i + 1;
+            } else if (c == '\n' || c == '\r') {
+                return i;
+            } else if (c == '\\') {
+                i = unescape(script, i, value);
+                if (i < 0) {
+                    certain = false;
+                    i = -i;
+                }
+            } else {
+                if (c == '$' && quote == '"') {
+                    certain = false;
+                }
+                value.append(c);
+                i++;
+            }
+        }
+
+        return i;
+    }
+
+    /**
+     * Appends the character of the escape sequence at {@code start} to {@code value}.
+     *
+     * @return the index after the escape sequence, negated if the escape sequence isn't recognised.
+     */
+    private static int unescape(final String script, final int start, final StringBuilder value) {
+        if (start + 1 >= script.length()) {
+            return -(start + 1);
+        }
+
+        final char c = script.charAt(start + 1);
+        switch (c) {
+            case 'b':
+                value.append('\b');
+                break;
+            case 't':
+                value.append('\t');
+                break;
+            case 'n':
+                value.append('\n');
+                break;
+            case 'f':
+                value.append('\f');
+                break;
+            case 'r':
+                value.append('\r');
+                break;
+            case '\'':
+            case '"':
+            case '\\':
+            case '$':
+                value.append(c);
+                break;
+            case 'u':
+                return unicodeEscape(script, start, value);
+            default:
+                return -(start + 2);
+        }
+
+        return start + 2;
+    }
+
+    private static int unicodeEscape(final String script, final int start, final StringBuilder value) {
+        final int end = start + 2 + UNICODE_ESCAPE_LENGTH;
+        if (end > script.length()) {
+            return -(start + 2);
+        }
+
+        try {
+            value.append((char) Integer.parseInt(script.substring(start + 2, end), HEX_RADIX));
+            return end;
+        } catch (final NumberFormatException e) {
+            return -(start + 2);
+        }
+    }
+
+    /**
+     * @return the end of a number to copy as is, or the negated end of a number that was replaced by a parameter.
+     */
+    private static int number(
+            final String script,
+            final int start,
+            final Context context,
+            final StringBuilder out,
+            final Map<String, Object> parameters) {
+        int end = start;
+        while (end < script.length() && Character.isDigit(script.charAt(end))) {
+            end++;
+        }
+
+        final boolean afterPoint = start > 0 && script.charAt(start - 1) == '.';
+        final boolean beforeSuffix = end < script.length()
+                && (Character.isJavaIdentifierPart(script.charAt(end)) || script.charAt(end) == '.');
+        // Leading zeros make an octal literal.
+        final boolean octal = script.charAt(start) == '0' && end - start > 1;
+        if (afterPoint || beforeSuffix || octal || !context.isValue(script, end)) {
+            return end;
+        }
+
+        final long value;
+        try {
+            value = Long.parseLong(script.substring(start, end));
+        } catch (final NumberFormatException e) {
+            return end;
+        }
+
+        if (value <= Integer.MAX_VALUE) {
+            lift((int) value, out, parameters);
+        } else {
+            lift(value, out, parameters);
+        }
+
+        return -end;
+    }
+
+    private static void lift(final Object value, final StringBuilder out, final Map<String, Object> parameters) {
+        final String name = PREFIX + parameters.size();
+        parameters.put(name, value);
+        out.append(name);
+    }
+
+    private static String tripleQuote(final char quote) {
+        return new String(new char[] {quote, quote, quote});
+    }
+
+    private static char nextNonWhitespace(final String script, final int from) {
+        int i = from;
+        while (i < script.length() && Character.isWhitespace(script.charAt(i))) {
+            i++;
+        }
+
+        if (i == script.length()) {
+            return 0;
+        }
+
+        return script.charAt(i);
+    }
+
+    /**
+     * The calls, lists and closures the scanner is in, used to tell literals in value positions from keys and labels.
+     */
+    private static final class Context {
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private String lastIdentifier;
+        private int lastIdentifierEnd = -1;
+
+        void identifier(final String name, final int end) {
+            lastIdentifier = name;
+            lastIdentifierEnd = end;
+            if (!frames.isEmpty()) {
+                frames.peek().argumentIdentifier = name;
+            }
+        }
+
+        void punctuation(final String script, final int index) {
+            final char c = script.charAt(index);
+            if (c == '(') {
+                final boolean call = lastIdentifierEnd >= 0
+                        && script.substring(lastIdentifierEnd, index).trim().isEmpty();
+                if (call) {
+                    frames.push(new Frame(lastIdentifier));
+                } else {
+                    frames.push(new Frame(null));
+                }
+            } else if (c == '[' || c == '{') {
+                frames.push(new Frame(null));
+            } else if ((c == ')' || c == ']' || c == '}') && !frames.isEmpty()) {
+                frames.pop();
+            } else if (c == ',' && !frames.isEmpty()) {
+                frames.peek().nextArgument();
+            }
+        }
+
+        /**
+         * @param end the index after a literal in the current argument.
+         * @return whether the literal is a value rather than a key or label.
+         */
+        boolean isValue(final String script, final int end) {
+            if (nextNonWhitespace(script, end) == ':') {
+                return false;
+            }
+
+            final Frame frame = frames.peek();
+            if (frame == null || frame.name == null) {
+                return true;
+            }
+
+            if (KEY_STEPS.contains(frame.name) || "label".equals(frame.previousArgumentIdentifier)) {
+                return false;
+            }
+
+            switch (frame.name) {
+                case "has":
+                    return frame.index > 0 && nextNonWhitespace(script, end) == ')';
+                case "property":
+                    if (CARDINALITIES.contains(frame.firstArgumentIdentifier)) {
+                        return frame.index % 2 == 0;
+                    }
+                    return frame.index % 2 == 1;
+                case "addVertex":
+                    return frame.index % 2 == 1;
+                case "addEdge":
+                    return frame.index >= ADD_EDGE_FIRST_VALUE && frame.index % 2 == 1;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    private static final class Frame {
+        private final String name;
+        private int index;
+        private String argumentIdentifier;
+        private String previousArgumentIdentifier;
+        private String firstArgumentIdentifier;
+
+        Frame(final String name) {
+            this.name = name;
+        }
+
+        void nextArgument() {
+            if (index == 0) {
+                firstArgumentIdentifier = argumentIdentifier;
+            }
+            previousArgumentIdentifier = argumentIdentifier;
+            argumentIdentifier = null;
+            index++;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package omahoco.migrate.parse;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A script with its literals replaced by named parameters.
+ */
+public final class ParameterizedScript {
+    private final String script;
+    private final Map<String, Object> parameters;
+
+    public ParameterizedScript(final String script, final Map<String, Object> parameters) {
+        this.script = Objects.requireNonNull(script);
+        this.parameters = Collections.unmodifiableMap(parameters);
+    }
+
+    public String getScript() {
+        return script;
+    }
+
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    public boolean isParameterized() {
+        return !parameters.isEmpty();
+    }
+}
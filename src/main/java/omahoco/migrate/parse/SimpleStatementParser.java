@@ -3,55 +3,359 @@ package omahoco.migrate.parse;
 import com.google.common.annotations.VisibleForTesting;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
- * A simple parser to process graph statements. The parser requires all statements to be terminated with a semicolon.
- * It can handle multiline indented statements, comment lines and inline comments.
- * For simplicity multiline comment blocks are not supported.
+ * A simple parser to process graph statements. The parser requires all statements to be terminated with a semicolon
+ * at the end of a line. It can handle multiline indented statements, line comments, inline comments and multiline
+ * comment blocks.
+ * <p>
+ * Text is processed a character at a time in a single pass, tracking whether the lexer is in code, a comment, a
+ * string or an interpolated GString expression. Comment markers and semicolons inside strings are left alone, and
+ * strings are kept exactly as written, including line breaks in triple quoted strings. Everywhere else lines are
+ * trimmed and joined without a separator.
  */
 public final class SimpleStatementParser implements StatementParser {
-    private static final Pattern LINE_COMMENT = Pattern.compile("^(//|\\/\\*.+?\\*\\/)");
-    private static final Pattern LEFT_TRIM = Pattern.compile("^(\\s|\\t)+");
-    private static final Pattern RIGHT_TRIM = Pattern.compile("(\\s|\\t)+$");
-    private static final Pattern STATEMENT = Pattern.compile("^(.*?)(:?\\s\\/\\/.*|\\s\\/\\*.*\\*\\/)?$");
-    private static final String STATEMENT_TERMINATOR = ";";
+    private static final char STATEMENT_TERMINATOR = ';';
+    private static final String LINE_SEPARATOR = "\n";
 
     @Override
     public List<String> parse(final List<String> lines) {
-        final ArrayList<String> statements = new ArrayList<>();
-        StringBuffer currentStatement = new StringBuffer();
+        final List<String> statements = new ArrayList<>();
+        final Session session = newSession(statements::add);
 
         for (final String line : lines) {
-            if (LINE_COMMENT.matcher(line).find()) {
-                continue;
+            session.accept(line);
+            session.accept(LINE_SEPARATOR);
+        }
+        session.finish();
+
+        return statements;
+    }
+
+    @Override
+    public Session newSession(final Consumer<String> statements) {
+        return new Lexer(statements);
+    }
+
+    @VisibleForTesting
+    String trim(final String trim) {
+        int start = 0;
+        int end = trim.length();
+
+        while (start < end && (isWhitespace(trim.charAt(start)) || isLineEnd(trim.charAt(start)))) {
+            start++;
+        }
+        while (end > start && (isWhitespace(trim.charAt(end - 1)) || isLineEnd(trim.charAt(end - 1)))) {
+            end--;
+        }
+
+        return trim.substring(start, end);
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\u000B' || c == '\f';
+    }
+
+    private static boolean isLineEnd(final char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    private static final class Lexer implements Session {
+        private static final int CODE = 0;
+        private static final int LINE_COMMENT = 1;
+        private static final int BLOCK_COMMENT = 2;
+        private static final int STRING = 3;
+        private static final int TRIPLE_STRING = 4;
+        private static final int TRIPLE_QUOTE = 3;
+        private static final int FRAME_SIZE = 3;
+
+        private final Consumer<String> statements;
+        private final StringBuilder statement = new StringBuilder();
+        private int mode = CODE;
+        private char quote;
+        // The length of the statement when the current line started, and whether only whitespace has been seen since.
+        private int lineStart;
+        private boolean atLineStart = true;
+        // Characters that can't be classified until the next character has been seen.
+        private boolean pendingSlash;
+        private boolean pendingStar;
+        private boolean pendingDollar;
+        private boolean escaped;
+        private int pendingQuotes;
+        // The enclosing strings of nested GString ${...} expressions, with the brace depth of each expression.
+        private int[] frames = new int[FRAME_SIZE * 2];
+        private int depth;
+        private int braceDepth;
+
+        private Lexer(final Consumer<String> statements) {
+            this.statements = Objects.requireNonNull(statements);
+        }
+
+        @Override
+        public void accept(final CharSequence text) {
+            final int length = text.length();
+            for (int i = 0; i < length; i++) {
+                accept(text.charAt(i));
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (pendingSlash) {
+                pendingSlash = false;
+                append('/');
+            }
+            appendPendingQuotes();
+            endLine();
+
+            if (statement.length() > 0) {
+                emit();
+            }
+        }
+
+        private void accept(final char c) {
+            switch (mode) {
+                case CODE:
+                    code(c);
+                    break;
+                case LINE_COMMENT:
+                    if (isLineEnd(c)) {
+                        mode = CODE;
+                        endLine();
+                    }
+                    break;
+                case BLOCK_COMMENT:
+                    blockComment(c);
+                    break;
+                case STRING:
+                    string(c);
+                    break;
+                case TRIPLE_STRING:
+                    tripleString(c);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown lexer mode " + mode);
+            }
+        }
+
+        private void code(final char c) {
+            if (pendingSlash) {
+                pendingSlash = false;
+                if (c == '/') {
+                    mode = LINE_COMMENT;
+                    return;
+                }
+                if (c == '*') {
+                    mode = BLOCK_COMMENT;
+                    return;
+                }
+                append('/');
             }
 
-            final Matcher m = STATEMENT.matcher(line);
-            if (m.find()) {
-                final String statement = trim(m.group(1));
-                currentStatement.append(statement);
+            if (pendingQuotes > 0) {
+                if (c == quote) {
+                    if (++pendingQuotes == TRIPLE_QUOTE) {
+                        appendPendingQuotes();
+                        mode = TRIPLE_STRING;
+                    }
+                    return;
+                }
 
-                if (statement.endsWith(STATEMENT_TERMINATOR)) {
-                    statements.add(
-                            currentStatement.toString());
-                    currentStatement = new StringBuffer();
+                if (pendingQuotes == 1) {
+                    appendPendingQuotes();
+                    mode = STRING;
+                    string(c);
+                    return;
                 }
+
+                // An empty string.
+                appendPendingQuotes();
+            }
+
+            if (isLineEnd(c)) {
+                lineEnd(c);
+                return;
+            }
+
+            if (atLineStart && isWhitespace(c)) {
+                return;
+            }
+
+            switch (c) {
+                case '/':
+                    if (depth == 0) {
+                        pendingSlash = true;
+                        return;
+                    }
+                    break;
+                case '\'':
+                case '"':
+                    quote = c;
+                    pendingQuotes = 1;
+                    return;
+                case '{':
+                    braceDepth++;
+                    break;
+                case '}':
+                    if (depth > 0 && braceDepth == 0) {
+                        append(c);
+                        pop();
+                        return;
+                    }
+                    braceDepth--;
+                    break;
+                default:
+                    break;
             }
+
+            append(c);
         }
 
-        if (currentStatement.length() > 0) {
-            statements.add(currentStatement.toString());
+        private void blockComment(final char c) {
+            if (pendingStar && c == '/') {
+                pendingStar = false;
+                mode = CODE;
+                return;
+            }
+
+            pendingStar = c == '*';
+            if (isLineEnd(c)) {
+                endLine();
+            }
         }
 
-        return statements;
-    }
+        private void string(final char c) {
+            if (stringEscapeOrInterpolation(c)) {
+                return;
+            }
 
-    @VisibleForTesting
-    String trim(final String trim) {
-        return RIGHT_TRIM.matcher(LEFT_TRIM.matcher(trim).replaceAll(""))
-                .replaceAll("");
+            if (c == quote) {
+                append(c);
+                mode = CODE;
+            } else if (isLineEnd(c)) {
+                // Single and double quoted strings can't span lines, recover from an unterminated string.
+                mode = CODE;
+                lineEnd(c);
+            } else {
+                append(c);
+            }
+        }
+
+        private void tripleString(final char c) {
+            if (c == quote && !escaped) {
+                append(c);
+                if (++pendingQuotes == TRIPLE_QUOTE) {
+                    pendingQuotes = 0;
+                    mode = CODE;
+                }
+                return;
+            }
+
+            pendingQuotes = 0;
+            if (!stringEscapeOrInterpolation(c)) {
+                append(c);
+            }
+        }
+
+        /**
+         * @return true when the character has been handled as part of an escape sequence or GString expression.
+         */
+        private boolean stringEscapeOrInterpolation(final char c) {
+            if (escaped) {
+                escaped = false;
+                append(c);
+                return true;
+            }
+
+            if (pendingDollar) {
+                pendingDollar = false;
+                if (c == '{') {
+                    append(c);
+                    push();
+                    return true;
+                }
+            }
+
+            if (c == '\\') {
+                escaped = true;
+                append(c);
+                return true;
+            }
+
+            if (c == '$' && quote == '"') {
+                pendingDollar = true;
+                append(c);
+                return true;
+            }
+
+            return false;
+        }
+
+        private void appendPendingQuotes() {
+            for (int i = 0; i < pendingQuotes; i++) {
+                append(quote);
+            }
+            pendingQuotes = 0;
+        }
+
+        private void push() {
+            if (frames.length < (depth + 1) * FRAME_SIZE) {
+                frames = Arrays.copyOf(frames, frames.length * 2);
+            }
+
+            final int frame = depth * FRAME_SIZE;
+            frames[frame] = mode;
+            frames[frame + 1] = quote;
+            frames[frame + 2] = braceDepth;
+            depth++;
+            mode = CODE;
+            braceDepth = 0;
+        }
+
+        private void pop() {
+            depth--;
+            final int frame = depth * FRAME_SIZE;
+            mode = frames[frame];
+            quote = (char) frames[frame + 1];
+            braceDepth = frames[frame + 2];
+        }
+
+        private void lineEnd(final char c) {
+            if (depth > 0) {
+                append(c);
+            } else {
+                endLine();
+            }
+        }
+
+        private void endLine() {
+            int length = statement.length();
+            while (length > lineStart && isWhitespace(statement.charAt(length - 1))) {
+                length--;
+            }
+            statement.setLength(length);
+
+            if (length > lineStart && statement.charAt(length - 1) == STATEMENT_TERMINATOR) {
+                emit();
+            }
+
+            lineStart = statement.length();
+            atLineStart = true;
+        }
+
+        private void append(final char c) {
+            statement.append(c);
+            atLineStart = false;
+        }
+
+        private void emit() {
+            statements.accept(statement.toString());
+            statement.setLength(0);
+            lineStart = 0;
+        }
     }
 }
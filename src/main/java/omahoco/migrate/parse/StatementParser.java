@@ -1,7 +1,26 @@
 package omahoco.migrate.parse;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatementParser {
     List<String> parse(List<String> lines);
+
+    /**
+     * Starts an incremental parse. Each statement is passed to {@code statements} as soon as it is complete, so
+     * memory use is bounded by the longest statement rather than the size of the input.
+     */
+    Session newSession(Consumer<String> statements);
+
+    interface Session {
+        /**
+         * Parses the next chunk of text. Chunks can start and end anywhere, including part way through a line.
+         */
+        void accept(CharSequence text);
+
+        /**
+         * Completes the parse, passing on a final statement that isn't terminated with a semicolon.
+         */
+        void finish();
+    }
 }
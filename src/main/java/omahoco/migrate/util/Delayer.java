@@ -2,4 +2,9 @@ package omahoco.migrate.util;
 
 public interface Delayer {
     void delay(int millis);
+
+    /**
+     * Ends every delay in progress early.
+     */
+    void wake();
 }
@@ -0,0 +1,202 @@
+package omahoco.migrate.util;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the metrics of a run over JMX while it is in progress, and writes them to a JSON file when it is closed.
+ * Durations are reported in milliseconds and rates per second.
+ */
+public final class MetricsReporter implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsReporter.class);
+    private static final String JMX_DOMAIN = "graph-migrate";
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private final MetricRegistry metricRegistry;
+    private final Path summaryFile;
+    private final JmxReporter jmxReporter;
+
+    /**
+     * @param summaryFile where to write the JSON summary, or null for no summary.
+     */
+    public MetricsReporter(final MetricRegistry metricRegistry, final Path summaryFile) {
+        this.metricRegistry = Objects.requireNonNull(metricRegistry);
+        this.summaryFile = summaryFile;
+        this.jmxReporter =
+                JmxReporter.forRegistry(metricRegistry)
+                        .inDomain(JMX_DOMAIN)
+                        .convertDurationsTo(TimeUnit.MILLISECONDS)
+                        .convertRatesTo(TimeUnit.SECONDS)
+                        .build();
+    }
+
+    public void start() {
+        jmxReporter.start();
+    }
+
+    @Override
+    public void close() {
+        jmxReporter.stop();
+
+        if (summaryFile == null) {
+            return;
+        }
+
+        try {
+            if (summaryFile.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(summaryFile.toAbsolutePath().getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(summaryFile, StandardCharsets.UTF_8)) {
+                writeJson(writer);
+            }
+            LOGGER.info("Metrics written to {}", summaryFile);
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to write metrics to {}", summaryFile, e);
+        }
+    }
+
+    /**
+     * Writes every metric as JSON, grouped by type and sorted by name.
+     */
+    public void writeJson(final Writer writer) throws IOException {
+        final Json json = new Json(writer);
+
+        json.begin('{');
+        json.object("gauges", metricRegistry.getGauges(), (name, gauge) -> json.value(name, gaugeValue(gauge)));
+        json.object("counters", metricRegistry.getCounters(), (name, counter) -> json.value(name, counter.getCount()));
+        json.object("histograms", metricRegistry.getHistograms(), (name, histogram) -> {
+            json.name(name).begin('{');
+            json.value("count", histogram.getCount());
+            writeSnapshot(json, histogram.getSnapshot(), 1);
+            json.end('}');
+        });
+        json.object("meters", metricRegistry.getMeters(), (name, meter) -> {
+            json.name(name).begin('{');
+            writeRates(json, meter);
+            json.end('}');
+        });
+        json.object("timers", metricRegistry.getTimers(), (name, timer) -> {
+            json.name(name).begin('{');
+            writeRates(json, timer);
+            writeSnapshot(json, timer.getSnapshot(), NANOS_PER_MILLI);
+            json.end('}');
+        });
+        json.end('}');
+        writer.write(System.lineSeparator());
+    }
+
+    private static Object gaugeValue(final Gauge<?> gauge) {
+        try {
+            return gauge.getValue();
+        } catch (final RuntimeException e) {
+            // Driver gauges can fail once the cluster is closed, the rest of the summary is still written.
+            return null;
+        }
+    }
+
+    private static void writeRates(final Json json, final Metered metered) throws IOException {
+        json.value("count", metered.getCount());
+        json.value("meanRate", metered.getMeanRate());
+        json.value("m1Rate", metered.getOneMinuteRate());
+    }
+
+    private static void writeSnapshot(final Json json, final Snapshot snapshot, final double scale)
+            throws IOException {
+        json.value("min", snapshot.getMin() / scale);
+        json.value("mean", snapshot.getMean() / scale);
+        json.value("p50", snapshot.getMedian() / scale);
+        json.value("p95", snapshot.get95thPercentile() / scale);
+        json.value("p99", snapshot.get99thPercentile() / scale);
+        json.value("max", snapshot.getMax() / scale);
+    }
+
+    @FunctionalInterface
+    private interface MetricWriter<T> {
+        void write(String name, T metric) throws IOException;
+    }
+
+    /**
+     * Just enough of a JSON writer for metrics, tracking whether a separator is needed before the next member.
+     */
+    private static final class Json {
+        private final Writer writer;
+        private boolean first;
+
+        private Json(final Writer writer) {
+            this.writer = writer;
+        }
+
+        private Json begin(final char bracket) throws IOException {
+            writer.write(bracket);
+            first = true;
+            return this;
+        }
+
+        private void end(final char bracket) throws IOException {
+            writer.write(bracket);
+            first = false;
+        }
+
+        private Json name(final String name) throws IOException {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            string(name);
+            writer.write(':');
+            return this;
+        }
+
+        private void value(final String name, final Object value) throws IOException {
+            name(name);
+            if (value instanceof Double && (((Double) value).isNaN() || ((Double) value).isInfinite())) {
+                writer.write("null");
+            } else if (value == null || value instanceof Number || value instanceof Boolean) {
+                writer.write(String.valueOf(value));
+            } else {
+                string(value.toString());
+            }
+        }
+
+        private <T> void object(
+                final String name,
+                final SortedMap<String, T> metrics,
+                final MetricWriter<T> metricWriter) throws IOException {
+            name(name).begin('{');
+            for (final Map.Entry<String, T> entry : metrics.entrySet()) {
+                metricWriter.write(entry.getKey(), entry.getValue());
+            }
+            end('}');
+        }
+
+        private void string(final String value) throws IOException {
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    writer.write('\\');
+                    writer.write(c);
+                } else if (c < ' ') {
+                    writer.write(String.format("\\u%04x", (int) c));
+                } else {
+                    writer.write(c);
+                }
+            }
+            writer.write('"');
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package omahoco.migrate.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A delayer that can be woken up before the delay has elapsed, e.g. when an event makes waiting any longer pointless.
+ */
+public final class SignallingDelayer implements Delayer {
+    private final Object monitor = new Object();
+    private long signals;
+
+    @Override
+    public void delay(final int millis) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+
+        synchronized (monitor) {
+            final long signal = signals;
+            long remaining = deadline - System.nanoTime();
+
+            while (signal == signals && remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(monitor, remaining);
+                } catch (final InterruptedException e) {
+                    // Exit quietly if the thread is interrupted.
+                    return;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+        }
+    }
+
+    @Override
+    public void wake() {
+        synchronized (monitor) {
+            signals++;
+            monitor.notifyAll();
+        }
+    }
+}
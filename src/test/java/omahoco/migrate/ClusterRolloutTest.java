@@ -0,0 +1,72 @@
+package omahoco.migrate;
+
+import omahoco.migrate.config.RolloutConfig;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ClusterRolloutTest {
+    private static final List<String> CLUSTERS = Arrays.asList("staging", "eu", "us");
+
+    @Test
+    public void testStopPolicySkipsRemainingClusters() {
+        final RolloutConfig config = new RolloutConfig();
+        config.setParallelism(1);
+
+        final Map<String, ClusterRollout.Result> results = new ClusterRollout(CLUSTERS, config).run((name, stop) -> {
+            if (name.equals("staging")) {
+                throw new IllegalStateException("Migration failed for graphs [killrvideo]");
+            }
+        });
+
+        assertThat(results.get("staging").getOutcome(), is(ClusterRollout.Outcome.FAILED));
+        assertThat(results.get("eu").getOutcome(), is(ClusterRollout.Outcome.SKIPPED));
+        assertThat(results.get("us").getOutcome(), is(ClusterRollout.Outcome.SKIPPED));
+    }
+
+    @Test
+    public void testContinuePolicyMigratesEveryCluster() {
+        final RolloutConfig config = new RolloutConfig();
+        config.setParallelism(1);
+        config.setFailurePolicy(RolloutConfig.FailurePolicy.CONTINUE);
+
+        final Map<String, ClusterRollout.Result> results = new ClusterRollout(CLUSTERS, config).run((name, stop) -> {
+            if (name.equals("eu")) {
+                throw new IllegalStateException("Migration failed for graphs [killrvideo]");
+            }
+        });
+
+        assertThat(results.get("staging").getOutcome(), is(ClusterRollout.Outcome.SUCCEEDED));
+        assertThat(results.get("eu").getOutcome(), is(ClusterRollout.Outcome.FAILED));
+        assertThat(results.get("us").getOutcome(), is(ClusterRollout.Outcome.SUCCEEDED));
+    }
+
+    @Test
+    public void testFailureSignalsRunningClustersToStop() {
+        final CountDownLatch started = new CountDownLatch(2);
+
+        final Map<String, ClusterRollout.Result> results =
+                new ClusterRollout(Arrays.asList("eu", "us"), new RolloutConfig()).run((name, stop) -> {
+                    started.countDown();
+                    started.await(1, TimeUnit.MINUTES);
+                    if (name.equals("eu")) {
+                        throw new IllegalStateException("Migration failed for graphs [killrvideo]");
+                    }
+
+                    while (!stop.getAsBoolean()) {
+                        Thread.sleep(1);
+                    }
+                    throw new IllegalStateException("Migration stopped before v002_b.gremlin");
+                });
+
+        assertThat(results.get("eu").getOutcome(), is(ClusterRollout.Outcome.FAILED));
+        assertThat(results.get("us").getOutcome(), is(ClusterRollout.Outcome.STOPPED));
+    }
+}
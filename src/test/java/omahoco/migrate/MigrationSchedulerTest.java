@@ -0,0 +1,115 @@
+package omahoco.migrate;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MigrationSchedulerTest {
+    @Test
+    public void testUndeclaredMigrationsAppliedInOrder() {
+        final List<Migration> migrations = Arrays.asList(
+                migration(1, null), migration(2, null), migration(3, null), migration(4, null));
+        final List<String> applied = new CopyOnWriteArrayList<>();
+        final AtomicInteger running = new AtomicInteger();
+
+        new MigrationScheduler(migrations, migrations, 4).run(t -> {
+            assertThat(running.incrementAndGet(), is(1));
+            applied.add(t.getFileName());
+            running.decrementAndGet();
+        }, () -> false);
+
+        assertThat(applied, is(Arrays.asList("v001_m.gremlin", "v002_m.gremlin", "v003_m.gremlin", "v004_m.gremlin")));
+    }
+
+    @Test
+    public void testIndependentMigrationsAppliedConcurrently() {
+        final List<Migration> migrations = Arrays.asList(
+                migration(1, null), migration(2, Collections.singletonList(1)),
+                migration(3, Collections.singletonList(1)), migration(4, null));
+        final CountDownLatch branches = new CountDownLatch(2);
+        final List<String> applied = new CopyOnWriteArrayList<>();
+
+        new MigrationScheduler(migrations, migrations, 2).run(t -> {
+            if (t.getVersion() == 2 || t.getVersion() == 3) {
+                branches.countDown();
+                await(branches);
+            }
+            applied.add(t.getFileName());
+        }, () -> false);
+
+        assertThat(applied.get(0), is("v001_m.gremlin"));
+        assertThat(applied.get(3), is("v004_m.gremlin"));
+    }
+
+    @Test
+    public void testDependentsOfFailedMigrationNotApplied() {
+        final List<Migration> migrations = Arrays.asList(
+                migration(1, Collections.emptyList()), migration(2, Collections.emptyList()),
+                migration(3, Collections.singletonList(2)));
+        final List<String> applied = new CopyOnWriteArrayList<>();
+
+        try {
+            new MigrationScheduler(migrations, migrations, 2).run(t -> {
+                if (t.getVersion() == 2) {
+                    throw new IllegalStateException("Failed " + t.getFileName());
+                }
+                applied.add(t.getFileName());
+            }, () -> false);
+            fail("Expected the migration to fail");
+        } catch (final IllegalStateException e) {
+            assertThat(e.getMessage(), is("Failed v002_m.gremlin"));
+        }
+
+        assertThat(applied.contains("v003_m.gremlin"), is(false));
+    }
+
+    @Test
+    public void testAppliedDependencySatisfied() {
+        final List<Migration> files = Arrays.asList(migration(1, null), migration(2, Collections.singletonList(1)));
+        final List<String> applied = new CopyOnWriteArrayList<>();
+
+        new MigrationScheduler(files, files.subList(1, 2), 2).run(t -> applied.add(t.getFileName()), () -> false);
+
+        assertThat(applied, is(Collections.singletonList("v002_m.gremlin")));
+    }
+
+    @Test
+    public void testLaterDependencyRejected() {
+        final List<Migration> migrations =
+                Arrays.asList(migration(1, Collections.singletonList(2)), migration(2, null));
+
+        try {
+            new MigrationScheduler(migrations, migrations, 2);
+            fail("Expected the dependency to be rejected");
+        } catch (final IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("v001_m.gremlin depends on version 2"));
+        }
+    }
+
+    private static Migration migration(final int version, final List<Integer> dependsOn) {
+        final Migration migration = new Migration(String.format("v%03d_m.gremlin", version));
+        migration.setVersion(version);
+        migration.setDependsOn(dependsOn);
+        return migration;
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            assertThat(latch.await(1, TimeUnit.MINUTES), is(true));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
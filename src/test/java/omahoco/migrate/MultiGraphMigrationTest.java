@@ -0,0 +1,58 @@
+package omahoco.migrate;
+
+import omahoco.migrate.config.Config;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MultiGraphMigrationTest {
+    @Test
+    public void testGraphNamesCombineNamesAndPattern() {
+        final Config config = new Config();
+        config.setSchema("main");
+        config.setSchemas(Arrays.asList("tenant_b", "main"));
+        config.setSchemaPattern("tenant_.*");
+
+        final List<String> actual =
+                MultiGraphMigration.graphNames(config, () -> Arrays.asList("tenant_c", "other", "tenant_a"));
+
+        assertThat(actual, is(Arrays.asList("main", "tenant_b", "tenant_a", "tenant_c")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoGraphsRejected() {
+        final Config config = new Config();
+        config.setSchemaPattern("tenant_.*");
+
+        MultiGraphMigration.graphNames(config, Collections::emptyList);
+    }
+
+    @Test
+    public void testFailedGraphDoesNotStopOthers() {
+        final Set<String> migrated = ConcurrentHashMap.newKeySet();
+        final MultiGraphMigration migration =
+                new MultiGraphMigration(Arrays.asList("a", "b", "c", "d"), 2, t -> {
+                    if (t.equals("b")) {
+                        throw new IllegalStateException("Failed " + t);
+                    }
+                    migrated.add(t);
+                    return null;
+                });
+
+        final Map<String, Throwable> failures = migration.migrate(t -> {
+        });
+
+        assertThat(migrated.size(), is(3));
+        assertThat(failures.keySet(), is(Collections.singleton("b")));
+        assertThat(failures.get("b"), instanceOf(IllegalStateException.class));
+    }
+}
@@ -2,27 +2,62 @@ package omahoco.migrate;
 
 import omahoco.migrate.config.Config;
 import omahoco.migrate.config.Profile;
+import omahoco.migrate.config.SimulationConfig;
+import omahoco.migrate.graph.GraphMigrationMetadata;
+import omahoco.migrate.graph.InMemoryMigrationLock;
+import omahoco.migrate.graph.InMemoryMigrationMetadata;
+import omahoco.migrate.graph.InMemorySchema;
 import omahoco.migrate.graph.Schema;
+import omahoco.migrate.io.MigrationFileLoader;
 import omahoco.migrate.io.MigrationSource;
-import com.datastax.driver.dse.DseCluster;
-import com.datastax.driver.dse.DseSession;
+import omahoco.migrate.parse.SimpleStatementParser;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.dse.graph.GraphNode;
 import com.datastax.driver.dse.graph.GraphResultSet;
 import com.datastax.driver.dse.graph.GraphStatement;
+import com.datastax.driver.dse.graph.SimpleGraphStatement;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
 import org.mockito.Mock;
+import org.mockito.internal.util.reflection.Whitebox;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.contains;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -30,26 +65,22 @@ import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class SchemaMigrationTest {
-    @Mock
-    private DseSession dseSession;
     @Mock
     private Schema<GraphResultSet, GraphStatement> schema;
     @Mock
     private MigrationSource migrationSource;
     @Mock
     private MigrationMetadata migrationMetadata;
-    @Mock
-    private DseCluster dseCluster;
 
     private final Config config = new Config();
     private SchemaMigration schemaMigration;
 
     @Before
     public void before() {
-        when(dseSession.getCluster()).thenReturn(dseCluster);
+        when(migrationMetadata.getSummary()).thenReturn(Optional.empty());
 
         config.setSchema("testSchema");
-        schemaMigration = new SchemaMigration(dseSession, new Profile(), schema,
+        schemaMigration = new SchemaMigration(new Profile(), schema,
                 migrationMetadata, migrationSource);
     }
 
@@ -66,6 +97,27 @@ public class SchemaMigrationTest {
         verify(migrationMetadata, times(3)).saveMigration(any());
     }
 
+    @Test
+    public void testMigrateStopsBeforeNextFileWhenSignalled() {
+        when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
+        final AtomicBoolean stop = new AtomicBoolean();
+        doAnswer(invocation -> {
+            stop.set(true);
+            return null;
+        }).when(migrationMetadata).saveMigration(any());
+        schemaMigration.setStopSignal(stop::get);
+
+        try {
+            schemaMigration.migrate();
+            fail("Expected the migration to stop");
+        } catch (final IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("v002_killrvideo_vertex_label.gremlin"));
+        }
+
+        verify(schema, times(13)).execute(anyString());
+        verify(migrationMetadata, times(1)).saveMigration(any());
+    }
+
     @Test
     public void testMigrateUpToVersion() {
         when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
@@ -95,6 +147,48 @@ public class SchemaMigrationTest {
         verify(migrationMetadata, never()).saveMigration(any());
     }
 
+    @Test
+    public void testMigrateNothingToApplyReadsOnlySummary() {
+        when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
+        when(migrationMetadata.getSummary()).thenReturn(Optional.of(
+                new MigrationSummary(MigrationFingerprint.of(getAppliedMigrations()),
+                        "v003_killrvideo_edge_labels.gremlin", "", MigrationFingerprint.EMPTY)));
+
+        schemaMigration.migrate();
+
+        verify(schema, never()).create(any());
+        verify(migrationMetadata, never()).getMigrations();
+        verify(schema, never()).execute(anyString());
+    }
+
+    @Test
+    public void testMigrateSkipsCompactedMigrations() {
+        when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
+        when(migrationMetadata.getMigrations()).thenReturn(getAppliedMigrations().subList(1, 2));
+        when(migrationMetadata.getSummary()).thenReturn(Optional.of(
+                new MigrationSummary("stale", "v002_killrvideo_vertex_label.gremlin",
+                        "v001_killrvideo_properties.gremlin",
+                        MigrationFingerprint.of(getAppliedMigrations().subList(0, 1)))));
+
+        schemaMigration.migrate();
+
+        // Only the third migration file should be applied
+        verify(schema, times(8)).execute(anyString());
+        verify(migrationMetadata).saveMigration(any());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMigrateCompactedMigrationsChanged() {
+        when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
+        when(migrationMetadata.getMigrations()).thenReturn(Collections.emptyList());
+        when(migrationMetadata.getSummary()).thenReturn(Optional.of(
+                new MigrationSummary("stale", "v002_killrvideo_vertex_label.gremlin",
+                        "v002_killrvideo_vertex_label.gremlin",
+                        MigrationFingerprint.of(getAppliedMigrations().subList(1, 2)))));
+
+        schemaMigration.migrate();
+    }
+
     @Test
     public void testMigrateOneNotAlreadyApplied() {
         when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
@@ -121,6 +215,340 @@ public class SchemaMigrationTest {
         schemaMigration.migrate();
     }
 
+    @Test
+    public void testMigrateBatchesDataStatements() {
+        final Profile profile = new Profile();
+        profile.getExecution().setBatchSize(2);
+        schemaMigration = new SchemaMigration(profile, schema, migrationMetadata, migrationSource);
+
+        when(migrationSource.getMigrations()).thenReturn(Collections.singletonList(getDataMigration()));
+
+        schemaMigration.migrate();
+
+        // [g1, g2], [g3], [schema], [p1, p2]
+        verify(schema, times(4)).execute(anyString());
+        verify(migrationMetadata).saveMigration(any());
+    }
+
+    @Test
+    public void testMigrateRetriesFailedBatchIndividually() {
+        final Profile profile = new Profile();
+        profile.getExecution().setBatchSize(10);
+        schemaMigration = new SchemaMigration(profile, schema, migrationMetadata, migrationSource);
+
+        when(migrationSource.getMigrations()).thenReturn(Collections.singletonList(getDataMigration()));
+        doThrow(new IllegalStateException("Batch failed")).when(schema).execute(contains("\n"));
+
+        schemaMigration.migrate();
+
+        // 2 failed batches, 1 schema statement and 5 individual retries
+        verify(schema, times(8)).execute(anyString());
+        verify(migrationMetadata).saveMigration(any());
+    }
+
+    @Test
+    public void testMigrateResumesFromCheckpoint() {
+        final Profile profile = new Profile();
+        profile.getExecution().setCheckpointInterval(5);
+        schemaMigration = new SchemaMigration(profile, schema, migrationMetadata, migrationSource);
+
+        when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
+        when(migrationMetadata.getCheckpoints()).thenReturn(Collections.singletonMap(
+                "v001_killrvideo_properties.gremlin",
+                new MigrationCheckpoint("v001_killrvideo_properties.gremlin", "725b63a6", 10)));
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(SchemaMigration.class);
+        final ListAppender<ILoggingEvent> log = new ListAppender<>();
+        log.start();
+        logger.addAppender(log);
+        try {
+            schemaMigration.migrate();
+        } finally {
+            logger.detachAppender(log);
+        }
+
+        assertThat(log.list.stream().map(ILoggingEvent::getFormattedMessage).collect(Collectors.toList()),
+                hasItem("v001_killrvideo_properties.gremlin - Applied 3 of 13 statements, "
+                        + "the first 10 were applied before resuming."));
+        // 3 + 4 + 8 statements expected, checkpoints at 5 statements of v003
+        verify(schema, times(15)).execute(anyString());
+        verify(migrationMetadata, times(3)).saveMigration(any());
+        verify(migrationMetadata).saveCheckpoint(any());
+        verify(migrationMetadata).removeCheckpoint("v001_killrvideo_properties.gremlin");
+        verify(migrationMetadata).removeCheckpoint("v003_killrvideo_edge_labels.gremlin");
+    }
+
+    @Test
+    public void testMigrateChangedSinceCheckpointStartsOver() {
+        final Profile profile = new Profile();
+        profile.getExecution().setCheckpointInterval(100);
+        schemaMigration = new SchemaMigration(profile, schema, migrationMetadata, migrationSource);
+
+        when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
+        when(migrationMetadata.getCheckpoints()).thenReturn(Collections.singletonMap(
+                "v001_killrvideo_properties.gremlin",
+                new MigrationCheckpoint("v001_killrvideo_properties.gremlin", "changed", 10)));
+
+        schemaMigration.migrate();
+
+        verify(schema, times(25)).execute(anyString());
+        verify(migrationMetadata, never()).saveCheckpoint(any());
+    }
+
+    @Test
+    public void testMigrateDataFileSendsRowsAsParameters() {
+        final Profile profile = new Profile();
+        profile.getExecution().setBatchSize(2);
+        schemaMigration = new SchemaMigration(profile, schema, migrationMetadata, migrationSource);
+
+        when(migrationSource.getMigrations()).thenReturn(Collections.singletonList(
+                new File(SchemaMigrationTest.class.getResource("v007_killrvideo_users.csv").getFile())));
+
+        schemaMigration.migrate();
+
+        // [u1, u2], [u3, u4], [u5]
+        final ArgumentCaptor<GraphStatement> statements = ArgumentCaptor.forClass(GraphStatement.class);
+        verify(schema, times(3)).execute(statements.capture());
+        assertThat(((SimpleGraphStatement) statements.getValue()).getQueryString(),
+                containsString("graph.addVertex(label, 'user', 'userId', row.userId"));
+        verify(migrationMetadata).saveMigration(any());
+    }
+
+    @Test
+    public void testMigrateInMemorySchemaOnce() {
+        when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
+        final InMemoryMigrationMetadata metadata = new InMemoryMigrationMetadata();
+        try (InMemorySchema inMemorySchema = new InMemorySchema(new SimulationConfig(), new MetricRegistry())) {
+            final SchemaMigration migration =
+                    new SchemaMigration(new Profile(), inMemorySchema, metadata, migrationSource);
+
+            migration.migrate();
+            migration.migrate();
+
+            assertThat(inMemorySchema.getSchemaChanges().size(), is(25));
+            assertThat(metadata.getMigrations().size(), is(3));
+            assertThat(metadata.compact(2), is(2));
+
+            migration.migrate();
+
+            assertThat(inMemorySchema.getSchemaChanges().size(), is(25));
+        }
+    }
+
+    @Test
+    public void testConcurrentRunnersApplyMigrationsOnce() throws Exception {
+        when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
+        final InMemoryMigrationMetadata metadata = new InMemoryMigrationMetadata();
+        final InMemoryMigrationLock lock = new InMemoryMigrationLock(new MetricRegistry());
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try (InMemorySchema inMemorySchema = new InMemorySchema(new SimulationConfig(), new MetricRegistry())) {
+            final List<Future<?>> runners = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                final SchemaMigration migration = new SchemaMigration(
+                        new Profile(), inMemorySchema, metadata, migrationSource, lock,
+                        new MigrationFileLoader(new SimpleStatementParser()), new MetricRegistry());
+                runners.add(executor.submit(() -> migration.migrate()));
+            }
+
+            for (final Future<?> runner : runners) {
+                runner.get();
+            }
+
+            assertThat(inMemorySchema.getSchemaChanges().size(), is(25));
+            assertThat(metadata.getMigrations().size(), is(3));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMigrateRereadsSummaryAfterWaitingForLock() {
+        final List<Migration> fileMigrations = new MigrationFileLoader(new SimpleStatementParser())
+                .load(getTestMigrations());
+        final AtomicReference<MigrationSummary> stored = new AtomicReference<>();
+        // Another runner applies every file while this one waits for the lock.
+        final MigrationLock lock = () -> {
+            stored.set(new MigrationSummary(
+                    MigrationFingerprint.of(fileMigrations), "v003_killrvideo_edge_labels.gremlin", "", ""));
+            return MigrationLock.Lease.UNSHARED;
+        };
+        schemaMigration = new SchemaMigration(new Profile(), schema,
+                new GraphMigrationMetadata(metadataSchema(stored, Collections.emptyList())),
+                migrationSource, lock, new MigrationFileLoader(new SimpleStatementParser()), new MetricRegistry());
+
+        schemaMigration.migrate(fileMigrations);
+
+        verify(schema, never()).create(any());
+        verify(schema, never()).execute(anyString());
+    }
+
+    @Test
+    public void testMigrateWritesMissingSummaryForExistingHistory() {
+        final List<Migration> fileMigrations = new MigrationFileLoader(new SimpleStatementParser())
+                .load(getTestMigrations());
+        final AtomicReference<MigrationSummary> stored = new AtomicReference<>();
+        final Schema<GraphResultSet, GraphStatement> metadataSchema =
+                metadataSchema(stored, getAppliedMigrations());
+        schemaMigration = new SchemaMigration(new Profile(), schema, new GraphMigrationMetadata(metadataSchema),
+                migrationSource);
+
+        // Every file was applied before the summary existed.
+        schemaMigration.migrate(fileMigrations);
+
+        assertThat(stored.get().getFingerprint(), is(MigrationFingerprint.of(fileMigrations)));
+        assertThat(stored.get().getLastFileName(), is("v003_killrvideo_edge_labels.gremlin"));
+        verify(schema, never()).execute(anyString());
+
+        // The next run stops after reading the summary.
+        new SchemaMigration(new Profile(), schema, new GraphMigrationMetadata(metadataSchema), migrationSource)
+                .migrate(fileMigrations);
+
+        verify(schema, times(1)).create(any());
+        verify(metadataSchema, times(1)).execute(argThat(queryContains("project('migrationFilename'")));
+        verify(metadataSchema, times(1)).execute(argThat(queryContains(".property('summaryFingerprint', ")));
+    }
+
+    /**
+     * @return a schema answering the metadata queries of {@link GraphMigrationMetadata}: schema checks find the vertex
+     * labels, the summary query returns {@code stored}, saving the summary sets it, and the migration query returns
+     * {@code records}.
+     */
+    @SuppressWarnings("unchecked")
+    private static Schema<GraphResultSet, GraphStatement> metadataSchema(
+            final AtomicReference<MigrationSummary> stored,
+            final List<Migration> records) {
+        final Schema<GraphResultSet, GraphStatement> metadataSchema = mock(Schema.class);
+        when(metadataSchema.execute(any(GraphStatement.class))).thenAnswer(invocation -> {
+            final String query = ((SimpleGraphStatement) invocation.getArguments()[0]).getQueryString();
+            final GraphResultSet resultSet = mock(GraphResultSet.class);
+            when(resultSet.iterator()).thenReturn(Collections.emptyIterator());
+            if (query.endsWith(".exists()")) {
+                final GraphNode exists = mock(GraphNode.class);
+                when(exists.asBoolean()).thenReturn(true);
+                when(resultSet.one()).thenReturn(exists);
+            } else if (query.contains("project('summaryFingerprint'") && stored.get() != null) {
+                final GraphNode node = mock(GraphNode.class);
+                stubString(node, "summaryFingerprint", stored.get().getFingerprint());
+                stubString(node, "summaryLastFilename", stored.get().getLastFileName());
+                stubString(node, "summaryCompactedThrough", stored.get().getCompactedThrough());
+                stubString(node, "summaryCompactedFingerprint", stored.get().getCompactedFingerprint());
+                when(resultSet.one()).thenReturn(node);
+            } else if (query.contains(".property('summaryFingerprint', ")) {
+                final Map<String, Object> values =
+                        (Map<String, Object>) Whitebox.getInternalState(invocation.getArguments()[0], "valuesMap");
+                stored.set(new MigrationSummary(
+                        (String) values.get("fingerprint"),
+                        (String) values.get("lastFilename"),
+                        (String) values.get("compactedThrough"),
+                        (String) values.get("compactedFingerprint")));
+            } else if (query.contains("project('migrationFilename'")) {
+                final List<GraphNode> nodes = new ArrayList<>();
+                records.forEach(t -> nodes.add(record(t)));
+                when(resultSet.iterator()).thenReturn(nodes.iterator());
+            }
+            return resultSet;
+        });
+
+        return metadataSchema;
+    }
+
+    private static GraphNode record(final Migration migration) {
+        final GraphNode node = mock(GraphNode.class);
+        stubString(node, "migrationFilename", migration.getFileName());
+        stubString(node, "migrationChecksum", migration.getCheckSum());
+        final GraphNode version = mock(GraphNode.class);
+        when(version.asInt()).thenReturn(Integer.parseInt(migration.getFileName().substring(1, 4)));
+        when(node.get("migrationVersion")).thenReturn(version);
+        final GraphNode appliedAt = mock(GraphNode.class);
+        when(appliedAt.as(Timestamp.class)).thenReturn(Timestamp.from(Instant.now()));
+        when(node.get("migrationAppliedAt")).thenReturn(appliedAt);
+
+        return node;
+    }
+
+    private static ArgumentMatcher<GraphStatement> queryContains(final String text) {
+        return new ArgumentMatcher<GraphStatement>() {
+            @Override
+            public boolean matches(final Object statement) {
+                return ((SimpleGraphStatement) statement).getQueryString().contains(text);
+            }
+        };
+    }
+
+    private static void stubString(final GraphNode node, final String property, final String value) {
+        final GraphNode valueNode = mock(GraphNode.class);
+        when(valueNode.asString()).thenReturn(value);
+        when(node.get(property)).thenReturn(valueNode);
+    }
+
+    @Test
+    public void testMigrateStopsWhenLeaseIsLost() {
+        when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
+        final AtomicBoolean held = new AtomicBoolean(true);
+        final MigrationLock lock = () -> new MigrationLock.Lease() {
+            @Override
+            public boolean isHeld() {
+                return held.get();
+            }
+
+            @Override
+            public void close() {
+                held.set(false);
+            }
+        };
+        doAnswer(invocation -> {
+            held.set(false);
+            return null;
+        }).when(migrationMetadata).saveMigration(any());
+        schemaMigration = new SchemaMigration(new Profile(), schema, migrationMetadata, migrationSource, lock,
+                new MigrationFileLoader(new SimpleStatementParser()), new MetricRegistry());
+
+        try {
+            schemaMigration.migrate();
+            fail("Expected the migration to stop once the lease was lost.");
+        } catch (final IllegalStateException e) {
+            verify(migrationMetadata, times(1)).saveMigration(any());
+        }
+    }
+
+    @Test
+    public void testMigrateStopsWithinFileWhenLeaseExpires() {
+        when(migrationSource.getMigrations()).thenReturn(getTestMigrations());
+        final AtomicInteger executed = new AtomicInteger();
+        final MigrationLock lock = () -> new MigrationLock.Lease() {
+            @Override
+            public boolean isHeld() {
+                // The TTL expires once 5 statements of the first file have been sent.
+                return executed.get() < 5;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        doAnswer(invocation -> {
+            executed.incrementAndGet();
+            return null;
+        }).when(schema).execute(anyString());
+        schemaMigration = new SchemaMigration(new Profile(), schema, migrationMetadata, migrationSource, lock,
+                new MigrationFileLoader(new SimpleStatementParser()), new MetricRegistry());
+
+        try {
+            schemaMigration.migrate();
+            fail("Expected the migration to stop once the lease expired.");
+        } catch (final IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("statement # 6"));
+        }
+
+        verify(schema, times(5)).execute(anyString());
+        verify(migrationMetadata, never()).saveMigration(any());
+    }
+
+    private File getDataMigration() {
+        // Contains 5 data statements and 1 schema statement
+        return new File(SchemaMigrationTest.class.getResource("v006_killrvideo_data.gremlin").getFile());
+    }
+
     private List<File> getTestMigrations() {
         return Arrays.asList(
                 // Contains 13 statements
@@ -0,0 +1,18 @@
+package omahoco.migrate.cli;
+
+import org.junit.Test;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CliMessagesTest {
+    @Test
+    public void testMessageNamesOption() {
+        final CmdLineException e = new CmdLineException(
+                new CmdLineParser(new Object()), CliMessages.REQUIRED_OPTION_WITHOUT_CLUSTERS, "-H");
+
+        assertThat(e.getMessage(), is("Option \"-H\" is required unless the configuration lists clusters"));
+    }
+}
@@ -2,8 +2,11 @@ package omahoco.migrate.config;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.hamcrest.CoreMatchers.hasItems;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class ConfigTest {
@@ -21,4 +24,35 @@ public class ConfigTest {
                 is("{'class' : 'SimpleStrategy', 'replication_factor' : 1 }"));
         assertThat(profile.getOptions().get("graph.allow_scan"), is("true"));
     }
+
+    @Test
+    public void testParseClusters() {
+        final Config config = YamlConfig.load(ConfigTest.class.getResourceAsStream("graph-migrate.yaml"));
+
+        assertThat(config.getClusters().keySet(), hasItems("staging", "production"));
+        assertThat(config.getClusters().get("staging").getHosts(), is(Arrays.asList("10.0.0.1", "10.0.0.2")));
+        assertThat(config.getClusters().get("staging").getPort(), is(9042));
+        assertThat(config.getClusters().get("production").getPort(), is(9142));
+        assertThat(config.getClusters().get("production").isSsl(), is(true));
+        assertThat(config.getClusters().get("production").getProfile(), is("prod"));
+        assertThat(config.getRollout().getFailurePolicy(), is(RolloutConfig.FailurePolicy.CONTINUE));
+    }
+
+    @Test
+    public void testParseDriver() {
+        final Config config = YamlConfig.load(ConfigTest.class.getResourceAsStream("graph-migrate.yaml"));
+
+        final DriverConfig driver = config.getProfiles().get("prod").getDriver();
+        assertThat(driver.getCompression(), is(DriverConfig.Compression.LZ4));
+        assertThat(driver.getPooling().getCoreConnectionsPerHost(), is(2));
+        assertThat(driver.getPooling().getMaxQueueSize(), is(nullValue()));
+        assertThat(driver.getLoadBalancing().getLocalDc(), is("dc1"));
+        assertThat(driver.getLoadBalancing().isTokenAware(), is(true));
+        assertThat(driver.getSocket().getConnectTimeoutMillis(), is(10000));
+        assertThat(driver.getGraph().getWriteConsistency(), is("LOCAL_QUORUM"));
+
+        final DriverConfig defaults = config.getProfiles().get("local").getDriver();
+        assertThat(defaults.getCompression(), is(DriverConfig.Compression.NONE));
+        assertThat(defaults.getGraph().getReadTimeoutMillis(), is(nullValue()));
+    }
 }
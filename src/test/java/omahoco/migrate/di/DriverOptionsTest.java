@@ -0,0 +1,72 @@
+package omahoco.migrate.di;
+
+import omahoco.migrate.config.DriverConfig;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.ProtocolOptions;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.datastax.driver.dse.DseCluster;
+import com.datastax.driver.dse.DseConfiguration;
+import com.datastax.driver.dse.DseLoadBalancingPolicy;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DriverOptionsTest {
+    @Test
+    public void testApply() {
+        final DriverConfig config = new DriverConfig();
+        config.setCompression(DriverConfig.Compression.LZ4);
+        config.getPooling().setCoreConnectionsPerHost(2);
+        config.getPooling().setMaxConnectionsPerHost(4);
+        config.getPooling().setMaxRequestsPerConnection(2048);
+        config.getPooling().setPoolTimeoutMillis(500);
+        config.getLoadBalancing().setLocalDc("dc1");
+        config.getSocket().setConnectTimeoutMillis(10000);
+        config.getSocket().setTcpNoDelay(false);
+        config.getGraph().setReadTimeoutMillis(120000);
+        config.getGraph().setWriteConsistency("local_quorum");
+
+        final DseConfiguration configuration =
+                DriverOptions.apply(DseCluster.builder().addContactPoint("127.0.0.1"), config).getConfiguration();
+
+        assertThat(configuration.getProtocolOptions().getCompression(), is(ProtocolOptions.Compression.LZ4));
+        assertThat(configuration.getPoolingOptions().getCoreConnectionsPerHost(HostDistance.LOCAL), is(2));
+        assertThat(configuration.getPoolingOptions().getMaxConnectionsPerHost(HostDistance.LOCAL), is(4));
+        assertThat(configuration.getPoolingOptions().getMaxRequestsPerConnection(HostDistance.LOCAL), is(2048));
+        assertThat(configuration.getPoolingOptions().getPoolTimeoutMillis(), is(500));
+        assertThat(configuration.getSocketOptions().getConnectTimeoutMillis(), is(10000));
+        assertThat(configuration.getSocketOptions().getTcpNoDelay(), is(false));
+        assertThat(configuration.getGraphOptions().getReadTimeoutMillis(), is(120000));
+        assertThat(configuration.getGraphOptions().getGraphWriteConsistencyLevel(), is(ConsistencyLevel.LOCAL_QUORUM));
+
+        final DseLoadBalancingPolicy policy =
+                (DseLoadBalancingPolicy) configuration.getPolicies().getLoadBalancingPolicy();
+        assertThat(policy.getChildPolicy(), instanceOf(TokenAwarePolicy.class));
+    }
+
+    @Test
+    public void testApplyWithoutTokenAwareness() {
+        final DriverConfig config = new DriverConfig();
+        config.getLoadBalancing().setTokenAware(false);
+
+        final DseConfiguration configuration =
+                DriverOptions.apply(DseCluster.builder().addContactPoint("127.0.0.1"), config).getConfiguration();
+
+        final DseLoadBalancingPolicy policy =
+                (DseLoadBalancingPolicy) configuration.getPolicies().getLoadBalancingPolicy();
+        assertThat(policy.getChildPolicy(), instanceOf(DCAwareRoundRobinPolicy.class));
+        assertThat(configuration.getProtocolOptions().getCompression(), is(ProtocolOptions.Compression.NONE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApplyUnknownConsistencyLevel() {
+        final DriverConfig config = new DriverConfig();
+        config.getGraph().setReadConsistency("MOST");
+
+        DriverOptions.apply(DseCluster.builder(), config);
+    }
+}
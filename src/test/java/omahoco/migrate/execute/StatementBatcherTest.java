@@ -0,0 +1,109 @@
+package omahoco.migrate.execute;
+
+import omahoco.migrate.graph.GraphSchema;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StatementBatcherTest {
+    private static final List<String> STATEMENTS = Arrays.asList(
+            "graph.addVertex(label, 'a');",
+            "graph.addVertex(label, 'b');",
+            "graph.addVertex(label, 'c');",
+            "schema.propertyKey('name').Text().create();",
+            "graph.addVertex(label, 'd');");
+
+    @Test
+    public void testBatchSizeOneKeepsStatementsSeparate() {
+        final List<StatementBatch> batches = batch(new StatementBatcher(1, Integer.MAX_VALUE,
+                GraphSchema::isSchemaChange));
+
+        assertThat(batches.size(), is(5));
+        assertThat(batches.get(3).getScript(), is(STATEMENTS.get(3)));
+        assertThat(batches.get(3).getFirstIndex(), is(3));
+    }
+
+    @Test
+    public void testSchemaStatementsBreakBatches() {
+        final List<StatementBatch> batches = batch(new StatementBatcher(100, Integer.MAX_VALUE,
+                GraphSchema::isSchemaChange));
+
+        assertThat(batches.size(), is(3));
+        assertThat(batches.get(0).size(), is(3));
+        assertThat(batches.get(0).isSchemaChange(), is(false));
+        assertThat(batches.get(0).getScript(),
+                is("graph.addVertex(label, 'a');\ngraph.addVertex(label, 'b');\ngraph.addVertex(label, 'c');"));
+        assertThat(batches.get(1).isSchemaChange(), is(true));
+        assertThat(batches.get(2).getFirstIndex(), is(4));
+    }
+
+    @Test
+    public void testRowsBatchedAsParameter() {
+        final List<Map<String, Object>> rows = Arrays.asList(
+                Collections.singletonMap("name", "a"),
+                Collections.singletonMap("name", "b"),
+                Collections.singletonMap("name", "c"));
+        final List<StatementBatch> batches = Lists.newArrayList(
+                new StatementBatcher(2, 1, GraphSchema::isSchemaChange)
+                        .batchRows("graph.addVertex(label, 'a', 'name', row.name)", rows.iterator(), 10));
+
+        assertThat(batches.size(), is(2));
+        assertThat(batches.get(0).getScript(),
+                is("for (row in rows) {\ngraph.addVertex(label, 'a', 'name', row.name)\n}"));
+        assertThat(batches.get(0).getParameters(), is(Collections.singletonMap("rows", rows.subList(0, 2))));
+        assertThat(batches.get(1).getFirstIndex(), is(12));
+        assertThat(batches.get(0).split().get(1).getRows(), is(rows.subList(1, 2)));
+    }
+
+    @Test
+    public void testBatchSizeLimit() {
+        final List<StatementBatch> batches = batch(new StatementBatcher(2, Integer.MAX_VALUE,
+                GraphSchema::isSchemaChange));
+
+        assertThat(batches.size(), is(4));
+        assertThat(batches.get(0).size(), is(2));
+        assertThat(batches.get(1).size(), is(1));
+        assertThat(batches.get(1).getFirstIndex(), is(2));
+    }
+
+    @Test
+    public void testBatchBytesLimit() {
+        // Room for two statements and a separator, but not three.
+        final int maxBytes = STATEMENTS.get(0).length() * 2 + 1;
+        final List<StatementBatch> batches = batch(new StatementBatcher(100, maxBytes,
+                GraphSchema::isSchemaChange));
+
+        assertThat(batches.size(), is(4));
+        assertThat(batches.get(0).size(), is(2));
+        assertThat(batches.get(1).size(), is(1));
+    }
+
+    @Test
+    public void testMergeSchemaStatements() {
+        final List<String> statements = Arrays.asList(
+                "schema.propertyKey('name').Text().create();",
+                "schema.propertyKey('age').Int().create();",
+                "graph.addVertex(label, 'a');",
+                "schema.vertexLabel('person').create();");
+        final List<StatementBatch> batches = Lists.newArrayList(
+                new StatementBatcher(100, Integer.MAX_VALUE, true, GraphSchema::isSchemaChange)
+                        .batch(statements.iterator()));
+
+        assertThat(batches.size(), is(3));
+        assertThat(batches.get(0).isSchemaChange(), is(true));
+        assertThat(batches.get(0).size(), is(2));
+        assertThat(batches.get(1).isSchemaChange(), is(false));
+        assertThat(batches.get(2).isSchemaChange(), is(true));
+    }
+
+    private static List<StatementBatch> batch(final StatementBatcher batcher) {
+        return Lists.newArrayList(batcher.batch(STATEMENTS.iterator()));
+    }
+}
@@ -0,0 +1,178 @@
+package omahoco.migrate.execute;
+
+import omahoco.migrate.config.ExecutionConfig;
+import omahoco.migrate.graph.GraphSchema;
+import omahoco.migrate.graph.Schema;
+import com.datastax.driver.dse.graph.GraphResultSet;
+import com.datastax.driver.dse.graph.GraphStatement;
+import com.datastax.driver.dse.graph.SimpleGraphStatement;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StatementExecutorTest {
+    private static final List<String> STATEMENTS = Arrays.asList(
+            "graph.addVertex('name', 'a');",
+            "graph.addVertex('name', 'b');",
+            "schema.propertyKey('name').Text().create();",
+            "graph.addVertex('name', 'c');",
+            "graph.addVertex('name', 'd');",
+            "graph.addVertex('name', 'e');");
+
+    @Mock
+    private Schema<GraphResultSet, GraphStatement> schema;
+    @Mock
+    private GraphResultSet graphResultSet;
+
+    private final ListeningScheduledExecutorService scheduler =
+            MoreExecutors.listeningDecorator(Executors.newSingleThreadScheduledExecutor());
+
+    @After
+    public void after() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testSchemaStatementsAreExecutedSynchronously() {
+        when(schema.executeAsync(any())).thenReturn(Futures.immediateFuture(graphResultSet));
+
+        final int executed = executor(4, false).execute(batches(1));
+
+        assertThat(executed, is(6));
+        verify(schema).execute(anyString());
+        verify(schema, times(5)).executeAsync(any());
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedIndividually() {
+        when(schema.executeAsync(any()))
+                .thenReturn(Futures.immediateFailedFuture(new IllegalStateException("Batch failed")))
+                .thenReturn(Futures.immediateFuture(graphResultSet));
+        doThrow(new IllegalStateException("Statement failed")).when(schema).execute("graph.addVertex('name', 'b');");
+
+        final int executed = executor(4, false).execute(batches(2));
+
+        // The first batch fails, 'a' succeeds on retry and 'b' fails again.
+        assertThat(executed, is(5));
+        verify(schema).execute("graph.addVertex('name', 'a');");
+        verify(schema).execute("graph.addVertex('name', 'b');");
+    }
+
+    @Test
+    public void testInFlightRequestsAreBounded() {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        when(schema.executeAsync(any())).then(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            final ListenableFuture<GraphResultSet> future = scheduler.schedule(() -> {
+                inFlight.decrementAndGet();
+                return graphResultSet;
+            }, 5, TimeUnit.MILLISECONDS);
+
+            return future;
+        });
+
+        final int executed = executor(2, false).execute(batches(1));
+
+        assertThat(executed, is(6));
+        assertThat(maxInFlight.get(), lessThanOrEqualTo(2));
+    }
+
+    @Test
+    public void testDeferredSchemaAgreement() {
+        when(schema.executeAsync(any())).thenReturn(Futures.immediateFuture(graphResultSet));
+
+        final int executed = executor(1, true).execute(batches(1));
+
+        assertThat(executed, is(6));
+        verify(schema).executeDeferred("schema.propertyKey('name').Text().create();");
+        verify(schema, times(5)).execute(anyString());
+        verify(schema).awaitSchemaAgreement();
+    }
+
+    @Test
+    public void testParameterizedLiterals() {
+        when(schema.executeAsync(any())).thenReturn(Futures.immediateFuture(graphResultSet));
+        final ExecutionConfig config = new ExecutionConfig();
+        config.setMaxInFlight(4);
+        config.setParameterizeLiterals(true);
+
+        new StatementExecutor(schema, config).execute(batches(1));
+
+        final ArgumentCaptor<GraphStatement> statements = ArgumentCaptor.forClass(GraphStatement.class);
+        verify(schema, times(5)).executeAsync(statements.capture());
+        for (final GraphStatement statement : statements.getAllValues()) {
+            assertThat(((SimpleGraphStatement) statement).getQueryString(), is("graph.addVertex('name', _lit0);"));
+        }
+        verify(schema).execute("schema.propertyKey('name').Text().create();");
+    }
+
+    @Test
+    public void testCheckpointsAtInterval() {
+        final ExecutionConfig config = new ExecutionConfig();
+        config.setCheckpointInterval(2);
+        final List<Integer> checkpoints = new ArrayList<>();
+
+        new StatementExecutor(schema, config).execute(batches(1), checkpoints::add);
+
+        assertThat(checkpoints, is(Arrays.asList(2, 4, 6)));
+    }
+
+    @Test
+    public void testCheckpointWaitsForEarlierBatches() {
+        final ListenableFuture<GraphResultSet> slow =
+                scheduler.schedule(() -> graphResultSet, 20, TimeUnit.MILLISECONDS);
+        when(schema.executeAsync(any()))
+                .thenReturn(slow)
+                .thenReturn(Futures.immediateFuture(graphResultSet));
+        final ExecutionConfig config = new ExecutionConfig();
+        config.setMaxInFlight(4);
+        config.setCheckpointInterval(2);
+        final List<Integer> checkpoints = new ArrayList<>();
+
+        new StatementExecutor(schema, config).execute(batches(1), checkpoints::add);
+
+        // 'b' completes before 'a', nothing is checkpointed until 'a' completes at the schema barrier.
+        assertThat(checkpoints, is(Arrays.asList(3, 5)));
+    }
+
+    private StatementExecutor executor(final int maxInFlight, final boolean deferSchemaAgreement) {
+        final ExecutionConfig config = new ExecutionConfig();
+        config.setMaxInFlight(maxInFlight);
+        config.setDeferSchemaAgreement(deferSchemaAgreement);
+
+        return new StatementExecutor(schema, config);
+    }
+
+    private static Iterator<StatementBatch> batches(final int batchSize) {
+        return new StatementBatcher(batchSize, Integer.MAX_VALUE, GraphSchema::isSchemaChange)
+                .batch(STATEMENTS.iterator());
+    }
+}
@@ -0,0 +1,84 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.Migration;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class ContentStorageTest {
+    private static final List<String> STATEMENTS = Arrays.asList(
+            "graph.addVertex(label, 'a', 'text', 'é');",
+            "graph.addVertex(label, 'b', 'text', 'b');");
+
+    @Test
+    public void testFullRoundTrip() {
+        final String stored = ContentStorage.FULL.store(migration(), ContentStorage.UNLIMITED).get();
+
+        assertThat(stored, is(String.join(System.lineSeparator(), STATEMENTS)));
+        assertThat(ContentStorage.FULL.load("v001_a.gremlin", stored).collect(Collectors.toList()), is(STATEMENTS));
+    }
+
+    @Test
+    public void testGzipRoundTrip() {
+        final String stored = ContentStorage.GZIP.store(migration(), ContentStorage.UNLIMITED).get();
+
+        assertThat(stored.contains("graph.addVertex"), is(false));
+        assertThat(ContentStorage.GZIP.load("v001_a.gremlin", stored).collect(Collectors.toList()), is(STATEMENTS));
+    }
+
+    @Test
+    public void testStopsAtMaxLength() {
+        final AtomicInteger read = new AtomicInteger();
+        final Migration migration = new Migration("v001_a.gremlin", "aaaa");
+        migration.setStatementSource(() -> Stream.generate(() -> "graph.addVertex(label, 'a');")
+                .peek(statement -> read.incrementAndGet()));
+
+        assertThat(ContentStorage.FULL.store(migration, 100), is(Optional.empty()));
+        assertThat(read.get(), lessThan(10));
+        read.set(0);
+        assertThat(ContentStorage.GZIP.store(migration, 100), is(Optional.empty()));
+        assertThat(read.get(), lessThan(10));
+        assertThat(ContentStorage.FULL.store(migration(), 100).isPresent(), is(true));
+        assertThat(ContentStorage.FULL.store(migration(), 10), is(Optional.empty()));
+    }
+
+    @Test
+    public void testUnlimitedStoresEverything() {
+        final Migration migration = new Migration("v001_a.gremlin", "aaaa");
+        migration.setStatementSource(() -> Stream.generate(() -> "graph.addVertex(label, 'a');").limit(100000));
+
+        final String stored = ContentStorage.FULL.store(migration, ContentStorage.UNLIMITED).get();
+
+        assertThat(ContentStorage.FULL.load("v001_a.gremlin", stored).count(), is(100000L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testChecksumOnlyCannotBeLoaded() {
+        final String stored = ContentStorage.CHECKSUM.store(migration(), ContentStorage.UNLIMITED).get();
+
+        assertThat(stored, is(""));
+        ContentStorage.CHECKSUM.load("v001_a.gremlin", stored);
+    }
+
+    @Test
+    public void testFromFormat() {
+        assertThat(ContentStorage.fromFormat(null), is(ContentStorage.FULL));
+        assertThat(ContentStorage.fromFormat("gzip"), is(ContentStorage.GZIP));
+        assertThat(ContentStorage.fromFormat("checksum"), is(ContentStorage.CHECKSUM));
+    }
+
+    private static Migration migration() {
+        final Migration migration = new Migration("v001_a.gremlin", "aaaa");
+        migration.setStatements(STATEMENTS);
+        return migration;
+    }
+}
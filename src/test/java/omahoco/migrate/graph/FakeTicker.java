@@ -0,0 +1,19 @@
+package omahoco.migrate.graph;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+
+final class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+        return nanos;
+    }
+
+    Void advance(final long millis) {
+        nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        return null;
+    }
+}
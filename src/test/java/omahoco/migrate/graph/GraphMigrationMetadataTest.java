@@ -0,0 +1,259 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.Migration;
+import omahoco.migrate.MigrationFingerprint;
+import omahoco.migrate.MigrationSummary;
+import com.datastax.driver.dse.graph.GraphNode;
+import com.datastax.driver.dse.graph.GraphResultSet;
+import com.datastax.driver.dse.graph.GraphStatement;
+import com.datastax.driver.dse.graph.SimpleGraphStatement;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.internal.util.reflection.Whitebox;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GraphMigrationMetadataTest {
+    @Mock
+    private Schema<GraphResultSet, GraphStatement> schema;
+    @Mock
+    private GraphResultSet migrations;
+    @Mock
+    private GraphResultSet contents;
+    @Mock
+    private GraphNode contentsNode;
+    private final AtomicReference<MigrationSummary> storedSummary = new AtomicReference<>();
+    private GraphMigrationMetadata metadata;
+
+    @Before
+    public void before() {
+        final List<GraphNode> nodes = Arrays.asList(
+                migration("v002_b.gremlin", 2, "bbbb"),
+                migration("v001_a.gremlin", 1, "aaaa"));
+        when(migrations.iterator()).thenReturn(nodes.iterator());
+        stubValue(contentsNode, "migrationContents", String.join(System.lineSeparator(), "a();", "b();"));
+        when(contents.one()).thenReturn(contentsNode);
+        when(schema.execute(any(GraphStatement.class))).thenReturn(migrations, contents);
+
+        metadata = new GraphMigrationMetadata(schema);
+    }
+
+    @Test
+    public void testGetMigrationsFetchesOnlySmallProperties() {
+        final List<Migration> actual = metadata.getMigrations();
+
+        assertThat(actual.size(), is(2));
+        assertThat(actual.get(0).getFileName(), is("v001_a.gremlin"));
+        assertThat(actual.get(0).getVersion(), is(1));
+        assertThat(actual.get(0).getCheckSum(), is("aaaa"));
+        assertThat(actual.get(1).getFileName(), is("v002_b.gremlin"));
+
+        final ArgumentCaptor<GraphStatement> statement = ArgumentCaptor.forClass(GraphStatement.class);
+        verify(schema).execute(statement.capture());
+        assertThat(((SimpleGraphStatement) statement.getValue()).getQueryString(),
+                not(containsString("migrationContents")));
+        verify(migrations, never()).all();
+    }
+
+    @Test
+    public void testContentsFetchedWhenStatementsStreamed() {
+        final Migration migration = metadata.getMigrations().get(0);
+        verify(schema, times(1)).execute(any(GraphStatement.class));
+
+        try (Stream<String> statements = migration.streamStatements()) {
+            assertThat(statements.collect(Collectors.toList()), is(Arrays.asList("a();", "b();")));
+        }
+        verify(schema, times(2)).execute(any(GraphStatement.class));
+    }
+
+    @Test
+    public void testSaveMigrationRollsSummary() {
+        final MigrationSummary previous = new MigrationSummary("abcd", "v001_a.gremlin", "", "");
+        stubQueries(previous);
+        final Migration migration = new Migration("v002_b.gremlin", "bbbb");
+        migration.setStatements(Arrays.asList("b();"));
+
+        metadata.saveMigration(migration);
+
+        assertThat(metadata.getSummary().get().getFingerprint(), is(MigrationFingerprint.roll("abcd", migration)));
+        assertThat(metadata.getSummary().get().getLastFileName(), is("v002_b.gremlin"));
+    }
+
+    @Test
+    public void testSaveMigrationOutOfOrderRebuildsSummary() {
+        final MigrationSummary previous = new MigrationSummary("abcd", "v003_c.gremlin", "", "");
+        stubQueries(previous);
+        final Migration migration = new Migration("v001_a.gremlin", "aaaa");
+        migration.setStatements(Arrays.asList("a();"));
+
+        metadata.saveMigration(migration);
+
+        final Migration applied = new Migration("v002_b.gremlin", "bbbb");
+        assertThat(metadata.getSummary().get().getFingerprint(),
+                is(MigrationFingerprint.of(Arrays.asList(applied, migration))));
+        assertThat(metadata.getSummary().get().getLastFileName(), is("v002_b.gremlin"));
+    }
+
+    @Test
+    public void testGetSummaryReadsChangesOfOtherRunners() {
+        final MigrationSummary previous = new MigrationSummary("abcd", "v001_a.gremlin", "", "");
+        stubQueries(previous);
+        assertThat(metadata.getSummary().get().getFingerprint(), is("abcd"));
+
+        // Another runner applies v002_b.gremlin.
+        storedSummary.set(new MigrationSummary("bcde", "v002_b.gremlin", "", ""));
+        assertThat(metadata.getSummary().get().getFingerprint(), is("bcde"));
+
+        final Migration migration = new Migration("v003_c.gremlin", "cccc");
+        migration.setStatements(Arrays.asList("c();"));
+        metadata.saveMigration(migration);
+
+        assertThat(metadata.getSummary().get().getFingerprint(), is(MigrationFingerprint.roll("bcde", migration)));
+    }
+
+    @Test
+    public void testCompactFoldsPrefixOfHistory() {
+        final MigrationSummary previous = new MigrationSummary("abcd", "v002_b.gremlin", "", "");
+        stubQueries(previous);
+
+        assertThat(metadata.compact(1), is(1));
+
+        final MigrationSummary compacted = metadata.getSummary().get();
+        assertThat(compacted.getFingerprint(), is("abcd"));
+        assertThat(compacted.getCompactedThrough(), is("v001_a.gremlin"));
+        assertThat(compacted.getCompactedFingerprint(),
+                is(MigrationFingerprint.of(Arrays.asList(new Migration("v001_a.gremlin", "aaaa")))));
+        verify(schema, times(1)).execute(argThat(queryContains(".drop()")));
+    }
+
+    @Test
+    public void testGzippedContentsReadBack() {
+        final Migration saved = new Migration("v001_a.gremlin", "aaaa");
+        saved.setStatements(Arrays.asList("a();", "b();"));
+        stubValue(contentsNode, "migrationContents", ContentStorage.GZIP.store(saved, ContentStorage.UNLIMITED).get());
+        stubValue(contentsNode, "migrationContentsFormat", "gzip");
+
+        try (Stream<String> statements = metadata.getMigrations().get(0).streamStatements()) {
+            assertThat(statements.collect(Collectors.toList()), is(Arrays.asList("a();", "b();")));
+        }
+    }
+
+    /**
+     * Answers each query by its text: schema checks find the vertex labels, the summary query returns the summary
+     * last saved, starting with {@code summary}, the migration query returns v002_b.gremlin and v001_a.gremlin.
+     */
+    private void stubQueries(final MigrationSummary summary) {
+        final GraphNode exists = mock(GraphNode.class);
+        when(exists.asBoolean()).thenReturn(true);
+        storedSummary.set(summary);
+        final List<GraphNode> nodes = Arrays.asList(
+                migration("v002_b.gremlin", 2, "bbbb"),
+                migration("v001_a.gremlin", 1, "aaaa"));
+
+        when(schema.execute(any(GraphStatement.class))).thenAnswer(invocation -> {
+            final String query = ((SimpleGraphStatement) invocation.getArguments()[0]).getQueryString();
+            final GraphResultSet resultSet = mock(GraphResultSet.class);
+
+            if (query.endsWith(".exists()")) {
+                when(resultSet.one()).thenReturn(exists);
+            } else if (query.contains("project('summaryFingerprint'")) {
+                final GraphNode summaryNode = summary(storedSummary.get());
+                when(resultSet.one()).thenReturn(summaryNode);
+            } else if (query.contains(".property('summaryFingerprint', fingerprint)")) {
+                storedSummary.set(savedSummary(invocation.getArguments()[0]));
+            } else if (query.contains("project('migrationFilename'")) {
+                when(resultSet.iterator()).thenReturn(nodes.iterator());
+            }
+
+            return resultSet;
+        });
+    }
+
+    private static ArgumentMatcher<GraphStatement> queryContains(final String text) {
+        return new ArgumentMatcher<GraphStatement>() {
+            @Override
+            public boolean matches(final Object statement) {
+                return ((SimpleGraphStatement) statement).getQueryString().contains(text);
+            }
+        };
+    }
+
+    /**
+     * @return the summary a save statement writes, read from the statement's parameters, which it has no getter for.
+     */
+    private static MigrationSummary savedSummary(final Object statement) {
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> values = (Map<String, Object>) Whitebox.getInternalState(statement, "valuesMap");
+        return new MigrationSummary(
+                (String) values.get("fingerprint"),
+                (String) values.get("lastFilename"),
+                (String) values.get("compactedThrough"),
+                (String) values.get("compactedFingerprint"));
+    }
+
+    private GraphNode summary(final MigrationSummary summary) {
+        final GraphNode node = mock(GraphNode.class);
+        stubString(node, "summaryFingerprint", summary.getFingerprint());
+        stubString(node, "summaryLastFilename", summary.getLastFileName());
+        stubString(node, "summaryCompactedThrough", summary.getCompactedThrough());
+        stubString(node, "summaryCompactedFingerprint", summary.getCompactedFingerprint());
+
+        return node;
+    }
+
+    private static void stubString(final GraphNode node, final String property, final String value) {
+        final GraphNode valueNode = mock(GraphNode.class);
+        when(valueNode.asString()).thenReturn(value);
+        when(node.get(property)).thenReturn(valueNode);
+    }
+
+    /**
+     * Stubs a property of a {@code valueMap()} result, where each value is a list.
+     */
+    private static void stubValue(final GraphNode node, final String property, final String value) {
+        final GraphNode listNode = mock(GraphNode.class);
+        final GraphNode valueNode = mock(GraphNode.class);
+        when(valueNode.asString()).thenReturn(value);
+        when(listNode.get(0)).thenReturn(valueNode);
+        when(node.get(property)).thenReturn(listNode);
+    }
+
+    private GraphNode migration(final String fileName, final int version, final String checkSum) {
+        final GraphNode node = mock(GraphNode.class);
+        final GraphNode fileNameNode = mock(GraphNode.class);
+        final GraphNode versionNode = mock(GraphNode.class);
+        final GraphNode checkSumNode = mock(GraphNode.class);
+        final GraphNode appliedAtNode = mock(GraphNode.class);
+
+        when(fileNameNode.asString()).thenReturn(fileName);
+        when(versionNode.asInt()).thenReturn(version);
+        when(checkSumNode.asString()).thenReturn(checkSum);
+        when(appliedAtNode.as(Timestamp.class)).thenReturn(Timestamp.from(Instant.now()));
+        when(node.get("migrationFilename")).thenReturn(fileNameNode);
+        when(node.get("migrationVersion")).thenReturn(versionNode);
+        when(node.get("migrationChecksum")).thenReturn(checkSumNode);
+        when(node.get("migrationAppliedAt")).thenReturn(appliedAtNode);
+
+        return node;
+    }
+}
@@ -1,16 +1,24 @@
 package omahoco.migrate.graph;
 
+import omahoco.migrate.config.ExecutionConfig;
+import omahoco.migrate.config.SchemaAgreementConfig;
 import omahoco.migrate.util.Delayer;
+import com.codahale.metrics.MetricRegistry;
 import com.datastax.driver.core.ExecutionInfo;
 import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.QueryTrace;
 import com.datastax.driver.dse.DseCluster;
 import com.datastax.driver.dse.DseSession;
+import com.datastax.driver.dse.graph.GraphOptions;
 import com.datastax.driver.dse.graph.GraphResultSet;
+import com.datastax.driver.dse.graph.GraphStatement;
 import com.datastax.driver.dse.graph.SimpleGraphStatement;
+import com.google.common.util.concurrent.Futures;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -35,6 +43,7 @@ public class GraphSchemaTest {
     private Metadata metadata;
     @Mock
     private Delayer delayer;
+    private SchemaAgreementWaiter schemaAgreementWaiter;
     private GraphSchema graphSchema;
 
     private final GraphSchema.SchemaInfo schemaInfo = new GraphSchema.SchemaInfo("killrvideo");
@@ -46,7 +55,17 @@ public class GraphSchemaTest {
         when(dseSession.getCluster()).thenReturn(dseCluster);
         when(dseCluster.getMetadata()).thenReturn(metadata);
 
-        graphSchema = new GraphSchema(delayer, schemaInfo, dseSession);
+        final FakeTicker ticker = new FakeTicker();
+        doAnswer(invocation -> ticker.advance((Integer) invocation.getArguments()[0])).when(delayer).delay(anyInt());
+
+        schemaAgreementWaiter = new SchemaAgreementWaiter(
+                dseSession, delayer, new SchemaAgreementConfig(), new MetricRegistry(), ticker);
+        graphSchema = new GraphSchema(
+                schemaAgreementWaiter,
+                schemaInfo,
+                dseSession,
+                new MetricRegistry(),
+                SlowStatementLog.disabled());
     }
 
     @Test
@@ -115,6 +134,68 @@ public class GraphSchemaTest {
         verify(delayer, times(2)).delay(anyInt());
     }
 
+    @Test
+    public void testDeferredSchemaAgreement() {
+        when(dseSession.executeGraph(any(GraphStatement.class))).thenReturn(graphResultSet);
+        when(graphResultSet.getExecutionInfo().isSchemaInAgreement()).thenReturn(false);
+        when(metadata.checkSchemaAgreement()).thenReturn(true);
+
+        graphSchema.executeDeferred("schema.propertyKey('name').Text().create()");
+        graphSchema.executeDeferred("schema.propertyKey('age').Int().create()");
+
+        verify(metadata, never()).checkSchemaAgreement();
+
+        graphSchema.execute("graph.addVertex(label, 'person', 'name', 'Ann')");
+
+        verify(metadata).checkSchemaAgreement();
+
+        graphSchema.awaitSchemaAgreement();
+
+        verify(metadata).checkSchemaAgreement();
+    }
+
+    @Test
+    public void testSchemaChangeDeferredDuringWaitStaysPending() {
+        when(dseSession.executeGraph(any(GraphStatement.class))).thenReturn(graphResultSet);
+        when(graphResultSet.getExecutionInfo().isSchemaInAgreement()).thenReturn(false);
+        doAnswer(invocation -> {
+            graphSchema.executeDeferred("schema.propertyKey('age').Int().create()");
+            return true;
+        }).doReturn(true).when(metadata).checkSchemaAgreement();
+
+        graphSchema.executeDeferred("schema.propertyKey('name').Text().create()");
+        graphSchema.awaitSchemaAgreement();
+
+        verify(metadata).checkSchemaAgreement();
+
+        graphSchema.awaitSchemaAgreement();
+
+        verify(metadata, times(2)).checkSchemaAgreement();
+
+        graphSchema.awaitSchemaAgreement();
+
+        verify(metadata, times(2)).checkSchemaAgreement();
+    }
+
+    @Test
+    public void testSampledStatementsTraced() {
+        final ExecutionConfig config = new ExecutionConfig();
+        config.setTraceSampleRate(1);
+        graphSchema = new GraphSchema(
+                schemaAgreementWaiter, schemaInfo, dseSession, new MetricRegistry(),
+                new SlowStatementLog(config));
+        when(dseSession.executeGraph(any(GraphStatement.class))).thenReturn(graphResultSet);
+        when(executionInfo.getQueryTraceAsync()).thenReturn(Futures.immediateFuture(mock(QueryTrace.class)));
+
+        graphSchema.execute("graph.addVertex(label, 'person', 'name', 'Ann')");
+
+        final ArgumentCaptor<GraphStatement> statement = ArgumentCaptor.forClass(GraphStatement.class);
+        verify(dseSession).executeGraph(statement.capture());
+        Assert.assertThat(statement.getValue().getGraphName(), is("killrvideo"));
+        Assert.assertThat(statement.getValue().unwrap(new GraphOptions()).isTracing(), is(true));
+        verify(executionInfo).getQueryTraceAsync();
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testSchemaAgreementFailed() {
         when(graphResultSet.getExecutionInfo().isSchemaInAgreement()).thenReturn(false);
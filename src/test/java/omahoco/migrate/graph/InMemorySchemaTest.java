@@ -0,0 +1,84 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.config.SimulationConfig;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.dse.graph.GraphResultSet;
+import com.datastax.driver.dse.graph.SimpleGraphStatement;
+import com.google.common.base.Stopwatch;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class InMemorySchemaTest {
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @Test
+    public void testRequestsTakeConfiguredLatency() throws Exception {
+        final SimulationConfig config = new SimulationConfig();
+        config.setLatencyMicros(20_000);
+        config.setJitterMicros(1_000);
+
+        try (InMemorySchema schema = new InMemorySchema(config, metricRegistry)) {
+            final Stopwatch stopwatch = Stopwatch.createStarted();
+            final Future<GraphResultSet> first = schema.executeAsync(new SimpleGraphStatement("graph.addVertex()"));
+            final Future<GraphResultSet> second = schema.executeAsync(new SimpleGraphStatement("graph.addVertex()"));
+            first.get();
+            second.get();
+            schema.execute("schema.propertyKey('name').Text().create()");
+
+            assertThat(stopwatch.elapsed(TimeUnit.MILLISECONDS), greaterThanOrEqualTo(40L));
+            assertThat(schema.getDataRequests(), is(2L));
+            assertThat(schema.getSchemaChanges().size(), is(1));
+            assertThat(metricRegistry.timer("statements.data").getCount(), is(2L));
+        }
+    }
+
+    @Test
+    public void testDeferredSchemaChangesAwaitAgreementOnce() {
+        final SimulationConfig config = new SimulationConfig();
+        config.setSchemaAgreementMillis(10);
+
+        try (InMemorySchema schema = new InMemorySchema(config, metricRegistry)) {
+            schema.executeDeferred("schema.propertyKey('name').Text().create()");
+            schema.executeDeferred("schema.propertyKey('email').Text().create()");
+            schema.execute("graph.addVertex()");
+            schema.awaitSchemaAgreement();
+
+            assertThat(metricRegistry.timer("schemaAgreement.wait").getCount(), is(1L));
+            assertThat(schema.getDataRequests(), is(1L));
+        }
+    }
+
+    @Test
+    public void testInjectedFailures() throws InterruptedException {
+        final SimulationConfig config = new SimulationConfig();
+        config.setFailureRate(1);
+
+        try (InMemorySchema schema = new InMemorySchema(config, metricRegistry)) {
+            try {
+                schema.execute("graph.addVertex()");
+                fail("Expected an injected failure");
+            } catch (final InvalidQueryException e) {
+                assertThat(schema.getDataRequests(), is(0L));
+            }
+
+            try {
+                schema.executeAsync(new SimpleGraphStatement("graph.addVertex()")).get();
+                fail("Expected an injected failure");
+            } catch (final ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(InvalidQueryException.class));
+            }
+
+            assertThat(metricRegistry.counter("statements.failures").getCount(), is(2L));
+        }
+    }
+}
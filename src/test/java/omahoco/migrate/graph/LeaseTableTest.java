@@ -0,0 +1,139 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.MigrationLock;
+import omahoco.migrate.config.LockConfig;
+import omahoco.migrate.util.Delayer;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.dse.DseSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LeaseTableTest {
+    @Mock
+    private DseSession dseSession;
+    @Mock
+    private Delayer delayer;
+    @Mock
+    private ResultSet applied;
+    @Mock
+    private ResultSet notApplied;
+    @Mock
+    private Row holder;
+
+    private final LockConfig config = new LockConfig();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final FakeTicker ticker = new FakeTicker();
+    private LeaseTable leaseTable;
+
+    @Before
+    public void before() {
+        when(applied.wasApplied()).thenReturn(true);
+        when(notApplied.one()).thenReturn(holder);
+        when(holder.getString("owner")).thenReturn("other-runner");
+        doAnswer(invocation -> ticker.advance((Integer) invocation.getArguments()[0])).when(delayer).delay(anyInt());
+
+        config.setKeyspace("graph_migrate");
+        config.setPollMillis(100);
+        leaseTable = new LeaseTable(dseSession, delayer, config, metricRegistry, ticker);
+    }
+
+    @Test
+    public void testAcquireAndRelease() {
+        when(dseSession.execute(any(Statement.class))).thenReturn(applied);
+
+        try (MigrationLock.Lease lease = leaseTable.lock("tenant1").acquire()) {
+            assertThat(lease.isHeld(), is(true));
+        }
+
+        final ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+        verify(dseSession, times(2)).execute(statements.capture());
+        assertThat(((SimpleStatement) statements.getAllValues().get(0)).getQueryString(),
+                containsString("INSERT INTO graph_migrate.migration_lock"));
+        assertThat(((SimpleStatement) statements.getAllValues().get(1)).getQueryString(),
+                containsString("DELETE FROM graph_migrate.migration_lock"));
+        verify(dseSession).execute(startsWith("CREATE TABLE IF NOT EXISTS graph_migrate.migration_lock"));
+        verify(dseSession, never()).execute(startsWith("CREATE KEYSPACE"));
+        verify(delayer, never()).delay(anyInt());
+    }
+
+    @Test
+    public void testAcquireWaitsForHolder() {
+        when(dseSession.execute(any(Statement.class))).thenReturn(notApplied, notApplied, applied);
+
+        try (MigrationLock.Lease lease = leaseTable.acquire("tenant1")) {
+            assertThat(lease.isHeld(), is(true));
+        }
+
+        verify(delayer, times(2)).delay(100);
+        assertThat(metricRegistry.timer("lock.wait").getCount(), is(1L));
+        assertThat(metricRegistry.timer("lock.wait").getSnapshot().getMax(), is(200000000L));
+    }
+
+    @Test
+    public void testAcquireTimesOut() {
+        config.setWaitTimeoutSeconds(1);
+        when(dseSession.execute(any(Statement.class))).thenReturn(notApplied);
+
+        try {
+            leaseTable.acquire("tenant1");
+            fail("Expected waiting for the lock to time out.");
+        } catch (final IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("held by other-runner"));
+            verify(delayer, times(10)).delay(100);
+        }
+    }
+
+    @Test
+    public void testLeaseExpiresWithoutRenewal() {
+        config.setReplication("{'class': 'SimpleStrategy', 'replication_factor': 1}");
+        when(dseSession.execute(any(Statement.class))).thenReturn(applied);
+
+        try (MigrationLock.Lease lease = leaseTable.acquire("tenant1")) {
+            ticker.advance(config.getTtlSeconds() * 1000L);
+
+            assertThat(lease.isHeld(), is(false));
+        }
+
+        verify(dseSession).execute(startsWith("CREATE KEYSPACE IF NOT EXISTS graph_migrate"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeartbeatMustBeShorterThanTtl() {
+        config.setHeartbeatMillis(config.getTtlSeconds() * 1000);
+
+        new LeaseTable(dseSession, delayer, config, metricRegistry, ticker);
+    }
+
+    @Test
+    public void testTableCreatedOnce() {
+        when(dseSession.execute(any(Statement.class))).thenReturn(applied);
+
+        leaseTable.acquire("tenant1").close();
+        leaseTable.acquire("tenant2").close();
+
+        verify(dseSession, times(1)).execute(anyString());
+    }
+}
@@ -0,0 +1,94 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.config.SchemaAgreementConfig;
+import omahoco.migrate.util.Delayer;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.SchemaChangeListener;
+import com.datastax.driver.dse.DseCluster;
+import com.datastax.driver.dse.DseSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SchemaAgreementWaiterTest {
+    @Mock
+    private DseSession dseSession;
+    @Mock
+    private DseCluster dseCluster;
+    @Mock
+    private Metadata metadata;
+    @Mock
+    private Delayer delayer;
+
+    private final SchemaAgreementConfig config = new SchemaAgreementConfig();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private SchemaAgreementWaiter waiter;
+
+    @Before
+    public void before() {
+        when(dseSession.getCluster()).thenReturn(dseCluster);
+        when(dseCluster.getMetadata()).thenReturn(metadata);
+
+        final FakeTicker ticker = new FakeTicker();
+        doAnswer(invocation -> ticker.advance((Integer) invocation.getArguments()[0])).when(delayer).delay(anyInt());
+
+        config.setInitialDelayMillis(5);
+        config.setMaxDelayMillis(20);
+        config.setTimeoutMillis(100);
+        waiter = new SchemaAgreementWaiter(dseSession, delayer, config, metricRegistry, ticker);
+    }
+
+    @Test
+    public void testExponentialBackoff() {
+        when(metadata.checkSchemaAgreement()).thenReturn(false, false, false, false, true);
+
+        waiter.await();
+
+        final InOrder order = inOrder(delayer);
+        order.verify(delayer).delay(5);
+        order.verify(delayer).delay(10);
+        order.verify(delayer, times(2)).delay(20);
+        assertThat(metricRegistry.timer("schemaAgreement.wait").getCount(), is(1L));
+    }
+
+    @Test
+    public void testCloseUnregistersListeners() {
+        waiter.close();
+
+        verify(dseCluster).unregister(any(Host.StateListener.class));
+        verify(dseCluster).unregister(any(SchemaChangeListener.class));
+    }
+
+    @Test
+    public void testDeadline() {
+        when(metadata.checkSchemaAgreement()).thenReturn(false);
+
+        try {
+            waiter.await();
+            fail("Expected schema agreement to time out.");
+        } catch (final IllegalStateException e) {
+            // 5 + 10 + 20 * 4 = 95 ms, leaving 5 ms for the last delay.
+            final InOrder order = inOrder(delayer);
+            order.verify(delayer, times(4)).delay(20);
+            order.verify(delayer).delay(5);
+            assertThat(metricRegistry.counter("schemaAgreement.failures").getCount(), is(1L));
+        }
+    }
+}
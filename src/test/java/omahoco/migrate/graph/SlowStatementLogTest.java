@@ -0,0 +1,85 @@
+package omahoco.migrate.graph;
+
+import omahoco.migrate.config.ExecutionConfig;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.dse.graph.GraphResultSet;
+import com.datastax.driver.dse.graph.GraphStatement;
+import com.datastax.driver.dse.graph.SimpleGraphStatement;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.slf4j.MDC;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SlowStatementLogTest {
+    @Mock
+    private GraphResultSet resultSet;
+    @Mock
+    private ExecutionInfo executionInfo;
+    @Mock
+    private Host host;
+    private final GraphStatement statement = new SimpleGraphStatement("graph.addVertex(label, 'person')");
+
+    @Before
+    public void before() {
+        when(resultSet.getExecutionInfo()).thenReturn(executionInfo);
+        when(executionInfo.getTriedHosts()).thenReturn(Arrays.asList(host, host));
+        when(executionInfo.getQueriedHost()).thenReturn(host);
+    }
+
+    @Test
+    public void testOnlyStatementsOverThresholdLogged() {
+        final ExecutionConfig config = new ExecutionConfig();
+        config.setSlowStatementMillis(100);
+        final SlowStatementLog log = new SlowStatementLog(config);
+
+        assertThat(log.completed("v001_a.gremlin", statement, resultSet, TimeUnit.MILLISECONDS.toNanos(99)),
+                is(false));
+        assertThat(log.completed("v001_a.gremlin", statement, resultSet, TimeUnit.MILLISECONDS.toNanos(100)),
+                is(true));
+        verify(executionInfo, atLeastOnce()).getQueriedHost();
+    }
+
+    @Test
+    public void testDisabledLogsAndTracesNothing() {
+        final SlowStatementLog log = SlowStatementLog.disabled();
+
+        assertThat(log.sample(statement), is(sameInstance(statement)));
+        assertThat(log.completed("v001_a.gremlin", statement, resultSet, TimeUnit.HOURS.toNanos(1)), is(false));
+        verify(executionInfo, never()).getQueryTraceAsync();
+    }
+
+    @Test
+    public void testLocationFromMdc() {
+        final SlowStatementLog log = SlowStatementLog.disabled();
+
+        try (MDC.MDCCloseable migration = MDC.putCloseable(SlowStatementLog.MIGRATION, "v001_a.gremlin")) {
+            assertThat(log.location(), is("v001_a.gremlin"));
+            try (MDC.MDCCloseable statements = MDC.putCloseable(SlowStatementLog.STATEMENTS, "3")) {
+                assertThat(log.location(), is("v001_a.gremlin statement # 3"));
+                try (MDC.MDCCloseable graph = MDC.putCloseable(SlowStatementLog.GRAPH, "tenant1")) {
+                    assertThat(log.location(), is("graph tenant1 v001_a.gremlin statement # 3"));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSampleRateOverOneRejected() {
+        final ExecutionConfig config = new ExecutionConfig();
+        config.setTraceSampleRate(2);
+
+        new SlowStatementLog(config);
+    }
+}
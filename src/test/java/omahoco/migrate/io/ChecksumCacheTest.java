@@ -0,0 +1,96 @@
+package omahoco.migrate.io;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ChecksumCacheTest {
+    private static final long AN_HOUR_AGO = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private Path cacheFile;
+
+    @Before
+    public void before() {
+        cacheFile = new File(folder.getRoot(), "cache/checksums.bin").toPath();
+    }
+
+    @Test
+    public void testUnchangedFileTakenFromCache() throws IOException {
+        final File file = write("v001_a.gremlin", "a();\n", AN_HOUR_AGO);
+        final String checksum = checksum(file);
+
+        final ChecksumCache cache = new ChecksumCache(cacheFile);
+        assertThat(cache.checksum(file.toPath()), is(checksum));
+        cache.save();
+
+        final ChecksumCache reloaded = new ChecksumCache(cacheFile);
+        assertThat(reloaded.checksum(file.toPath()), is(checksum));
+        assertThat(reloaded.getHits(), is(1));
+    }
+
+    @Test
+    public void testChangedFileChecksummedAgain() throws IOException {
+        final File file = write("v001_a.gremlin", "a();\n", AN_HOUR_AGO);
+        final ChecksumCache cache = new ChecksumCache(cacheFile);
+        cache.checksum(file.toPath());
+        cache.save();
+
+        // Same size and modification time, only the change time and contents differ.
+        write("v001_a.gremlin", "b();\n", AN_HOUR_AGO);
+
+        final ChecksumCache reloaded = new ChecksumCache(cacheFile);
+        assertThat(reloaded.checksum(file.toPath()), is(checksum(file)));
+        assertThat(reloaded.getHits(), is(0));
+    }
+
+    @Test
+    public void testRecentlyModifiedFileNotTrusted() throws IOException {
+        final File file = write("v001_a.gremlin", "a();\n", System.currentTimeMillis());
+        final ChecksumCache cache = new ChecksumCache(cacheFile);
+        cache.checksum(file.toPath());
+        cache.save();
+
+        final ChecksumCache reloaded = new ChecksumCache(cacheFile);
+        assertThat(reloaded.checksum(file.toPath()), is(checksum(file)));
+        assertThat(reloaded.getHits(), is(0));
+    }
+
+    @Test
+    public void testUnreadableCacheIgnored() throws IOException {
+        final File file = write("v001_a.gremlin", "a();\n", AN_HOUR_AGO);
+        cacheFile.getParent().toFile().mkdirs();
+        Files.write("not a cache", cacheFile.toFile(), StandardCharsets.UTF_8);
+
+        final ChecksumCache cache = new ChecksumCache(cacheFile);
+        assertThat(cache.checksum(file.toPath()), is(checksum(file)));
+        cache.save();
+
+        assertThat(new ChecksumCache(cacheFile).checksum(file.toPath()), is(checksum(file)));
+    }
+
+    private File write(final String name, final String contents, final long modified) throws IOException {
+        final File file = new File(folder.getRoot(), name);
+        Files.write(contents, file, StandardCharsets.UTF_8);
+        file.setLastModified(modified);
+
+        return file;
+    }
+
+    private static String checksum(final File file) throws IOException {
+        return Files.asByteSource(file).hash(Hashing.crc32()).toString();
+    }
+}
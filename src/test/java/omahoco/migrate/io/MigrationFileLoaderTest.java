@@ -0,0 +1,185 @@
+package omahoco.migrate.io;
+
+import omahoco.migrate.Migration;
+import omahoco.migrate.parse.SimpleStatementParser;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MigrationFileLoaderTest {
+    private final MigrationFileLoader loader = new MigrationFileLoader(new SimpleStatementParser());
+    private final MigrationFileLoader parallelLoader =
+            new MigrationFileLoader(new SimpleStatementParser(), StandardCharsets.UTF_8, 4);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testChecksumCompatibleWithExistingMigrations() {
+        final Migration migration = loader.load(
+                new File(MigrationFileLoaderTest.class.getResource("../v001_killrvideo_properties.gremlin").getFile()));
+
+        assertThat(migration.getVersion(), is(1));
+        assertThat(migration.getCheckSum(), is("725b63a6"));
+        assertThat(migration.getStatements().size(), is(13));
+    }
+
+    @Test
+    public void testLineTerminators() throws IOException {
+        final File file = write("v001_terminators.gremlin", "a()\r\nb();\rc()\nd();\n\n");
+
+        final Migration migration = loader.load(file);
+
+        assertThat(migration.getStatements().get(0), is("a()b();"));
+        assertThat(migration.getStatements().get(1), is("c()d();"));
+        assertThat(migration.getCheckSum(), is(Files.asByteSource(file).hash(Hashing.crc32()).toString()));
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        final File file = write("v001_empty.gremlin", "");
+
+        final Migration migration = loader.load(file);
+
+        assertThat(migration.getStatements().size(), is(0));
+        assertThat(migration.getCheckSum(), is(Files.asByteSource(file).hash(Hashing.crc32()).toString()));
+    }
+
+    @Test
+    public void testLargeMappedFile() throws IOException {
+        // Multi-byte characters end up straddling the boundaries of the decoder buffers.
+        final StringBuilder contents = new StringBuilder();
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; contents.length() < 5 * 1024 * 1024; i++) {
+            final String statement = "graph.addVertex(label, 'author', 'name', 'Zoë Ångström " + i + "');";
+            expected.add(statement);
+            contents.append("    ").append(statement).append("\r\n");
+        }
+        final File file = write("v002_large.gremlin", contents.toString());
+
+        final Migration migration = loader.load(file);
+
+        assertThat(migration.getStatements(), is(expected));
+        assertThat(migration.getCheckSum(), is(Files.asByteSource(file).hash(Hashing.crc32()).toString()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFileChangedAfterLoading() throws IOException {
+        final File file = write("v001_changed.gremlin", "a();\nb();\n");
+        final Migration migration = loader.load(file);
+
+        Files.write("a();\nc();\n", file, StandardCharsets.UTF_8);
+
+        try (Stream<String> statements = migration.streamStatements()) {
+            statements.forEach(t -> { });
+        }
+    }
+
+    @Test
+    public void testStaleCachedChecksumFailsBeforeStatements() throws IOException {
+        final File file = write("v001_cached.gremlin", "a();\nb();\n");
+        file.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+        final Path cacheFile = new File(folder.getRoot(), "checksums.bin").toPath();
+        final ChecksumCache cache = new ChecksumCache(cacheFile);
+        cache.checksum(file.toPath());
+        cache.save();
+
+        // An entry that matches the file's attributes but not its contents.
+        final ChecksumCache stale = new ChecksumCache(cacheFile);
+        final Map<?, ?> cached = (Map<?, ?>) Whitebox.getInternalState(stale, "cached");
+        Whitebox.setInternalState(cached.values().iterator().next(), "checksum", "00000000");
+        final Migration migration =
+                new MigrationFileLoader(new SimpleStatementParser(), StandardCharsets.UTF_8, 1, stale).load(file);
+        assertThat(migration.getCheckSum(), is("00000000"));
+
+        try {
+            migration.streamStatements();
+            fail("Stale checksum not detected");
+        } catch (final IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("is stale"));
+        }
+
+        final ChecksumCache reloaded = new ChecksumCache(cacheFile);
+        assertThat(reloaded.checksum(file.toPath()), is(Files.asByteSource(file).hash(Hashing.crc32()).toString()));
+        assertThat(reloaded.getHits(), is(0));
+    }
+
+    @Test
+    public void testParallelLoadKeepsFileOrder() throws IOException {
+        final List<File> files = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            files.add(write(String.format("v%03d_file.gremlin", i), "a" + i + "();\n"));
+        }
+
+        final List<Migration> migrations = parallelLoader.load(files);
+
+        assertThat(migrations.size(), is(50));
+        for (int i = 0; i < 50; i++) {
+            assertThat(migrations.get(i).getVersion(), is(i + 1));
+            assertThat(migrations.get(i).getStatements().get(0), is("a" + (i + 1) + "();"));
+        }
+    }
+
+    @Test
+    public void testParallelLoadReportsFirstInvalidFile() throws IOException {
+        final List<File> files = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            files.add(write(String.format("v%03d_file.gremlin", i), "a();\n"));
+        }
+        files.set(10, new File(folder.getRoot(), "v011_missing.gremlin"));
+        files.set(40, new File(folder.getRoot(), "v041_missing.gremlin"));
+
+        for (int i = 0; i < 20; i++) {
+            try {
+                parallelLoader.load(files);
+                fail();
+            } catch (final IllegalArgumentException e) {
+                assertThat(e.getMessage(), containsString("v011_missing.gremlin"));
+            }
+        }
+    }
+
+    @Test
+    public void testDataFile() throws IOException {
+        final File file = write("v001_authors.csv", "// template: graph.addVertex(label, 'author', 'name', row.name)\n"
+                + "name\nAnn\nBob\n");
+
+        final Migration migration = loader.load(file);
+
+        assertThat(migration.hasRows(), is(true));
+        assertThat(migration.getStatements(),
+                is(Collections.singletonList("graph.addVertex(label, 'author', 'name', row.name)")));
+        try (Stream<Map<String, Object>> rows = migration.streamRows()) {
+            assertThat(rows.map(t -> t.get("name")).collect(Collectors.toList()), is(Arrays.asList("Ann", "Bob")));
+        }
+        assertThat(migration.getCheckSum(), is(Files.asByteSource(file).hash(Hashing.crc32()).toString()));
+    }
+
+    private File write(final String name, final String contents) throws IOException {
+        final File file = folder.newFile(name);
+        Files.write(contents, file, StandardCharsets.UTF_8);
+
+        return file;
+    }
+}
@@ -0,0 +1,98 @@
+package omahoco.migrate.io;
+
+import omahoco.migrate.Migration;
+import omahoco.migrate.config.Config;
+import omahoco.migrate.parse.SimpleStatementParser;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class MigrationWatcherTest {
+    private static final int QUIET_MILLIS = 50;
+    private static final long TIMEOUT_MILLIS = 30000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private FileMigrationSource migrationSource;
+
+    @Before
+    public void before() {
+        final Config config = new Config();
+        config.setConfigPath(folder.getRoot().getPath());
+        config.setMigrationPath(".");
+        migrationSource = new FileMigrationSource(config);
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void testLoadsNewAndChangedFiles() throws IOException {
+        write(new File(folder.getRoot(), "v001_a.gremlin"), "graph.addVertex(label, 'a');");
+        write(new File(folder.getRoot(), "v002_b.gremlin"), "graph.addVertex(label, 'b');");
+
+        try (MigrationWatcher watcher = newWatcher()) {
+            final List<Migration> loaded = watcher.load();
+            assertThat(fileNames(loaded), is("v001_a.gremlin,v002_b.gremlin"));
+
+            write(new File(folder.getRoot(), "v002_b.gremlin"), "graph.addVertex(label, 'c');");
+            write(new File(folder.getRoot(), "v003_c.gremlin"), "graph.addVertex(label, 'c');");
+            write(new File(folder.getRoot(), "notes.txt"), "Not a migration");
+            final List<Migration> changed = watcher.awaitChanges();
+
+            assertThat(fileNames(changed), is("v001_a.gremlin,v002_b.gremlin,v003_c.gremlin"));
+            assertThat(changed.get(0), sameInstance(loaded.get(0)));
+            assertThat(changed.get(1).getCheckSum(), not(loaded.get(1).getCheckSum()));
+        }
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void testWatchesNewDirectories() throws IOException {
+        try (MigrationWatcher watcher = newWatcher()) {
+            assertThat(watcher.load().size(), is(0));
+
+            final File directory = folder.newFolder("tenant");
+            write(new File(directory, "v001_a.gremlin"), "graph.addVertex(label, 'a');");
+
+            assertThat(fileNames(watcher.awaitChanges()), is("v001_a.gremlin"));
+        }
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void testDropsDeletedFiles() throws IOException {
+        write(new File(folder.getRoot(), "v001_a.gremlin"), "graph.addVertex(label, 'a');");
+        write(new File(folder.getRoot(), "v002_b.gremlin"), "graph.addVertex(label, 'b');");
+
+        try (MigrationWatcher watcher = newWatcher()) {
+            watcher.load();
+
+            Files.delete(new File(folder.getRoot(), "v002_b.gremlin").toPath());
+
+            assertThat(fileNames(watcher.awaitChanges()), is("v001_a.gremlin"));
+        }
+    }
+
+    private MigrationWatcher newWatcher() {
+        return new MigrationWatcher(
+                migrationSource, new MigrationFileLoader(new SimpleStatementParser()), QUIET_MILLIS);
+    }
+
+    private static void write(final File file, final String contents) throws IOException {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String fileNames(final List<Migration> migrations) {
+        return migrations.stream().map(Migration::getFileName).collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,92 @@
+package omahoco.migrate.parse;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DataFileParserTest {
+    @Test
+    public void testReadTemplate() {
+        final List<String> lines = Arrays.asList(
+                "// Authors",
+                "",
+                "// template: graph.addVertex(label, 'author', 'name', row.name)",
+                "name");
+
+        assertThat(DataFileParser.readTemplate(lines.iterator()),
+                is("graph.addVertex(label, 'author', 'name', row.name)"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTemplateRequired() {
+        DataFileParser.readTemplate(Arrays.asList("// Authors", "name", "// template: a()").iterator());
+    }
+
+    @Test
+    public void testCsvInArbitraryChunks() {
+        final String text = "// template: a()\r\nname,quote\r\nAnn,\"Hello, \"\"world\"\"\"\r\n\r\nBob,\"line one\nline two\"\n"
+                + "Cat,";
+
+        final List<Map<String, Object>> rows = parse(DataFileParser.Format.CSV, text);
+
+        assertThat(rows, is(Arrays.asList(
+                row("name", "Ann", "quote", "Hello, \"world\""),
+                row("name", "Bob", "quote", "line one\nline two"),
+                row("name", "Cat", "quote", ""))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCsvRecordWithWrongNumberOfValues() {
+        parse(DataFileParser.Format.CSV, "// template: a()\nname,age\nAnn\n");
+    }
+
+    @Test
+    public void testJsonLinesKeepTypes() {
+        final String text = "// template: a()\n{\"name\": \"Ann\", \"age\": 42, \"admin\": true, \"tags\": [\"a\"]}\n"
+                + "\n{\"name\": \"Bob\", \"age\": 12345678901, \"score\": 1.5, \"nickname\": null}";
+
+        final List<Map<String, Object>> rows = parse(DataFileParser.Format.JSON_LINES, text);
+
+        assertThat(rows.size(), is(2));
+        assertThat(rows.get(0), is(row("name", "Ann", "age", 42, "admin", true, "tags", Arrays.asList("a"))));
+        assertThat(rows.get(1).get("age"), is(12345678901L));
+        assertThat(rows.get(1).get("score"), is(1.5));
+        assertThat(rows.get(1).get("nickname"), is(nullValue()));
+    }
+
+    @Test
+    public void testFormatOfFileName() {
+        assertThat(DataFileParser.Format.of("v001_users.CSV"), is(DataFileParser.Format.CSV));
+        assertThat(DataFileParser.Format.of("v001_users.jsonl"), is(DataFileParser.Format.JSON_LINES));
+        assertThat(DataFileParser.Format.of("v001_users.gremlin"), is(nullValue()));
+    }
+
+    private static List<Map<String, Object>> parse(final DataFileParser.Format format, final String text) {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        final StatementParser.Session session = new DataFileParser(format).newSession(rows::add);
+
+        for (int i = 0; i < text.length(); i++) {
+            session.accept(text.subSequence(i, i + 1));
+        }
+        session.finish();
+
+        return rows;
+    }
+
+    private static Map<String, Object> row(final Object... keysAndValues) {
+        final Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+
+        return row;
+    }
+}
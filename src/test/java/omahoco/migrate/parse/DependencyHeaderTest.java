@@ -0,0 +1,51 @@
+package omahoco.migrate.parse;
+
+import com.google.common.io.CharStreams;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DependencyHeaderTest {
+    @Test
+    public void testReadDependencies() {
+        assertThat(DependencyHeader.read(
+                Arrays.asList("// Author data", "", "// depends: v001, V003,7", "graph.addVertex();").iterator()),
+                is(Arrays.asList(1, 3, 7)));
+        assertThat(DependencyHeader.read(Collections.singletonList("// depends: none").iterator()),
+                is(Collections.emptyList()));
+    }
+
+    @Test
+    public void testUndeclaredOutsideHeader() {
+        assertThat(DependencyHeader.read(
+                Arrays.asList("// Author data", "graph.addVertex();", "// depends: v001").iterator()),
+                is(nullValue()));
+    }
+
+    @Test
+    public void testReaderStopsAtFirstStatement() throws IOException {
+        final StringReader declared = new StringReader("// depends: v002\r\n\n  graph.addVertex();\n");
+        assertThat(DependencyHeader.read(declared), is(Collections.singletonList(2)));
+        assertThat(CharStreams.toString(declared), is("\n  graph.addVertex();\n"));
+
+        final StringReader undeclared = new StringReader("// Author data\n  /* c */ graph.addVertex();\n");
+        assertThat(DependencyHeader.read(undeclared), is(nullValue()));
+        assertThat(CharStreams.toString(undeclared), is(" c */ graph.addVertex();\n"));
+
+        final StringReader statement = new StringReader("graph.addVertex();\n// depends: v001\n");
+        assertThat(DependencyHeader.read(statement), is(nullValue()));
+        assertThat(CharStreams.toString(statement), is("raph.addVertex();\n// depends: v001\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDependencyRejected() {
+        DependencyHeader.read(Collections.singletonList("// depends: v001_authors.gremlin").iterator());
+    }
+}
@@ -0,0 +1,82 @@
+package omahoco.migrate.parse;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LiteralParameterizerTest {
+    private static final LiteralParameterizer parameterizer = new LiteralParameterizer();
+
+    @Test
+    public void testStatementsWithSameShapeShareScript() {
+        final ParameterizedScript ann = parameterizer.parameterize("graph.addVertex(label,'author','name','Ann');");
+        final ParameterizedScript bob = parameterizer.parameterize("graph.addVertex(label,'author','name','Bob');");
+
+        assertThat(ann.getScript(), is("graph.addVertex(label,'author','name',_lit0);"));
+        assertThat(bob.getScript(), is(ann.getScript()));
+        assertThat(ann.getParameters(), is(ImmutableMap.<String, Object>of("_lit0", "Ann")));
+    }
+
+    @Test
+    public void testLiftsEscapedStringsAndIntegers() {
+        final ParameterizedScript script =
+                parameterizer.parameterize("g.V().has('name', \"it's \\\"x\\\" \\u00e9\").limit(10).range(0, 5000000000);");
+
+        assertThat(script.getScript(), is("g.V().has('name', _lit0).limit(_lit1).range(_lit2, _lit3);"));
+        assertThat(script.getParameters(), is(ImmutableMap.<String, Object>of(
+                "_lit0", "it's \"x\" \u00e9", "_lit1", 10, "_lit2", 0, "_lit3", 5000000000L)));
+    }
+
+    @Test
+    public void testLeavesUncertainLiterals() {
+        final String script = "v.property('w', 1.5).property('x', 10L).property('y', \"${z}\")"
+                + ".property('''t''', 017).property(x1, '\\7');";
+
+        final ParameterizedScript actual = parameterizer.parameterize(script);
+
+        assertThat(actual.getScript(), is(script));
+    }
+
+    @Test
+    public void testLeavesKeysAndLabels() {
+        final ParameterizedScript actual = parameterizer.parameterize("g.addV('author').property('name', 'Ann')"
+                + ".property(list, 'alias', 'A').property('born', 1970, 'source', 'wiki').as('a')"
+                + ".V().has('book', 'year', 1999).hasLabel('book').has(label, 'novel').values('title')"
+                + ".addE('wrote').from('a');"
+                + "a.addEdge('wrote', b, 'year', 1999);"
+                + "m = ['name': 'Bob', 'tags': ['x', 'y']];");
+
+        assertThat(actual.getScript(), is("g.addV('author').property('name', _lit0)"
+                + ".property(list, 'alias', _lit1).property('born', _lit2, 'source', _lit3).as('a')"
+                + ".V().has('book', 'year', _lit4).hasLabel('book').has(label, 'novel').values('title')"
+                + ".addE('wrote').from('a');"
+                + "a.addEdge('wrote', b, 'year', _lit5);"
+                + "m = ['name': _lit6, 'tags': [_lit7, _lit8]];"));
+        assertThat(actual.getParameters(), is(ImmutableMap.<String, Object>builder()
+                .put("_lit0", "Ann").put("_lit1", "A").put("_lit2", 1970).put("_lit3", "wiki").put("_lit4", 1999)
+                .put("_lit5", 1999).put("_lit6", "Bob").put("_lit7", "x").put("_lit8", "y").build()));
+    }
+
+    @Test
+    public void testLeavesSchemaStatements() {
+        final String script = "schema.propertyKey('name').Text().single().create();"
+                + "schema.vertexLabel('author').properties('name').create();";
+
+        final ParameterizedScript actual = parameterizer.parameterize(script);
+
+        assertThat(actual.getScript(), is(script));
+        assertThat(actual.getParameters(), is(Collections.<String, Object>emptyMap()));
+    }
+
+    @Test
+    public void testLeavesScriptsUsingPrefix() {
+        final ParameterizedScript actual = parameterizer.parameterize("_lit0 = 'a';");
+
+        assertThat(actual.getScript(), is("_lit0 = 'a';"));
+        assertThat(actual.getParameters(), is(Collections.<String, Object>emptyMap()));
+    }
+}
@@ -3,6 +3,7 @@ package omahoco.migrate.parse;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -55,6 +56,73 @@ public class SimpleStatementParserTest {
         assertThat(actual.get(0), is("step1().step2().step3();"));
     }
 
+    @Test
+    public void testSessionAcceptsArbitraryChunks() {
+        final String text = "// Line comment\r\nstep1(). // Inline comment\r\n\tstep2();\rstep3()\n;\nstep4()";
+        final List<String> actual = new ArrayList<>();
+        final StatementParser.Session session = parser.newSession(actual::add);
+
+        for (int i = 0; i < text.length(); i++) {
+            session.accept(text.subSequence(i, i + 1));
+        }
+        session.finish();
+
+        assertThat(actual, is(Arrays.asList("step1().step2();", "step3();", "step4()")));
+    }
+
+    @Test
+    public void testIgnoreBlockCommentsSpanningLines() {
+        final List<String> lines = Arrays.asList(
+                "/*",
+                " * Block comment; with a semicolon.",
+                " */",
+                "step1(). /* Starts here",
+                "   ends here */ step2();",
+                "step3() /* inline */.step4();");
+
+        final List<String> actual = parser.parse(lines);
+
+        assertThat(actual, is(Arrays.asList("step1().step2();", "step3() .step4();")));
+    }
+
+    @Test
+    public void testKeepCommentMarkersAndSemicolonsInStrings() {
+        final List<String> lines = Arrays.asList(
+                "graph.addVertex(label, 'a', 'text', 'one; // two /* three */');",
+                "graph.addVertex(label, 'b', 'text', \"it's \\\"quoted\\\";\");// comment");
+
+        final List<String> actual = parser.parse(lines);
+
+        assertThat(actual, is(Arrays.asList(
+                "graph.addVertex(label, 'a', 'text', 'one; // two /* three */');",
+                "graph.addVertex(label, 'b', 'text', \"it's \\\"quoted\\\";\");")));
+    }
+
+    @Test
+    public void testKeepTripleQuotedStringsVerbatim() {
+        final List<String> lines = Arrays.asList(
+                "graph.addVertex(label, 'a', 'text', '''first;",
+                "  // second",
+                "''');",
+                "graph.addVertex(label, 'b', 'text', \"\"\"say \"hi\";\"\"\", 'empty', '');");
+
+        final List<String> actual = parser.parse(lines);
+
+        assertThat(actual, is(Arrays.asList(
+                "graph.addVertex(label, 'a', 'text', '''first;\n  // second\n''');",
+                "graph.addVertex(label, 'b', 'text', \"\"\"say \"hi\";\"\"\", 'empty', '');")));
+    }
+
+    @Test
+    public void testGStringExpressions() {
+        final List<String> lines = Arrays.asList(
+                "graph.addVertex(label, 'a', 'text', \"${names.collect { \"'$it'\" }.join('; ')} // not comment\");");
+
+        final List<String> actual = parser.parse(lines);
+
+        assertThat(actual, is(lines));
+    }
+
     @Test
     public void testParseStatementsWithUrls() {
         final ArrayList lines = new ArrayList();
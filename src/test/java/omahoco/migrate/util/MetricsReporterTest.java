@@ -0,0 +1,65 @@
+package omahoco.migrate.util;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class MetricsReporterTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testJsonSummary() throws IOException {
+        metricRegistry.counter("files.bytesParsed").inc(1024);
+        metricRegistry.timer("statements.data").update(2, TimeUnit.MILLISECONDS);
+        metricRegistry.register("driver.\"quoted\"", (Gauge<String>) () -> "a\nb");
+        metricRegistry.register("driver.closed", (Gauge<Integer>) () -> {
+            throw new IllegalStateException("Cluster closed");
+        });
+
+        final StringWriter writer = new StringWriter();
+        new MetricsReporter(metricRegistry, null).writeJson(writer);
+
+        // JSON is a subset of YAML, so the YAML parser can check the output is well formed.
+        final Map<String, Map<String, Object>> json = (Map<String, Map<String, Object>>) new Yaml().load(
+                writer.toString());
+        assertThat(json.get("counters").get("files.bytesParsed"), is(1024));
+        assertThat(json.get("gauges").get("driver.\"quoted\""), is("a\nb"));
+        assertThat(json.get("gauges").get("driver.closed"), is(nullValue()));
+        final Map<String, Object> timer = (Map<String, Object>) json.get("timers").get("statements.data");
+        assertThat(timer.get("count"), is(1));
+        assertThat(timer.get("max"), is(2.0));
+    }
+
+    @Test
+    public void testSummaryWrittenOnClose() throws IOException {
+        final File summary = new File(folder.getRoot(), "metrics/summary.json");
+        metricRegistry.meter("statements.executed").mark(5);
+
+        try (MetricsReporter reporter = new MetricsReporter(metricRegistry, summary.toPath())) {
+            reporter.start();
+        }
+
+        final String json = new String(Files.readAllBytes(summary.toPath()), StandardCharsets.UTF_8);
+        assertThat(json.startsWith("{\"gauges\":{},\"counters\":{},\"histograms\":{},\"meters\":{\"statements.executed\""),
+                is(true));
+    }
+}